@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.CameraPosition;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.Algorithm;
+import com.google.maps.android.clustering.algo.DensityBasedAlgorithm;
+import com.google.maps.android.clustering.algo.GridBasedAlgorithm;
+import com.google.maps.android.clustering.algo.NonHierarchicalDistanceBasedAlgorithm;
+import com.google.maps.android.clustering.algo.NonHierarchicalViewBasedAlgorithm;
+import com.google.maps.android.clustering.algo.PreCachingAlgorithmDecorator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The clustering algorithms under benchmark.
+ */
+public enum Algorithms {
+    DISTANCE {
+        @Override
+        Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom) {
+            return new NonHierarchicalDistanceBasedAlgorithm<BenchmarkItem>();
+        }
+    },
+    GRID {
+        @Override
+        Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom) {
+            return new GridBasedAlgorithm<BenchmarkItem>();
+        }
+    },
+    GRID_PARALLEL {
+        @Override
+        Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom) {
+            GridBasedAlgorithm<BenchmarkItem> algorithm = new GridBasedAlgorithm<BenchmarkItem>();
+            algorithm.setParallelBucketing(EXECUTOR, PARALLELISM);
+            return algorithm;
+        }
+    },
+    VIEW {
+        @Override
+        Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom) {
+            NonHierarchicalViewBasedAlgorithm<BenchmarkItem> algorithm =
+                    new NonHierarchicalViewBasedAlgorithm<BenchmarkItem>(SCREEN_WIDTH, SCREEN_HEIGHT);
+            algorithm.onCameraChange(new CameraPosition(cameraTarget, zoom, 0, 0));
+            return algorithm;
+        }
+    },
+    DENSITY {
+        @Override
+        Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom) {
+            return new DensityBasedAlgorithm<BenchmarkItem>();
+        }
+    },
+    PRE_CACHING {
+        @Override
+        Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom) {
+            return new PreCachingAlgorithmDecorator<BenchmarkItem>(
+                    new NonHierarchicalDistanceBasedAlgorithm<BenchmarkItem>());
+        }
+    };
+
+    /**
+     * Size of a typical phone screen, in pixels.
+     */
+    static final int SCREEN_WIDTH = 1080;
+    static final int SCREEN_HEIGHT = 1920;
+
+    static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Shared by all algorithms that can use extra threads.
+     */
+    static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PARALLELISM, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "benchmark-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    abstract Algorithm<BenchmarkItem> create(LatLng cameraTarget, float zoom);
+}
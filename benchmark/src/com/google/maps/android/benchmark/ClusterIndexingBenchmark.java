@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.maps.android.clustering.algo.Algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Algorithm#addItems(java.util.Collection)} into an empty algorithm, which is
+ * what an app pays on every launch before the first clusters can be shown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ClusterIndexingBenchmark {
+
+    @Param({"DISTANCE", "GRID"})
+    public Algorithms algorithm;
+
+    @Param({"UNIFORM", "CLUSTERED", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private List<BenchmarkItem> mItems;
+
+    private Algorithm<BenchmarkItem> mAlgorithm;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        mItems = Datasets.generateItems(distribution, size);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        mAlgorithm = algorithm.create(mItems.get(0).getPosition(), 0);
+    }
+
+    @Benchmark
+    public Algorithm<BenchmarkItem> addItems() {
+        mAlgorithm.addItems(mItems);
+        return mAlgorithm;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.algo.Algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Algorithm#getClusters(double)} for each algorithm, dataset and zoom level.
+ * <p/>
+ * PRE_CACHING is measured in its steady state: after the first invocation every call is served
+ * from its cache, which is what the map sees while the user pans at a fixed zoom.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ClusteringBenchmark {
+
+    @Param({"DISTANCE", "GRID", "GRID_PARALLEL", "VIEW", "PRE_CACHING"})
+    public Algorithms algorithm;
+
+    @Param({"UNIFORM", "CLUSTERED", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"4", "8", "12", "16"})
+    public float zoom;
+
+    private Algorithm<BenchmarkItem> mAlgorithm;
+
+    @Setup
+    public void setUp() {
+        List<BenchmarkItem> items = Datasets.generateItems(distribution, size);
+        // Point the camera at the first item so view based clustering has something to do.
+        mAlgorithm = algorithm.create(items.get(0).getPosition(), zoom);
+        mAlgorithm.addItems(items);
+    }
+
+    @Benchmark
+    public Set<? extends Cluster<BenchmarkItem>> getClusters() {
+        return mAlgorithm.getClusters(zoom);
+    }
+}
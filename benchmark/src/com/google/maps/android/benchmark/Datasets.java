@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic datasets. The same distribution and size always produce the same
+ * points, so results can be compared between runs and releases.
+ */
+public final class Datasets {
+
+    /**
+     * Seed for all generated data.
+     */
+    private static final long SEED = 0x5eed;
+
+    /**
+     * Number of Gaussian blobs in the CLUSTERED distribution.
+     */
+    private static final int BLOB_COUNT = 50;
+
+    /**
+     * Number of cities in the CITY_SKEWED distribution.
+     */
+    private static final int CITY_COUNT = 200;
+
+    public enum Distribution {
+        /**
+         * Points spread uniformly over the Mercator-visible world.
+         */
+        UNIFORM,
+
+        /**
+         * Points grouped into a fixed number of equally sized Gaussian blobs.
+         */
+        CLUSTERED,
+
+        /**
+         * Points around cities whose populations follow Zipf's law: a few very dense centres
+         * and a long tail of small ones.
+         */
+        CITY_SKEWED
+    }
+
+    private Datasets() {
+    }
+
+    public static List<LatLng> generate(Distribution distribution, int size) {
+        Random random = new Random(SEED);
+        List<LatLng> points = new ArrayList<LatLng>(size);
+        switch (distribution) {
+            case UNIFORM:
+                for (int i = 0; i < size; i++) {
+                    points.add(new LatLng(random.nextDouble() * 160 - 80, random.nextDouble() * 360 - 180));
+                }
+                break;
+            case CLUSTERED: {
+                LatLng[] centres = randomCentres(random, BLOB_COUNT);
+                for (int i = 0; i < size; i++) {
+                    points.add(around(random, centres[random.nextInt(BLOB_COUNT)], 0.5));
+                }
+                break;
+            }
+            case CITY_SKEWED: {
+                LatLng[] centres = randomCentres(random, CITY_COUNT);
+                double[] cumulative = new double[CITY_COUNT];
+                double total = 0;
+                for (int i = 0; i < CITY_COUNT; i++) {
+                    total += 1.0 / (i + 1);
+                    cumulative[i] = total;
+                }
+                for (int i = 0; i < size; i++) {
+                    int city = pick(cumulative, random.nextDouble() * total);
+                    // Big cities are also more spread out.
+                    points.add(around(random, centres[city], 0.2 / Math.sqrt(city + 1)));
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+        return points;
+    }
+
+    public static List<BenchmarkItem> generateItems(Distribution distribution, int size) {
+        List<BenchmarkItem> items = new ArrayList<BenchmarkItem>(size);
+        for (LatLng point : generate(distribution, size)) {
+            items.add(new BenchmarkItem(point.latitude, point.longitude));
+        }
+        return items;
+    }
+
+    private static LatLng[] randomCentres(Random random, int count) {
+        LatLng[] centres = new LatLng[count];
+        for (int i = 0; i < count; i++) {
+            centres[i] = new LatLng(random.nextDouble() * 120 - 60, random.nextDouble() * 360 - 180);
+        }
+        return centres;
+    }
+
+    private static LatLng around(Random random, LatLng centre, double sd) {
+        return new LatLng(centre.latitude + random.nextGaussian() * sd,
+                centre.longitude + random.nextGaussian() * sd);
+    }
+
+    private static int pick(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.heatmaps.HeatmapTileProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures setting the data of a heatmap, as LatLngs or as columns of coordinates, which also
+ * indexes the points and estimates their maximum intensities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HeatmapDataBenchmark {
+
+    @Param({"UNIFORM", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean columnar;
+
+    private HeatmapTileProvider mProvider;
+
+    private List<LatLng> mPoints;
+
+    private double[] mLatitudes;
+
+    private double[] mLongitudes;
+
+    @Setup
+    public void setUp() {
+        mPoints = Datasets.generate(distribution, size);
+        mLatitudes = new double[size];
+        mLongitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            mLatitudes[i] = mPoints.get(i).latitude;
+            mLongitudes[i] = mPoints.get(i).longitude;
+        }
+        mProvider = new HeatmapTileProvider.Builder().data(mPoints).build();
+    }
+
+    @Benchmark
+    public void setData() {
+        if (columnar) {
+            mProvider.setColumnarData(mLatitudes, mLongitudes, null);
+        } else {
+            mProvider.setData(mPoints);
+        }
+    }
+}
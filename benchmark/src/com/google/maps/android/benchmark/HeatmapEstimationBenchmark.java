@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.benchmark;
+
+import com.google.maps.android.heatmaps.HeatmapTileProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures estimating the maximum intensities of a heatmap, which
+ * {@link HeatmapTileProvider#setRadius(int)} does again from all points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HeatmapEstimationBenchmark {
+
+    @Param({"UNIFORM", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "2", "4"})
+    public int parallelism;
+
+    private HeatmapTileProvider mProvider;
+
+    private ExecutorService mExecutor;
+
+    @Setup
+    public void setUp() {
+        if (parallelism > 1) {
+            mExecutor = Executors.newFixedThreadPool(parallelism - 1);
+        }
+        mProvider = new HeatmapTileProvider.Builder()
+                .data(Datasets.generate(distribution, size))
+                .pyramidMaxZoom(-1)
+                .parallelEstimation(mExecutor, parallelism)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void setRadius() {
+        mProvider.setRadius(HeatmapTileProvider.DEFAULT_RADIUS);
+    }
+}
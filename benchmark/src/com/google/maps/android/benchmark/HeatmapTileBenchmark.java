@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Tile;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.heatmaps.HeatmapTileProvider;
+import com.google.maps.android.heatmaps.WeightedLatLng;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering a heatmap tile with {@link HeatmapTileProvider#getTile(int, int, int)}, with
+ * its tile cache disabled, for several radii, blur modes and convolution parallelisms, with and
+ * without pre-summed intensities.
+ * <p/>
+ * The tile is the one containing the first point of the dataset, so it always has data. Encoding
+ * is not measured, as the Bitmap stand-in doesn't encode; see {@link TileEncoderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HeatmapTileBenchmark {
+
+    @Param({"UNIFORM", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"4", "10"})
+    public int zoom;
+
+    @Param({"1", "2", "4"})
+    public int parallelism;
+
+    @Param({"20", "50"})
+    public int radius;
+
+    @Param({"GAUSSIAN", "TRIPLE_BOX"})
+    public HeatmapTileProvider.BlurMode blurMode;
+
+    @Param({"-1", "10"})
+    public int pyramidMaxZoom;
+
+    private HeatmapTileProvider mProvider;
+
+    private ExecutorService mExecutor;
+
+    private int mX;
+
+    private int mY;
+
+    @Setup
+    public void setUp() {
+        List<LatLng> points = Datasets.generate(distribution, size);
+        mProvider = new HeatmapTileProvider.Builder()
+                .data(points)
+                .radius(radius)
+                .blurMode(blurMode)
+                .pyramidMaxZoom(pyramidMaxZoom)
+                .tileCacheSize(0)
+                .build();
+        if (parallelism > 1) {
+            mExecutor = Executors.newFixedThreadPool(parallelism - 1);
+            mProvider.setParallelConvolution(mExecutor, parallelism);
+        }
+
+        Point first = new WeightedLatLng(points.get(0)).getPoint();
+        int tiles = 1 << zoom;
+        mX = (int) (first.x * tiles);
+        mY = (int) (first.y * tiles);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Tile getTile() {
+        return mProvider.getTile(mX, mY, zoom);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.quadtree.PointQuadTree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single item operations on a populated {@link PointQuadTree}, sweeping its leaf
+ * capacity and maximum depth.
+ * <p/>
+ * Search boxes are squares covering {@code selectivity} of the world's area, centred on random
+ * items so that skewed datasets are searched where their data actually is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PointQuadTreeBenchmark {
+
+    /**
+     * Number of distinct search boxes and insert candidates to cycle through.
+     */
+    private static final int POOL_SIZE = 1024;
+
+    @Param({"UNIFORM", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"8", "50", "256"})
+    public int maxElements;
+
+    @Param({"20", "40"})
+    public int maxDepth;
+
+    @Param({"0.000001", "0.0001", "0.01"})
+    public double selectivity;
+
+    private PointQuadTree<QuadTreeItem> mTree;
+
+    private Bounds[] mSearchBounds;
+
+    private QuadTreeItem[] mCandidates;
+
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        List<QuadTreeItem> items = QuadTreeItem.generate(distribution, size);
+        mTree = new PointQuadTree<QuadTreeItem>(new Bounds(0, 1, 0, 1), maxElements, maxDepth);
+        for (QuadTreeItem item : items) {
+            mTree.add(item);
+        }
+
+        Random random = new Random(size);
+        double halfSpan = Math.sqrt(selectivity) / 2;
+        mSearchBounds = new Bounds[POOL_SIZE];
+        mCandidates = new QuadTreeItem[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Point p = items.get(random.nextInt(items.size())).getPoint();
+            mSearchBounds[i] = new Bounds(p.x - halfSpan, p.x + halfSpan, p.y - halfSpan, p.y + halfSpan);
+            // A new item at the same location as an existing one, so inserts land in dense quads.
+            mCandidates[i] = new QuadTreeItem(p);
+        }
+    }
+
+    @Benchmark
+    public Collection<QuadTreeItem> search() {
+        return mTree.search(mSearchBounds[mNext++ & (POOL_SIZE - 1)]);
+    }
+
+    /**
+     * Inserts an item and removes it again, leaving the tree as it was.
+     */
+    @Benchmark
+    public boolean insertThenRemove() {
+        QuadTreeItem item = mCandidates[mNext++ & (POOL_SIZE - 1)];
+        mTree.add(item);
+        return mTree.remove(item);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.quadtree.PointQuadTree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole-tree operations on {@link PointQuadTree}: building it from scratch, removing
+ * every item and clearing it, sweeping its leaf capacity and maximum depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PointQuadTreeBuildBenchmark {
+
+    @Param({"UNIFORM", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"8", "50", "256"})
+    public int maxElements;
+
+    @Param({"20", "40"})
+    public int maxDepth;
+
+    private List<QuadTreeItem> mItems;
+
+    private PointQuadTree<QuadTreeItem> mEmptyTree;
+
+    private PointQuadTree<QuadTreeItem> mFullTree;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        mItems = QuadTreeItem.generate(distribution, size);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        mEmptyTree = newTree();
+        mFullTree = newTree();
+        for (QuadTreeItem item : mItems) {
+            mFullTree.add(item);
+        }
+    }
+
+    @Benchmark
+    public PointQuadTree<QuadTreeItem> bulkInsert() {
+        for (QuadTreeItem item : mItems) {
+            mEmptyTree.add(item);
+        }
+        return mEmptyTree;
+    }
+
+    @Benchmark
+    public PointQuadTree<QuadTreeItem> removeAll() {
+        for (QuadTreeItem item : mItems) {
+            mFullTree.remove(item);
+        }
+        return mFullTree;
+    }
+
+    @Benchmark
+    public PointQuadTree<QuadTreeItem> clear() {
+        mFullTree.clear();
+        return mFullTree;
+    }
+
+    private PointQuadTree<QuadTreeItem> newTree() {
+        return new PointQuadTree<QuadTreeItem>(new Bounds(0, 1, 0, 1), maxElements, maxDepth);
+    }
+}
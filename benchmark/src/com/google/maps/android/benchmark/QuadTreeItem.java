@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
+import com.google.maps.android.quadtree.PointQuadTree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A PointQuadTree item in the unit square, projected the same way the clustering algorithms
+ * project their items.
+ */
+public class QuadTreeItem implements PointQuadTree.Item {
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+    private final Point mPoint;
+
+    public QuadTreeItem(Point point) {
+        mPoint = point;
+    }
+
+    @Override
+    public Point getPoint() {
+        return mPoint;
+    }
+
+    public static List<QuadTreeItem> generate(Datasets.Distribution distribution, int size) {
+        List<QuadTreeItem> items = new ArrayList<QuadTreeItem>(size);
+        for (LatLng latLng : Datasets.generate(distribution, size)) {
+            items.add(new QuadTreeItem(PROJECTION.toPoint(latLng)));
+        }
+        return items;
+    }
+}
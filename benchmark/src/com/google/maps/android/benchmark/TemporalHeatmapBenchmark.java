@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Tile;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.heatmaps.TemporalHeatmapTileProvider;
+import com.google.maps.android.heatmaps.WeightedLatLng;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one step of scrubbing a {@link TemporalHeatmapTileProvider} through a day of points:
+ * moving its time window by an hour, and rendering the tile containing the first point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TemporalHeatmapBenchmark {
+
+    private static final long HOUR = TemporalHeatmapTileProvider.DEFAULT_BUCKET_DURATION;
+
+    private static final int HOURS = 24;
+
+    @Param({"UNIFORM", "CITY_SKEWED"})
+    public Datasets.Distribution distribution;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "6"})
+    public int windowHours;
+
+    @Param({"7", "11"})
+    public int zoom;
+
+    private TemporalHeatmapTileProvider mProvider;
+
+    private int mHour;
+
+    private int mX;
+
+    private int mY;
+
+    @Setup
+    public void setUp() {
+        List<LatLng> points = Datasets.generate(distribution, size);
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        long[] timestamps = new long[size];
+        Random random = new Random(0);
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = points.get(i).latitude;
+            longitudes[i] = points.get(i).longitude;
+            timestamps[i] = (long) (random.nextDouble() * HOURS * HOUR);
+        }
+        mProvider = new TemporalHeatmapTileProvider.Builder()
+                .columnarData(latitudes, longitudes, null, timestamps)
+                .tileCacheSize(0)
+                .build();
+
+        Point first = new WeightedLatLng(points.get(0)).getPoint();
+        int tiles = 1 << zoom;
+        mX = (int) (first.x * tiles);
+        mY = (int) (first.y * tiles);
+    }
+
+    @Benchmark
+    public Tile scrub() {
+        mHour = (mHour + 1) % (HOURS - windowHours + 1);
+        mProvider.setTimeWindow(mHour * HOUR, (mHour + windowHours) * HOUR);
+        return mProvider.getTile(mX, mY, zoom);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.benchmark;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.heatmaps.HeatmapTileProvider;
+import com.google.maps.android.heatmaps.PngTileEncoder;
+import com.google.maps.android.heatmaps.TileEncoder;
+import com.google.maps.android.heatmaps.WeightedLatLng;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a rendered heatmap tile with {@link PngTileEncoder} at several deflate
+ * levels. The pixels are captured from a tile of a city skewed dataset, so they compress like
+ * real tiles do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TileEncoderBenchmark {
+
+    @Param({"0", "1", "6", "9"})
+    public int level;
+
+    private PngTileEncoder mEncoder;
+
+    private int[] mPixels;
+
+    private int mWidth;
+
+    private int mHeight;
+
+    @Setup
+    public void setUp() {
+        List<LatLng> points = Datasets.generate(Datasets.Distribution.CITY_SKEWED, 100000);
+        HeatmapTileProvider provider = new HeatmapTileProvider.Builder()
+                .data(points)
+                .tileCacheSize(0)
+                .tileEncoder(new TileEncoder() {
+                    @Override
+                    public byte[] encode(int[] pixels, int width, int height) {
+                        mPixels = pixels.clone();
+                        mWidth = width;
+                        mHeight = height;
+                        return new byte[0];
+                    }
+                })
+                .build();
+        int zoom = 8;
+        Point first = new WeightedLatLng(points.get(0)).getPoint();
+        provider.getTile((int) (first.x * (1 << zoom)), (int) (first.y * (1 << zoom)), zoom);
+
+        mEncoder = new PngTileEncoder(level);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return mEncoder.encode(mPixels, mWidth, mHeight);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package android.graphics;
+
+import java.io.OutputStream;
+
+/**
+ * JVM stand-in for an ARGB_8888 Bitmap. compress() writes nothing, as the Android encoders are
+ * native: benchmarks measure heatmap rendering up to encoding.
+ */
+public final class Bitmap {
+    public enum Config {
+        ARGB_8888
+    }
+
+    public enum CompressFormat {
+        JPEG, PNG, WEBP
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int[] mPixels;
+
+    private Bitmap(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mPixels = new int[width * height];
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public void setPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(pixels, offset + row * stride, mPixels, (y + row) * mWidth + x, width);
+        }
+    }
+
+    public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(mPixels, (y + row) * mWidth + x, pixels, offset + row * stride, width);
+        }
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+        return true;
+    }
+}
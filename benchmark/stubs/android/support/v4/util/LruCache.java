@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package android.support.v4.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the support library LruCache.
+ */
+public class LruCache<K, V> {
+    private final LinkedHashMap<K, V> mMap = new LinkedHashMap<K, V>(0, 0.75f, true);
+    private int mSize;
+    private int mMaxSize;
+
+    private int mPutCount;
+    private int mEvictionCount;
+    private int mHitCount;
+    private int mMissCount;
+
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+    }
+
+    public final V get(K key) {
+        synchronized (this) {
+            V value = mMap.get(key);
+            if (value != null) {
+                mHitCount++;
+            } else {
+                mMissCount++;
+            }
+            return value;
+        }
+    }
+
+    public final V put(K key, V value) {
+        V previous;
+        synchronized (this) {
+            mPutCount++;
+            mSize += safeSizeOf(key, value);
+            previous = mMap.put(key, value);
+            if (previous != null) {
+                mSize -= safeSizeOf(key, previous);
+            }
+        }
+        if (previous != null) {
+            entryRemoved(false, key, previous, value);
+        }
+        trimToSize(mMaxSize);
+        return previous;
+    }
+
+    public void trimToSize(int maxSize) {
+        while (true) {
+            K key;
+            V value;
+            synchronized (this) {
+                if (mSize <= maxSize || mMap.isEmpty()) {
+                    break;
+                }
+                Map.Entry<K, V> toEvict = mMap.entrySet().iterator().next();
+                key = toEvict.getKey();
+                value = toEvict.getValue();
+                mMap.remove(key);
+                mSize -= safeSizeOf(key, value);
+                mEvictionCount++;
+            }
+            entryRemoved(true, key, value, null);
+        }
+    }
+
+    public final V remove(K key) {
+        V previous;
+        synchronized (this) {
+            previous = mMap.remove(key);
+            if (previous != null) {
+                mSize -= safeSizeOf(key, previous);
+            }
+        }
+        if (previous != null) {
+            entryRemoved(false, key, previous, null);
+        }
+        return previous;
+    }
+
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public synchronized final int size() {
+        return mSize;
+    }
+
+    public synchronized final int maxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized final int hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized final int missCount() {
+        return mMissCount;
+    }
+
+    public synchronized final int putCount() {
+        return mPutCount;
+    }
+
+    public synchronized final int evictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized final Map<K, V> snapshot() {
+        return new LinkedHashMap<K, V>(mMap);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.android.gms.maps.model;
+
+/**
+ * JVM stand-in for the Play services CameraPosition.
+ */
+public final class CameraPosition {
+    public final LatLng target;
+    public final float zoom;
+    public final float tilt;
+    public final float bearing;
+
+    public CameraPosition(LatLng target, float zoom, float tilt, float bearing) {
+        this.target = target;
+        this.zoom = zoom;
+        this.tilt = tilt;
+        this.bearing = bearing;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.android.gms.maps.model;
+
+/**
+ * JVM stand-in for the Play services LatLng, with the same clamping and wrapping rules.
+ */
+public final class LatLng {
+    public final double latitude;
+    public final double longitude;
+
+    public LatLng(double latitude, double longitude) {
+        if (-180 <= longitude && longitude < 180) {
+            this.longitude = longitude;
+        } else {
+            this.longitude = ((longitude - 180) % 360 + 360) % 360 - 180;
+        }
+        this.latitude = Math.max(-90, Math.min(90, latitude));
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(latitude);
+        int result = 31 + (int) (bits ^ (bits >>> 32));
+        bits = Double.doubleToLongBits(longitude);
+        return result * 31 + (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LatLng)) {
+            return false;
+        }
+        LatLng that = (LatLng) other;
+        return Double.doubleToLongBits(latitude) == Double.doubleToLongBits(that.latitude)
+                && Double.doubleToLongBits(longitude) == Double.doubleToLongBits(that.longitude);
+    }
+
+    @Override
+    public String toString() {
+        return "lat/lng: (" + latitude + "," + longitude + ")";
+    }
+}
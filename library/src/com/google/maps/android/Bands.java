@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs work over a range of rows, split into contiguous bands that are processed in parallel.
+ * Shared by the clustering and heatmap code; not intended for use outside this library.
+ */
+public final class Bands {
+    /**
+     * Work on the rows [from, to).
+     */
+    public interface Task {
+        void run(int from, int to);
+    }
+
+    private Bands() {
+    }
+
+    /**
+     * @return how many bands to split rows into: at most parallelism, with at least minRows rows
+     * each, and 1 if there is no executor.
+     */
+    public static int count(Executor executor, int parallelism, int rows, int minRows) {
+        if (executor == null || parallelism <= 1) {
+            return 1;
+        }
+        return Math.max(1, Math.min(parallelism, rows / minRows));
+    }
+
+    /**
+     * Splits the rows [from, to) into bands and runs the task on each, returning once all are
+     * done. The calling thread works on bands too, so this completes even if the executor never
+     * runs any of them.
+     */
+    public static void run(Executor executor, int bands, final int from, final int to, final Task task) {
+        if (bands <= 1) {
+            task.run(from, to);
+            return;
+        }
+        final int count = bands;
+        final AtomicInteger nextBand = new AtomicInteger();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        final CountDownLatch done = new CountDownLatch(count);
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int band;
+                while ((band = nextBand.getAndIncrement()) < count) {
+                    try {
+                        task.run(from + (to - from) * band / count, from + (to - from) * (band + 1) / count);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+
+        try {
+            for (int i = 1; i < count; i++) {
+                executor.execute(worker);
+            }
+        } catch (RejectedExecutionException e) {
+            // The calling thread picks up the remaining bands.
+        }
+        worker.run();
+
+        // Bands claimed by other threads are already running, so this wait is bounded.
+        boolean interrupted = false;
+        while (done.getCount() > 0) {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+}
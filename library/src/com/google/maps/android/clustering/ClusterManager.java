@@ -19,9 +19,13 @@ package com.google.maps.android.clustering;
 import android.content.Context;
 import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
 
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.model.CameraPosition;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.maps.android.MarkerManager;
 import com.google.maps.android.clustering.algo.Algorithm;
@@ -29,10 +33,18 @@ import com.google.maps.android.clustering.algo.NonHierarchicalDistanceBasedAlgor
 import com.google.maps.android.clustering.algo.PreCachingAlgorithmDecorator;
 import com.google.maps.android.clustering.algo.ScreenBasedAlgorithm;
 import com.google.maps.android.clustering.algo.ScreenBasedAlgorithmAdapter;
+import com.google.maps.android.clustering.algo.SearchableAlgorithm;
+import com.google.maps.android.clustering.view.BaseClusterRenderer;
 import com.google.maps.android.clustering.view.ClusterRenderer;
 import com.google.maps.android.clustering.view.FastClusterRenderer;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -42,9 +54,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * <p/>
  * ClusterManager should be added to the map as an: <ul> <li>{@link com.google.android.gms.maps.GoogleMap.OnCameraIdleListener}</li>
  * <li>{@link com.google.android.gms.maps.GoogleMap.OnMarkerClickListener}</li> </ul>
+ * and, with {@link #setPredictiveRendering(boolean)}, as a
+ * {@link com.google.android.gms.maps.GoogleMap.OnCameraMoveListener}.
  */
 public class ClusterManager<T extends ClusterItem> implements
         GoogleMap.OnCameraIdleListener,
+        GoogleMap.OnCameraMoveListener,
         GoogleMap.OnMarkerClickListener,
         GoogleMap.OnInfoWindowClickListener {
 
@@ -52,6 +67,8 @@ public class ClusterManager<T extends ClusterItem> implements
     private final MarkerManager.Collection mMarkers;
     private final MarkerManager.Collection mClusterMarkers;
 
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
     private ScreenBasedAlgorithm<T> mAlgorithm;
     private final ReadWriteLock mAlgorithmLock = new ReentrantReadWriteLock();
     private ClusterRenderer<T> mRenderer;
@@ -59,8 +76,44 @@ public class ClusterManager<T extends ClusterItem> implements
     private GoogleMap mMap;
     private CameraPosition mPreviousCameraPosition;
     private ClusterTask mClusterTask;
+
+    /**
+     * The clusters most recently passed to the renderer.
+     */
+    private Set<? extends Cluster<T>> mClusters;
+
+    /**
+     * {@link #mClusters} indexed for {@link #findCluster}, built when first needed.
+     */
+    private NearestFinder.Clusters<T> mClusterIndex;
     private final ReadWriteLock mClusterTaskLock = new ReentrantReadWriteLock();
 
+    /**
+     * Runs cluster() requested from other threads on the main thread, as it reads the camera
+     * position.
+     */
+    private final CoalescingRequest mClusterRequest = new CoalescingRequest(Looper.getMainLooper(), new Runnable() {
+        @Override
+        public void run() {
+            cluster();
+        }
+    });
+
+    /**
+     * Predicted zoom levels closer than this to the current or previously predicted one are not
+     * worth preparing clusters for.
+     */
+    private static final float MIN_PREDICTED_ZOOM_CHANGE = 0.5f;
+
+    /**
+     * Predicts the zoom level a gesture will end at, so its clusters can be prepared early.
+     * Only used on the main thread.
+     */
+    private boolean mPredictiveRendering;
+    private final ZoomPredictor mZoomPredictor = new ZoomPredictor();
+    private float mPredictedZoom = Float.NaN;
+    private PredictionTask mPredictionTask;
+
     private OnClusterItemClickListener<T> mOnClusterItemClickListener;
     private OnClusterInfoWindowClickListener<T> mOnClusterInfoWindowClickListener;
     private OnClusterItemInfoWindowClickListener<T> mOnClusterItemInfoWindowClickListener;
@@ -164,6 +217,53 @@ public class ClusterManager<T extends ClusterItem> implements
 
     }
 
+    /**
+     * Adds items from a source that may not fit in memory at once, such as a database cursor or
+     * a streaming parser. Items are committed to the algorithm in batches, and the algorithm is
+     * unlocked between batches, so clustering can go on while items are still being read. May be
+     * called from any thread, and returns once the source is exhausted.
+     *
+     * @param items        the items to add.
+     * @param batchSize    the number of items to add per batch.
+     * @param clusterEvery re-cluster after every this many items, so that the first items show on
+     *                     the map before the rest are read; 0 to only re-cluster at the end.
+     */
+    public void addItems(Iterator<T> items, int batchSize, int clusterEvery) {
+        ItemSink<T> sink = newItemSink(batchSize, clusterEvery);
+        while (items.hasNext()) {
+            sink.add(items.next());
+        }
+        sink.close();
+    }
+
+    /**
+     * Adds items in batches; see {@link #addItems(Iterator, int, int)}.
+     */
+    public void addItems(Iterable<T> items, int batchSize, int clusterEvery) {
+        addItems(items.iterator(), batchSize, clusterEvery);
+    }
+
+    /**
+     * Creates a sink that items can be pushed to as they arrive, e.g. from network callbacks. It
+     * commits them in batches as {@link #addItems(Iterator, int, int)} does.
+     *
+     * @param batchSize    the number of items to add per batch.
+     * @param clusterEvery re-cluster after every this many items; 0 to only re-cluster on close.
+     */
+    public ItemSink<T> newItemSink(int batchSize, int clusterEvery) {
+        return new ItemSink<T>(new ItemSink.Target<T>() {
+            @Override
+            public void addItems(Collection<T> items) {
+                ClusterManager.this.addItems(items);
+            }
+
+            @Override
+            public void requestCluster() {
+                mClusterRequest.request();
+            }
+        }, batchSize, clusterEvery);
+    }
+
     public void addItem(T myItem) {
         mAlgorithmLock.writeLock().lock();
         try {
@@ -182,6 +282,97 @@ public class ClusterManager<T extends ClusterItem> implements
         }
     }
 
+    /**
+     * Finds the item nearest to a point on the screen, e.g. where the map was tapped, whether or
+     * not the item has its own marker. Must be called on the main thread.
+     *
+     * @param screenPoint the point, in screen pixels.
+     * @param toleranceDp how far from the point the item may be, in dp.
+     * @return the nearest item within the tolerance, or null if there is none.
+     */
+    public T findItem(android.graphics.Point screenPoint, float toleranceDp) {
+        return findItem(mMap.getProjection().fromScreenLocation(screenPoint), toleranceDp);
+    }
+
+    /**
+     * Finds the item nearest to a position, using the algorithm's spatial index if it has one
+     * (see {@link SearchableAlgorithm}). Must be called on the main thread.
+     *
+     * @param position    the position, e.g. from an OnMapClickListener.
+     * @param toleranceDp how far from the position the item may be, in dp at the current zoom.
+     * @return the nearest item within the tolerance, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public T findItem(LatLng position, float toleranceDp) {
+        double tolerance = toWorldDistance(toleranceDp);
+        Point point = PROJECTION.toPoint(position);
+
+        mAlgorithmLock.readLock().lock();
+        try {
+            SearchableAlgorithm<T> algorithm = mAlgorithm instanceof SearchableAlgorithm
+                    ? (SearchableAlgorithm<T>) mAlgorithm
+                    : new ScreenBasedAlgorithmAdapter<T>(mAlgorithm);
+            return NearestFinder.findItem(algorithm, point, tolerance);
+        } finally {
+            mAlgorithmLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the displayed cluster nearest to a point on the screen. Must be called on the main
+     * thread.
+     *
+     * @param screenPoint the point, in screen pixels.
+     * @param toleranceDp how far from the point the cluster may be, in dp.
+     * @return the nearest cluster within the tolerance, or null if there is none.
+     */
+    public Cluster<T> findCluster(android.graphics.Point screenPoint, float toleranceDp) {
+        return findCluster(mMap.getProjection().fromScreenLocation(screenPoint), toleranceDp);
+    }
+
+    /**
+     * Finds the displayed cluster nearest to a position. Must be called on the main thread.
+     *
+     * @param position    the position, e.g. from an OnMapClickListener.
+     * @param toleranceDp how far from the position the cluster may be, in dp at the current zoom.
+     * @return the nearest cluster within the tolerance, or null if there is none.
+     */
+    public Cluster<T> findCluster(LatLng position, float toleranceDp) {
+        if (mClusterIndex == null) {
+            if (mClusters == null) {
+                return null;
+            }
+            mClusterIndex = new NearestFinder.Clusters<T>(mClusters);
+        }
+        return mClusterIndex.findNearest(PROJECTION.toPoint(position), toWorldDistance(toleranceDp));
+    }
+
+    /**
+     * @return a distance in dp at the current zoom, in the units of {@link #PROJECTION}.
+     */
+    private double toWorldDistance(float dp) {
+        return dp / (256 * Math.pow(2, mMap.getCameraPosition().zoom));
+    }
+
+    /**
+     * Prepares clusters for the zoom level a zoom gesture is heading to while it is still in
+     * progress, so that they can be shown as soon as it ends. The clusters are computed in the
+     * background, which fills the cache of a {@link PreCachingAlgorithmDecorator}. A
+     * {@link BaseClusterRenderer} with background preparation turned on also builds their marker
+     * options and icons ahead of time, see
+     * {@link BaseClusterRenderer#setBackgroundPreparation(boolean)}. Markers are still only added
+     * to the map once the camera is idle.
+     * <p/>
+     * ClusterManager must also be added to the map as an OnCameraMoveListener for this to work.
+     * Off by default.
+     */
+    public void setPredictiveRendering(boolean predictiveRendering) {
+        mPredictiveRendering = predictiveRendering;
+        if (!predictiveRendering) {
+            cancelPrediction();
+        }
+    }
+
     /**
      * Force a re-cluster. You may want to call this after adding new item(s).
      */
@@ -201,11 +392,69 @@ public class ClusterManager<T extends ClusterItem> implements
         }
     }
 
+    /**
+     * Might prepare clusters for the zoom level the camera is predicted to end at.
+     */
+    @Override
+    public void onCameraMove() {
+        if (!mPredictiveRendering) {
+            return;
+        }
+        CameraPosition position = mMap.getCameraPosition();
+        mZoomPredictor.addSample(position.zoom, SystemClock.uptimeMillis());
+        float predicted = Math.max(mMap.getMinZoomLevel(),
+                Math.min(mMap.getMaxZoomLevel(), mZoomPredictor.predict()));
+        if (Math.abs(predicted - position.zoom) < MIN_PREDICTED_ZOOM_CHANGE) {
+            return;
+        }
+        if (!Float.isNaN(mPredictedZoom) && Math.abs(predicted - mPredictedZoom) < MIN_PREDICTED_ZOOM_CHANGE) {
+            return;
+        }
+        mPredictedZoom = predicted;
+
+        // The area that will be visible at the predicted zoom, around the current target.
+        LatLngBounds visible = mMap.getProjection().getVisibleRegion().latLngBounds;
+        Point northEast = PROJECTION.toPoint(visible.northeast);
+        Point southWest = PROJECTION.toPoint(visible.southwest);
+        Point target = PROJECTION.toPoint(position.target);
+        double scale = Math.pow(2, position.zoom - predicted);
+        double halfWidth = Math.abs(northEast.x - southWest.x) / 2 * scale;
+        double halfHeight = Math.abs(southWest.y - northEast.y) / 2 * scale;
+        Bounds area = new Bounds(target.x - halfWidth, target.x + halfWidth,
+                target.y - halfHeight, target.y + halfHeight);
+
+        if (mPredictionTask != null) {
+            mPredictionTask.cancel(true);
+        }
+        mPredictionTask = new PredictionTask(predicted, area);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            mPredictionTask.execute();
+        } else {
+            mPredictionTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    }
+
+    private void cancelPrediction() {
+        if (mPredictionTask != null) {
+            mPredictionTask.cancel(true);
+            mPredictionTask = null;
+        }
+        mZoomPredictor.reset();
+        mPredictedZoom = Float.NaN;
+    }
+
     /**
      * Might re-cluster.
      */
     @Override
     public void onCameraIdle() {
+        if (mPredictiveRendering) {
+            // Leave a running prediction to finish, as its work may still be used by cluster().
+            mPredictionTask = null;
+            mZoomPredictor.reset();
+            mPredictedZoom = Float.NaN;
+        }
+
         if (mRenderer instanceof GoogleMap.OnCameraIdleListener) {
             ((GoogleMap.OnCameraIdleListener) mRenderer).onCameraIdle();
         }
@@ -233,6 +482,75 @@ public class ClusterManager<T extends ClusterItem> implements
         getMarkerManager().onInfoWindowClick(marker);
     }
 
+    /**
+     * Collects items and adds them to the algorithm in batches. Items are only guaranteed to have
+     * been added after {@link #flush()} or {@link #close()}. A sink must only be used from one
+     * thread at a time.
+     */
+    public static class ItemSink<T extends ClusterItem> {
+        /**
+         * Where a sink commits its batches.
+         */
+        interface Target<T> {
+            void addItems(Collection<T> items);
+
+            /**
+             * Re-clusters soon; may be called from any thread.
+             */
+            void requestCluster();
+        }
+
+        private final Target<T> mTarget;
+        private final int mBatchSize;
+        private final int mClusterEvery;
+        private final List<T> mBatch;
+        private int mAddedSinceCluster;
+
+        ItemSink(Target<T> target, int batchSize, int clusterEvery) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be positive, was " + batchSize);
+            }
+            if (clusterEvery < 0) {
+                throw new IllegalArgumentException("clusterEvery must not be negative, was " + clusterEvery);
+            }
+            mTarget = target;
+            mBatchSize = batchSize;
+            mClusterEvery = clusterEvery;
+            mBatch = new ArrayList<T>(batchSize);
+        }
+
+        public void add(T item) {
+            mBatch.add(item);
+            if (mBatch.size() >= mBatchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Adds the items collected so far to the algorithm.
+         */
+        public void flush() {
+            if (mBatch.isEmpty()) {
+                return;
+            }
+            mTarget.addItems(mBatch);
+            mAddedSinceCluster += mBatch.size();
+            mBatch.clear();
+            if (mClusterEvery > 0 && mAddedSinceCluster >= mClusterEvery) {
+                mAddedSinceCluster = 0;
+                mTarget.requestCluster();
+            }
+        }
+
+        /**
+         * Adds the remaining items to the algorithm and re-clusters.
+         */
+        public void close() {
+            flush();
+            mTarget.requestCluster();
+        }
+    }
+
     /**
      * Runs the clustering algorithm in a background thread, then re-paints when results come back.
      */
@@ -249,10 +567,43 @@ public class ClusterManager<T extends ClusterItem> implements
 
         @Override
         protected void onPostExecute(Set<? extends Cluster<T>> clusters) {
+            mClusters = clusters;
+            mClusterIndex = null;
             mRenderer.onClustersChanged(clusters);
         }
     }
 
+    /**
+     * Computes the clusters for a predicted zoom level in the background and, if the renderer
+     * has background preparation turned on, prepares their markers.
+     */
+    private class PredictionTask extends AsyncTask<Void, Void, Void> {
+        private final float mZoom;
+        private final Bounds mArea;
+
+        private PredictionTask(float zoom, Bounds area) {
+            mZoom = zoom;
+            mArea = area;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Void doInBackground(Void... params) {
+            Set<? extends Cluster<T>> clusters;
+            mAlgorithmLock.readLock().lock();
+            try {
+                clusters = mAlgorithm.getClusters(mZoom);
+            } finally {
+                mAlgorithmLock.readLock().unlock();
+            }
+            ClusterRenderer<T> renderer = mRenderer;
+            if (!isCancelled() && renderer instanceof BaseClusterRenderer) {
+                ((BaseClusterRenderer<T>) renderer).prepare(clusters, mArea);
+            }
+            return null;
+        }
+    }
+
     /**
      * Sets a callback that's invoked when a Cluster is tapped. Note: For this listener to function,
      * the ClusterManager must be added as a click listener to the map.
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.clustering;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a task on a looper's thread when requested from any thread. Requests made before the task
+ * runs are coalesced into a single run.
+ */
+final class CoalescingRequest {
+    private final Handler mHandler;
+    private final Runnable mTask;
+    private final AtomicBoolean mPosted = new AtomicBoolean();
+    private final Runnable mPostedTask = new Runnable() {
+        @Override
+        public void run() {
+            mPosted.set(false);
+            mTask.run();
+        }
+    };
+
+    CoalescingRequest(Looper looper, Runnable task) {
+        mHandler = new Handler(looper);
+        mTask = task;
+    }
+
+    /**
+     * Runs the task right away if called on the looper's thread, otherwise posts it there unless
+     * it is already posted.
+     */
+    void request() {
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            mTask.run();
+        } else if (mPosted.compareAndSet(false, true)) {
+            mHandler.post(mPostedTask);
+        }
+    }
+}
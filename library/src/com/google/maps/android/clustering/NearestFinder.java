@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.clustering;
+
+import com.google.maps.android.clustering.algo.SearchableAlgorithm;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the items and clusters nearest to a point for {@link ClusterManager}. Points are in a
+ * world of width 1 that wraps horizontally, so that a position just east of the antimeridian is
+ * near one just west of it.
+ */
+final class NearestFinder {
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+    private NearestFinder() {
+    }
+
+    /**
+     * Finds the item nearest to a point, searching the algorithm's index on both sides of the
+     * antimeridian if the tolerance crosses it.
+     *
+     * @return the nearest item within the tolerance, or null if there is none.
+     */
+    static <T extends ClusterItem> T findItem(SearchableAlgorithm<T> algorithm, Point point, double tolerance) {
+        T nearest = null;
+        double nearestDistanceSquared = tolerance * tolerance;
+        for (Bounds bounds : getSearchBounds(point, tolerance)) {
+            for (T candidate : algorithm.search(bounds)) {
+                double distanceSquared = distanceSquared(point, PROJECTION.toPoint(candidate.getPosition()));
+                if (distanceSquared <= nearestDistanceSquared) {
+                    nearest = candidate;
+                    nearestDistanceSquared = distanceSquared;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @return the bounds within the tolerance of the point, split where they cross the
+     * antimeridian.
+     */
+    static List<Bounds> getSearchBounds(Point point, double tolerance) {
+        double minY = point.y - tolerance;
+        double maxY = point.y + tolerance;
+        List<Bounds> bounds = new ArrayList<Bounds>(2);
+        if (tolerance >= 0.5) {
+            bounds.add(new Bounds(0, 1, minY, maxY));
+            return bounds;
+        }
+        double minX = point.x - tolerance;
+        double maxX = point.x + tolerance;
+        bounds.add(new Bounds(Math.max(minX, 0), Math.min(maxX, 1), minY, maxY));
+        if (minX < 0) {
+            bounds.add(new Bounds(minX + 1, 1, minY, maxY));
+        } else if (maxX > 1) {
+            bounds.add(new Bounds(0, maxX - 1, minY, maxY));
+        }
+        return bounds;
+    }
+
+    /**
+     * @return the squared distance between two points, taking the shorter way around the world.
+     */
+    static double distanceSquared(Point a, Point b) {
+        double dx = Math.abs(a.x - b.x);
+        dx = Math.min(dx, 1 - dx);
+        double dy = a.y - b.y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * A set of clusters, projected once and sorted by x so that finding the nearest one only
+     * looks at those within the tolerance horizontally.
+     */
+    static final class Clusters<T extends ClusterItem> {
+        private final Cluster<T>[] mClusters;
+        private final double[] mX;
+        private final double[] mY;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Clusters(Collection<? extends Cluster<T>> clusters) {
+            final Point[] points = new Point[clusters.size()];
+            Integer[] order = new Integer[points.length];
+            Cluster<T>[] unsorted = clusters.toArray(new Cluster[points.length]);
+            for (int i = 0; i < points.length; i++) {
+                points[i] = PROJECTION.toPoint(unsorted[i].getPosition());
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(points[a].x, points[b].x);
+                }
+            });
+
+            mClusters = new Cluster[points.length];
+            mX = new double[points.length];
+            mY = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                mClusters[i] = unsorted[order[i]];
+                mX[i] = points[order[i]].x;
+                mY[i] = points[order[i]].y;
+            }
+        }
+
+        /**
+         * @return the cluster nearest to the point within the tolerance, or null if there is none.
+         */
+        Cluster<T> findNearest(Point point, double tolerance) {
+            Cluster<T> nearest = null;
+            double nearestDistanceSquared = tolerance * tolerance;
+            for (Bounds bounds : getSearchBounds(point, tolerance)) {
+                for (int i = lowerBound(bounds.minX); i < mX.length && mX[i] <= bounds.maxX; i++) {
+                    if (mY[i] < bounds.minY || mY[i] > bounds.maxY) {
+                        continue;
+                    }
+                    double distanceSquared = distanceSquared(point, new Point(mX[i], mY[i]));
+                    if (distanceSquared <= nearestDistanceSquared) {
+                        nearest = mClusters[i];
+                        nearestDistanceSquared = distanceSquared;
+                    }
+                }
+            }
+            return nearest;
+        }
+
+        /**
+         * @return the index of the first cluster with x at least minX.
+         */
+        private int lowerBound(double minX) {
+            int low = 0;
+            int high = mX.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (mX[mid] < minX) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
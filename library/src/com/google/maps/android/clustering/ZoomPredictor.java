@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+/**
+ * Predicts where a zoom gesture will end from the zoom levels seen while it is in progress.
+ * <p/>
+ * The zoom velocity is smoothed over successive samples, and the gesture is assumed to continue
+ * at that velocity, decaying exponentially, as a fling does.
+ */
+class ZoomPredictor {
+    /**
+     * How much of each new velocity sample to take into the smoothed velocity.
+     */
+    private static final float SMOOTHING = 0.5f;
+
+    /**
+     * The time constant of the assumed decay, in seconds. A gesture moving at v zoom levels per
+     * second is predicted to go v * DECAY_SECONDS further.
+     */
+    private static final float DECAY_SECONDS = 0.3f;
+
+    /**
+     * Samples further apart than this are treated as separate gestures.
+     */
+    private static final long MAX_SAMPLE_GAP_MS = 200;
+
+    private float mZoom = Float.NaN;
+    private long mTimeMillis;
+    private float mVelocity;
+
+    /**
+     * @param zoom       the current zoom level.
+     * @param timeMillis a monotonic timestamp of the sample, in milliseconds.
+     */
+    void addSample(float zoom, long timeMillis) {
+        long elapsed = timeMillis - mTimeMillis;
+        if (Float.isNaN(mZoom) || elapsed > MAX_SAMPLE_GAP_MS) {
+            mVelocity = 0;
+        } else if (elapsed > 0) {
+            float velocity = (zoom - mZoom) * 1000f / elapsed;
+            mVelocity += SMOOTHING * (velocity - mVelocity);
+        }
+        mZoom = zoom;
+        mTimeMillis = timeMillis;
+    }
+
+    /**
+     * @return the smoothed zoom velocity, in zoom levels per second.
+     */
+    float getVelocity() {
+        return mVelocity;
+    }
+
+    /**
+     * @return the predicted final zoom level, or NaN if there have been no samples.
+     */
+    float predict() {
+        return mZoom + mVelocity * DECAY_SECONDS;
+    }
+
+    void reset() {
+        mZoom = Float.NaN;
+        mVelocity = 0;
+    }
+}
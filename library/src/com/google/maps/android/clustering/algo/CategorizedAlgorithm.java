@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.quadtree.PointQuadTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clusters items of several categories, e.g. restaurants, shops and hotels, from a single index.
+ * This replaces one ClusterManager per category: items are projected and indexed once and all
+ * categories are clustered in one pass over them.
+ * <p/>
+ * By default items only cluster with items of the same category, so every cluster has a single
+ * category. With {@link #setMixCategories(boolean)} clusters may hold any categories, and
+ * {@link CategorizedCluster#getCategoryCounts()} gives the breakdown.
+ * <p/>
+ * Categories can be hidden with {@link #setCategoryVisible(int, boolean)}, which takes effect on
+ * the next {@link #getClusters(double)} without re-indexing. Since that is not an item change,
+ * don't wrap this algorithm in a {@link PreCachingAlgorithmDecorator}.
+ * <p/>
+ * Clusters are formed as by {@link NonHierarchicalDistanceBasedAlgorithm}.
+ */
+public class CategorizedAlgorithm<T extends ClusterItem> implements SearchableAlgorithm<T> {
+    private static final int DEFAULT_MAX_DISTANCE_AT_ZOOM = 100; // essentially 100 dp.
+
+    /**
+     * Assigns items to categories.
+     */
+    public interface Categorizer<T extends ClusterItem> {
+        /**
+         * @return the category of an item, from 0 to the category count - 1. Must not change
+         * while the item is in the algorithm.
+         */
+        int getCategory(T item);
+    }
+
+    private final Categorizer<T> mCategorizer;
+    private final int mCategoryCount;
+
+    /**
+     * Written from the UI thread and read while clustering, so replaced rather than modified.
+     */
+    private volatile boolean[] mVisibleCategories;
+
+    private volatile boolean mMixCategories;
+
+    private int mMaxDistance = DEFAULT_MAX_DISTANCE_AT_ZOOM;
+
+    private ClusterAggregator<T, ?> mAggregator;
+
+    /**
+     * Items in the order they were added. Any modifications should be synchronized on mQuadTree.
+     */
+    private final Map<T, CategorizedItem<T>> mItems = new LinkedHashMap<T, CategorizedItem<T>>();
+
+    /**
+     * Any modifications should be synchronized on mQuadTree.
+     */
+    private final PointQuadTree<CategorizedItem<T>> mQuadTree =
+            new PointQuadTree<CategorizedItem<T>>(0, 1, 0, 1);
+
+    /**
+     * @param categorizer   assigns items to categories.
+     * @param categoryCount the number of categories.
+     */
+    public CategorizedAlgorithm(Categorizer<T> categorizer, int categoryCount) {
+        if (categoryCount < 1) {
+            throw new IllegalArgumentException("categoryCount must be positive, was " + categoryCount);
+        }
+        mCategorizer = categorizer;
+        mCategoryCount = categoryCount;
+        boolean[] visible = new boolean[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            visible[i] = true;
+        }
+        mVisibleCategories = visible;
+    }
+
+    @Override
+    public void addItem(T item) {
+        int category = mCategorizer.getCategory(item);
+        if (category < 0 || category >= mCategoryCount) {
+            throw new IllegalArgumentException("Category " + category + " out of range for " + item);
+        }
+        CategorizedItem<T> categorizedItem = new CategorizedItem<T>(item, category);
+        synchronized (mQuadTree) {
+            if (mItems.containsKey(item)) {
+                return;
+            }
+            mItems.put(item, categorizedItem);
+            mQuadTree.add(categorizedItem);
+        }
+    }
+
+    @Override
+    public void addItems(Collection<T> items) {
+        for (T item : items) {
+            addItem(item);
+        }
+    }
+
+    @Override
+    public void clearItems() {
+        synchronized (mQuadTree) {
+            mItems.clear();
+            mQuadTree.clear();
+        }
+    }
+
+    @Override
+    public void removeItem(T item) {
+        synchronized (mQuadTree) {
+            CategorizedItem<T> categorizedItem = mItems.remove(item);
+            if (categorizedItem != null) {
+                mQuadTree.remove(categorizedItem);
+            }
+        }
+    }
+
+    @Override
+    public Set<? extends Cluster<T>> getClusters(double zoom) {
+        final boolean[] visible = mVisibleCategories;
+        final boolean mix = mMixCategories;
+        final ClusterAggregator<T, ?> aggregator = mAggregator;
+
+        final Set<Cluster<T>> results;
+        synchronized (mQuadTree) {
+            results = DistanceClustering.cluster(mQuadTree, mItems.values(), mMaxDistance, zoom,
+                    new DistanceClustering.Filter<CategorizedItem<T>>() {
+                        @Override
+                        public boolean accept(CategorizedItem<T> candidate, CategorizedItem<T> item) {
+                            return visible[item.mCategory] && (mix || item.mCategory == candidate.mCategory);
+                        }
+                    },
+                    new DistanceClustering.ClusterFactory<T, CategorizedItem<T>>() {
+                        @Override
+                        public StaticCluster<T> create(CategorizedItem<T> candidate) {
+                            return new CategorizedCluster<T>(candidate.getPosition(), aggregator, mCategorizer,
+                                    mCategoryCount);
+                        }
+                    });
+        }
+        if (aggregator != null) {
+            DistanceClustering.computeAggregates(results);
+        }
+        return results;
+    }
+
+    /**
+     * Shows or hides the items of a category from the next {@link #getClusters(double)}.
+     */
+    public void setCategoryVisible(int category, boolean visible) {
+        boolean[] visibleCategories = mVisibleCategories.clone();
+        visibleCategories[category] = visible;
+        mVisibleCategories = visibleCategories;
+    }
+
+    public boolean isCategoryVisible(int category) {
+        return mVisibleCategories[category];
+    }
+
+    /**
+     * @param mix whether items of different categories may share a cluster. Defaults to false.
+     */
+    public void setMixCategories(boolean mix) {
+        mMixCategories = mix;
+    }
+
+    public int getCategoryCount() {
+        return mCategoryCount;
+    }
+
+    /**
+     * @return the number of items of each category in any cluster returned by this algorithm,
+     * indexed by category.
+     */
+    public int[] getCategoryCounts(Cluster<T> cluster) {
+        if (cluster instanceof CategorizedCluster) {
+            return ((CategorizedCluster<T>) cluster).getCategoryCounts();
+        }
+        int[] counts = new int[mCategoryCount];
+        for (T item : cluster.getItems()) {
+            counts[mCategorizer.getCategory(item)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * @return the items in the bounds whose category is visible.
+     */
+    @Override
+    public Collection<T> search(Bounds bounds) {
+        boolean[] visible = mVisibleCategories;
+        List<T> items = new ArrayList<T>();
+        synchronized (mQuadTree) {
+            for (CategorizedItem<T> categorizedItem : mQuadTree.search(bounds)) {
+                if (visible[categorizedItem.mCategory]) {
+                    items.add(categorizedItem.mClusterItem);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return all items, whether or not their category is visible.
+     */
+    @Override
+    public Collection<T> getItems() {
+        synchronized (mQuadTree) {
+            return new ArrayList<T>(mItems.keySet());
+        }
+    }
+
+    /**
+     * Sets an aggregator to fold the items of each cluster with while clustering.
+     *
+     * @param aggregator the aggregator, or null to stop aggregating.
+     */
+    public void setClusterAggregator(ClusterAggregator<T, ?> aggregator) {
+        mAggregator = aggregator;
+    }
+
+    @Override
+    public void setMaxDistanceBetweenClusteredItems(int maxDistance) {
+        mMaxDistance = maxDistance;
+    }
+
+    @Override
+    public int getMaxDistanceBetweenClusteredItems() {
+        return mMaxDistance;
+    }
+
+    /**
+     * An indexed item and its category.
+     */
+    private static class CategorizedItem<T extends ClusterItem> extends NonHierarchicalDistanceBasedAlgorithm.QuadItem<T> {
+        private final int mCategory;
+
+        private CategorizedItem(T item, int category) {
+            super(item);
+            mCategory = category;
+        }
+    }
+}
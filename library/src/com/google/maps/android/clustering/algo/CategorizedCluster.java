@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.ClusterItem;
+
+/**
+ * A {@link StaticCluster} that keeps count of its items per category.
+ */
+public class CategorizedCluster<T extends ClusterItem> extends StaticCluster<T> {
+    private final CategorizedAlgorithm.Categorizer<T> mCategorizer;
+    private final int[] mCategoryCounts;
+
+    CategorizedCluster(LatLng center, ClusterAggregator<T, ?> aggregator,
+                       CategorizedAlgorithm.Categorizer<T> categorizer, int categoryCount) {
+        super(center, aggregator);
+        mCategorizer = categorizer;
+        mCategoryCounts = new int[categoryCount];
+    }
+
+    @Override
+    public boolean add(T t) {
+        boolean added = super.add(t);
+        if (added) {
+            mCategoryCounts[mCategorizer.getCategory(t)]++;
+        }
+        return added;
+    }
+
+    @Override
+    public boolean remove(T t) {
+        boolean removed = super.remove(t);
+        if (removed) {
+            mCategoryCounts[mCategorizer.getCategory(t)]--;
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of items of a category in this cluster.
+     */
+    public int getCategoryCount(int category) {
+        return mCategoryCounts[category];
+    }
+
+    /**
+     * @return the number of items of each category in this cluster, indexed by category.
+     */
+    public int[] getCategoryCounts() {
+        return mCategoryCounts.clone();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Folds the items of each cluster into a single value while the clusters are built, so that
+ * renderers can read per-cluster statistics (e.g. the maximum severity of the items) without
+ * iterating over every cluster's items on the UI thread.
+ * <p/>
+ * Values are folded in no particular grouping, so {@link #reduce(Object, Object)} must be
+ * associative. Pass the aggregator to an algorithm, e.g.
+ * {@link NonHierarchicalDistanceBasedAlgorithm#setClusterAggregator(ClusterAggregator)}, then
+ * read values in the renderer with {@link #get(Cluster)}.
+ *
+ * @param <T> type of the items.
+ * @param <A> type of the aggregated value.
+ */
+public abstract class ClusterAggregator<T extends ClusterItem, A> {
+
+    /**
+     * @return the value for a cluster containing just the given item.
+     */
+    public abstract A map(T item);
+
+    /**
+     * Combines the values of two groups of items. Must be associative.
+     */
+    public abstract A reduce(A a, A b);
+
+    /**
+     * Gets the aggregated value of a cluster. This is the value computed during clustering if the
+     * cluster was built with this aggregator; otherwise the cluster's items are folded now.
+     *
+     * @return the aggregated value, or null if the cluster is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public final A get(Cluster<T> cluster) {
+        if (cluster instanceof StaticCluster && ((StaticCluster<T>) cluster).getAggregator() == this) {
+            return (A) ((StaticCluster<T>) cluster).getAggregate();
+        }
+        return fold(cluster.getItems());
+    }
+
+    /**
+     * @return the aggregated value of the items, or null if there are none.
+     */
+    final A fold(Collection<T> items) {
+        Iterator<T> iterator = items.iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        A result = map(iterator.next());
+        while (iterator.hasNext()) {
+            result = reduce(result, map(iterator.next()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches cluster sets by zoom step within a budget of estimated bytes.
+ * <p/>
+ * Eviction is GreedyDual-Size: each entry is worth the time it took to compute per byte it
+ * holds, plus an inflation value that rises with every eviction so that entries which haven't
+ * been read in a while lose out to recently read ones. Sets that were cheap to compute for their
+ * size, such as the many singletons at high zoom, go first.
+ * <p/>
+ * Thread-safe.
+ */
+class ClusterCache<T extends ClusterItem> {
+    /**
+     * Rough cost of a cached set, each of its clusters (the cluster, its item list and position,
+     * and the set's entry for it) and each reference to an item.
+     */
+    private static final long SET_BYTES = 64;
+    private static final long CLUSTER_BYTES = 160;
+    private static final long ITEM_BYTES = 8;
+
+    private final long mMaxBytes;
+    private final Map<Integer, Entry<T>> mEntries = new HashMap<Integer, Entry<T>>();
+    private long mBytes;
+    private double mInflation;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    ClusterCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cached clusters for the step, or null. Counts as a hit or a miss.
+     */
+    synchronized Set<? extends Cluster<T>> get(int step) {
+        Entry<T> entry = mEntries.get(step);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        entry.mPriority = mInflation + entry.mValue;
+        return entry.mClusters;
+    }
+
+    /**
+     * @return the cached clusters for the step, or null, without affecting the statistics or
+     * the eviction order.
+     */
+    synchronized Set<? extends Cluster<T>> peek(int step) {
+        Entry<T> entry = mEntries.get(step);
+        return entry == null ? null : entry.mClusters;
+    }
+
+    /**
+     * Caches clusters, evicting others as needed to stay within the budget. Sets larger than the
+     * whole budget are not cached.
+     *
+     * @param costNanos how long the clusters took to compute.
+     */
+    synchronized void put(int step, Set<? extends Cluster<T>> clusters, long costNanos) {
+        Entry<T> previous = mEntries.remove(step);
+        if (previous != null) {
+            mBytes -= previous.mBytes;
+        }
+        long bytes = sizeOf(clusters);
+        if (bytes > mMaxBytes) {
+            return;
+        }
+        while (mBytes + bytes > mMaxBytes) {
+            evictOne();
+        }
+        Entry<T> entry = new Entry<T>(clusters, bytes, (double) Math.max(1, costNanos) / bytes);
+        entry.mPriority = mInflation + entry.mValue;
+        mEntries.put(step, entry);
+        mBytes += bytes;
+    }
+
+    /**
+     * Empties the cache. Entries removed this way are not counted as evictions.
+     */
+    synchronized void clear() {
+        mEntries.clear();
+        mBytes = 0;
+        mInflation = 0;
+    }
+
+    synchronized long size() {
+        return mBytes;
+    }
+
+    synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    synchronized int missCount() {
+        return mMissCount;
+    }
+
+    synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Evicts the entry of lowest priority. There are only ever a few entries, one per zoom step
+     * visited, so a scan is cheaper than keeping them ordered.
+     */
+    private void evictOne() {
+        Map.Entry<Integer, Entry<T>> lowest = null;
+        for (Map.Entry<Integer, Entry<T>> candidate : mEntries.entrySet()) {
+            if (lowest == null || candidate.getValue().mPriority < lowest.getValue().mPriority) {
+                lowest = candidate;
+            }
+        }
+        Entry<T> evicted = mEntries.remove(lowest.getKey());
+        mBytes -= evicted.mBytes;
+        mInflation = evicted.mPriority;
+        mEvictionCount++;
+    }
+
+    static long sizeOf(Set<? extends Cluster<?>> clusters) {
+        long items = 0;
+        for (Cluster<?> cluster : clusters) {
+            items += cluster.getSize();
+        }
+        return SET_BYTES + clusters.size() * CLUSTER_BYTES + items * ITEM_BYTES;
+    }
+
+    private static class Entry<T extends ClusterItem> {
+        private final Set<? extends Cluster<T>> mClusters;
+        private final long mBytes;
+
+        /**
+         * Compute time per byte.
+         */
+        private final double mValue;
+        private double mPriority;
+
+        private Entry(Set<? extends Cluster<T>> clusters, long bytes, double value) {
+            mClusters = clusters;
+            mBytes = bytes;
+            mValue = value;
+        }
+    }
+}
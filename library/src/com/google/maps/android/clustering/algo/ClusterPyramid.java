@@ -0,0 +1,434 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clusters for a fixed set of items, precomputed for a range of zoom levels and stored in a
+ * file. Apps with a static catalogue of items can build the file once, e.g. at build time or
+ * on first launch, with {@link #write(Algorithm, List, int, int, File)} and then {@link #load}
+ * it on every start instead of re-indexing and re-clustering all items.
+ * <p/>
+ * The file is memory mapped rather than read into objects; loading only scans it once to check
+ * that it is intact. Clusters are created only for the zoom level requested, and their items are
+ * only looked up when {@link Cluster#getItems()} is called. Items are stored as indexes into the
+ * item list, so the same list, in the same order, must be passed when loading.
+ * <p/>
+ * The set of items can't be changed; use
+ * {@link com.google.maps.android.clustering.ClusterManager#setAlgorithm(Algorithm)} before
+ * adding any items to the ClusterManager. So that a pyramid can stand in for any other algorithm,
+ * its mutators don't throw: adding and removing items, and setting the distance, are ignored,
+ * and {@link #clearItems()} empties the pyramid for good.
+ */
+public class ClusterPyramid<T extends ClusterItem> implements Algorithm<T> {
+    /**
+     * "AMUC"
+     */
+    private static final int MAGIC = 0x414d5543;
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version, item count, max distance, min zoom, max zoom.
+     */
+    private static final int HEADER_SIZE = 6 * 4;
+
+    /**
+     * Latitude, longitude, item count, index of the first item id.
+     */
+    private static final int CLUSTER_RECORD_SIZE = 8 + 8 + 4 + 4;
+
+    private final ByteBuffer mBuffer;
+    private final List<T> mItems;
+    private final int mMaxDistance;
+    private final int mMinZoom;
+    private final int mMaxZoom;
+
+    /**
+     * Position in mBuffer of each zoom level, from mMinZoom.
+     */
+    private final long[] mLevelOffsets;
+
+    private volatile boolean mCleared;
+
+    private ClusterPyramid(ByteBuffer buffer, List<T> items) throws IOException {
+        mBuffer = buffer;
+        mItems = Collections.unmodifiableList(items);
+
+        if (buffer.capacity() < HEADER_SIZE + 8 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a cluster pyramid file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported cluster pyramid version " + buffer.getInt(4));
+        }
+        int itemCount = buffer.getInt(8);
+        if (itemCount != items.size()) {
+            throw new IllegalArgumentException("The file has " + itemCount + " items, but "
+                    + items.size() + " were given");
+        }
+        mMaxDistance = buffer.getInt(12);
+        mMinZoom = buffer.getInt(16);
+        mMaxZoom = buffer.getInt(20);
+        if (mMinZoom < 0 || mMaxZoom < mMinZoom) {
+            throw new IOException("Corrupt cluster pyramid: zoom range " + mMinZoom + "-" + mMaxZoom);
+        }
+
+        // The table of level offsets is the last thing before its own offset.
+        long levels = (long) mMaxZoom - mMinZoom + 1;
+        long tableOffset = buffer.getLong(buffer.capacity() - 8);
+        if (tableOffset < HEADER_SIZE || tableOffset + levels * 8 + 8 != buffer.capacity()) {
+            throw new IOException("Corrupt cluster pyramid: table at " + tableOffset + " for " + levels
+                    + " levels in " + buffer.capacity() + " bytes");
+        }
+        mLevelOffsets = new long[(int) levels];
+        for (int i = 0; i < mLevelOffsets.length; i++) {
+            mLevelOffsets[i] = buffer.getLong((int) tableOffset + i * 8);
+        }
+
+        // Levels follow each other, and each must hold at least its cluster records.
+        for (int i = 0; i < mLevelOffsets.length; i++) {
+            long offset = mLevelOffsets[i];
+            long end = i + 1 < mLevelOffsets.length ? mLevelOffsets[i + 1] : tableOffset;
+            if (offset < HEADER_SIZE || offset + 4 > end || end > tableOffset) {
+                throw new IOException("Corrupt cluster pyramid: level " + (mMinZoom + i) + " at " + offset);
+            }
+            int clusterCount = buffer.getInt((int) offset);
+            if (clusterCount < 0 || offset + 4 + (long) clusterCount * CLUSTER_RECORD_SIZE > end) {
+                throw new IOException("Corrupt cluster pyramid: " + clusterCount + " clusters at level "
+                        + (mMinZoom + i));
+            }
+            checkItems(mMinZoom + i, (int) offset + 4, clusterCount, (int) end, itemCount);
+        }
+    }
+
+    /**
+     * Checks that the clusters of a level only refer to item ids within the level, and that the
+     * ids are of given items, so that a corrupt file fails to load rather than to render.
+     *
+     * @param records   position of the level's first cluster record.
+     * @param end       position of the end of the level.
+     * @param itemCount the number of items.
+     */
+    private void checkItems(int zoom, int records, int clusterCount, int end, int itemCount)
+            throws IOException {
+        int itemIds = records + clusterCount * CLUSTER_RECORD_SIZE;
+        if ((end - itemIds) % 4 != 0) {
+            throw new IOException("Corrupt cluster pyramid: partial item id at level " + zoom);
+        }
+        long idCount = (end - itemIds) / 4;
+        for (int i = 0; i < clusterCount; i++) {
+            int record = records + i * CLUSTER_RECORD_SIZE;
+            int size = mBuffer.getInt(record + 16);
+            int firstItem = mBuffer.getInt(record + 20);
+            if (size < 0 || firstItem < 0 || (long) firstItem + size > idCount) {
+                throw new IOException("Corrupt cluster pyramid: " + size + " items from "
+                        + firstItem + " in a cluster at level " + zoom + ", which has " + idCount);
+            }
+        }
+        for (int position = itemIds; position < end; position += 4) {
+            int id = mBuffer.getInt(position);
+            if (id < 0 || id >= itemCount) {
+                throw new IOException("Corrupt cluster pyramid: item id " + id + " at level " + zoom
+                        + ", but there are " + itemCount + " items");
+            }
+        }
+    }
+
+    /**
+     * Clusters the items at each zoom level in [minZoom, maxZoom] and writes the result to a file.
+     *
+     * @param algorithm the algorithm to cluster with. It must already contain exactly the items.
+     * @param items     the items, in the order they will be passed to {@link #load}.
+     * @param file      the file to write; it is replaced if it exists, and deleted if writing fails.
+     */
+    public static <T extends ClusterItem> void write(Algorithm<T> algorithm, List<T> items,
+                                                     int minZoom, int maxZoom, File file) throws IOException {
+        if (minZoom < 0 || maxZoom < minZoom) {
+            throw new IllegalArgumentException("Invalid zoom range " + minZoom + "-" + maxZoom);
+        }
+        // Clusters hold the very instances that were added, so look them up by identity.
+        Map<T, Integer> ids = new IdentityHashMap<T, Integer>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ids.put(items.get(i), i);
+        }
+
+        long[] levelOffsets = new long[maxZoom - minZoom + 1];
+        long tableSize = levelOffsets.length * 8L + 8;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        boolean complete = false;
+        try {
+            long position = 0;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(items.size());
+            out.writeInt(algorithm.getMaxDistanceBetweenClusteredItems());
+            out.writeInt(minZoom);
+            out.writeInt(maxZoom);
+            position += HEADER_SIZE;
+
+            for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+                levelOffsets[zoom - minZoom] = position;
+                Set<? extends Cluster<T>> clusters = algorithm.getClusters(zoom);
+
+                long itemCount = 0;
+                for (Cluster<T> cluster : clusters) {
+                    itemCount += cluster.getSize();
+                }
+                position += 4 + (long) clusters.size() * CLUSTER_RECORD_SIZE + itemCount * 4;
+                checkSize(position + tableSize);
+
+                out.writeInt(clusters.size());
+                int firstItem = 0;
+                for (Cluster<T> cluster : clusters) {
+                    out.writeDouble(cluster.getPosition().latitude);
+                    out.writeDouble(cluster.getPosition().longitude);
+                    out.writeInt(cluster.getSize());
+                    out.writeInt(firstItem);
+                    firstItem += cluster.getSize();
+                }
+                for (Cluster<T> cluster : clusters) {
+                    for (T item : cluster.getItems()) {
+                        Integer id = ids.get(item);
+                        if (id == null) {
+                            throw new IllegalArgumentException("Clustered item is not in the item list: " + item);
+                        }
+                        out.writeInt(id);
+                    }
+                }
+            }
+
+            for (long offset : levelOffsets) {
+                out.writeLong(offset);
+            }
+            out.writeLong(position);
+            out.close();
+            complete = true;
+        } finally {
+            if (!complete) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // The failure that got us here is the one to report.
+                }
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Pyramids are mapped into a single buffer, so they must fit in an int.
+     */
+    private static void checkSize(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Cluster pyramid is too large to map: " + size + " bytes");
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(Algorithm, List, int, int, File)}.
+     *
+     * @param items the same items, in the same order, as were written.
+     */
+    public static <T extends ClusterItem> ClusterPyramid<T> load(File file, List<T> items) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            checkSize(channel.size());
+            // The mapping stays valid after the channel is closed.
+            return new ClusterPyramid<T>(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), items);
+        } finally {
+            raf.close();
+        }
+    }
+
+    public int getMinZoom() {
+        return mMinZoom;
+    }
+
+    public int getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    /**
+     * Zoom levels outside of the stored range use the nearest stored level.
+     */
+    @Override
+    public Set<? extends Cluster<T>> getClusters(double zoom) {
+        if (mCleared) {
+            return Collections.<MappedCluster>emptySet();
+        }
+        int level = Math.max(mMinZoom, Math.min(mMaxZoom, (int) zoom)) - mMinZoom;
+        int offset = (int) mLevelOffsets[level];
+
+        int clusterCount = mBuffer.getInt(offset);
+        int records = offset + 4;
+        int itemIds = records + clusterCount * CLUSTER_RECORD_SIZE;
+
+        Set<MappedCluster> clusters = new HashSet<MappedCluster>(clusterCount * 4 / 3 + 1);
+        for (int i = 0; i < clusterCount; i++) {
+            int record = records + i * CLUSTER_RECORD_SIZE;
+            LatLng position = new LatLng(mBuffer.getDouble(record), mBuffer.getDouble(record + 8));
+            int size = mBuffer.getInt(record + 16);
+            int firstItem = mBuffer.getInt(record + 20);
+            clusters.add(new MappedCluster(position, size, itemIds + firstItem * 4));
+        }
+        return clusters;
+    }
+
+    @Override
+    public Collection<T> getItems() {
+        if (mCleared) {
+            return Collections.<T>emptyList();
+        }
+        return mItems;
+    }
+
+    @Override
+    public int getMaxDistanceBetweenClusteredItems() {
+        return mMaxDistance;
+    }
+
+    /**
+     * Ignored: the pyramid was built with a fixed distance.
+     */
+    @Override
+    public void setMaxDistanceBetweenClusteredItems(int maxDistance) {
+    }
+
+    /**
+     * Ignored: the items of a pyramid are fixed.
+     */
+    @Override
+    public void addItem(T item) {
+    }
+
+    /**
+     * Ignored: the items of a pyramid are fixed.
+     */
+    @Override
+    public void addItems(Collection<T> items) {
+    }
+
+    /**
+     * Empties the pyramid: it has no items or clusters from then on. The file is left as it is,
+     * and can be loaded again.
+     */
+    @Override
+    public void clearItems() {
+        mCleared = true;
+    }
+
+    /**
+     * Ignored: the items of a pyramid are fixed.
+     */
+    @Override
+    public void removeItem(T item) {
+    }
+
+    /**
+     * A cluster backed by the mapped file. Its items are looked up when they are requested.
+     */
+    private class MappedCluster implements Cluster<T> {
+        private final LatLng mPosition;
+        private final int mSize;
+
+        /**
+         * Position in mBuffer of the ids of this cluster's items. Unique within a pyramid.
+         */
+        private final int mItemIds;
+
+        private MappedCluster(LatLng position, int size, int itemIds) {
+            mPosition = position;
+            mSize = size;
+            mItemIds = itemIds;
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public Collection<T> getItems() {
+            return new AbstractList<T>() {
+                @Override
+                public T get(int index) {
+                    if (index < 0 || index >= mSize) {
+                        throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+                    }
+                    return mItems.get(mBuffer.getInt(mItemIds + index * 4));
+                }
+
+                @Override
+                public int size() {
+                    return mSize;
+                }
+            };
+        }
+
+        @Override
+        public int getSize() {
+            return mSize;
+        }
+
+        private ClusterPyramid<T> getPyramid() {
+            return ClusterPyramid.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return mItemIds;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ClusterPyramid.MappedCluster)) {
+                return false;
+            }
+            ClusterPyramid<?>.MappedCluster that = (ClusterPyramid<?>.MappedCluster) other;
+            return that.getPyramid() == ClusterPyramid.this && that.mItemIds == mItemIds && that.mSize == mSize;
+        }
+
+        @Override
+        public String toString() {
+            return "MappedCluster{" +
+                    "mPosition=" + mPosition +
+                    ", mSize=" + mSize +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
+import com.google.maps.android.quadtree.PointQuadTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A density-based (DBSCAN) clustering algorithm. Resulting clusters are not hierarchical.
+ * <p/>
+ * An item with at least minPoints items (itself included) within epsilon dp of it is a core item.
+ * Core items within epsilon of each other form one cluster, together with the items within
+ * epsilon of any of its core items. All other items are shown on their own.
+ * <p/>
+ * Items are visited in the order they were added and neighbourhoods come from a
+ * {@link PointQuadTree}, so the same items always give the same clusters. Items within half
+ * epsilon of any core item that was already searched are not searched themselves, so dense areas
+ * cost a search per epsilon-sized patch rather than per item. This gives O(n log n) performance,
+ * at the cost of sometimes splitting a cluster that exact DBSCAN would chain together.
+ * <p/>
+ * Clusters are positioned at the centroid of their items.
+ */
+public class DensityBasedAlgorithm<T extends ClusterItem> implements SearchableAlgorithm<T> {
+    private static final int DEFAULT_EPSILON = 40; // dp
+    private static final int DEFAULT_MIN_POINTS = 3;
+
+    private static final int UNVISITED = 0;
+    private static final int NOISE = -1;
+
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+    private int mEpsilon;
+    private int mMinPoints;
+
+    private ClusterAggregator<T, ?> mAggregator;
+
+    /**
+     * Items in the order they were added. Any modifications should be synchronized on mQuadTree.
+     */
+    private final Map<T, DensityItem<T>> mItems = new LinkedHashMap<T, DensityItem<T>>();
+
+    /**
+     * Any modifications should be synchronized on mQuadTree.
+     */
+    private final PointQuadTree<DensityItem<T>> mQuadTree = new PointQuadTree<DensityItem<T>>(0, 1, 0, 1);
+
+    public DensityBasedAlgorithm() {
+        this(DEFAULT_MIN_POINTS, DEFAULT_EPSILON);
+    }
+
+    /**
+     * @param minPoints the number of items, including itself, an item needs within epsilon to
+     *                  start or extend a cluster.
+     * @param epsilon   the neighbourhood radius, in dp at the zoom being clustered.
+     */
+    public DensityBasedAlgorithm(int minPoints, int epsilon) {
+        setMinPoints(minPoints);
+        setMaxDistanceBetweenClusteredItems(epsilon);
+    }
+
+    @Override
+    public void addItem(T item) {
+        DensityItem<T> densityItem = new DensityItem<T>(item);
+        synchronized (mQuadTree) {
+            if (mItems.containsKey(item)) {
+                return;
+            }
+            mItems.put(item, densityItem);
+            mQuadTree.add(densityItem);
+        }
+    }
+
+    @Override
+    public void addItems(Collection<T> items) {
+        for (T item : items) {
+            addItem(item);
+        }
+    }
+
+    @Override
+    public void clearItems() {
+        synchronized (mQuadTree) {
+            mItems.clear();
+            mQuadTree.clear();
+        }
+    }
+
+    @Override
+    public void removeItem(T item) {
+        synchronized (mQuadTree) {
+            DensityItem<T> densityItem = mItems.remove(item);
+            if (densityItem != null) {
+                mQuadTree.remove(densityItem);
+            }
+        }
+    }
+
+    @Override
+    public Set<? extends Cluster<T>> getClusters(double zoom) {
+        final double epsilon = mEpsilon / Math.pow(2, zoom) / 256;
+        final double epsilonSquared = epsilon * epsilon;
+        final int minPoints = mMinPoints;
+        final ClusterAggregator<T, ?> aggregator = mAggregator;
+
+        final Set<Cluster<T>> results = new HashSet<Cluster<T>>();
+        synchronized (mQuadTree) {
+            // Index the items so labels can be kept in an array rather than hash maps.
+            final List<DensityItem<T>> items = new ArrayList<DensityItem<T>>(mItems.values());
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).mIndex = i;
+            }
+            final int[] labels = new int[items.size()];
+            int clusterCount = 0;
+
+            List<DensityItem<T>> members = new ArrayList<DensityItem<T>>();
+            List<DensityItem<T>> queue = new ArrayList<DensityItem<T>>();
+            SearchedCores searchedCores = new SearchedCores(epsilon / 2);
+            for (DensityItem<T> candidate : items) {
+                if (labels[candidate.mIndex] != UNVISITED) {
+                    continue;
+                }
+                List<DensityItem<T>> neighbours = neighbours(candidate, epsilon, epsilonSquared);
+                if (neighbours.size() < minPoints) {
+                    // May still join a cluster later, as a border item of a core item.
+                    labels[candidate.mIndex] = NOISE;
+                    continue;
+                }
+
+                int label = ++clusterCount;
+                labels[candidate.mIndex] = label;
+                members.clear();
+                members.add(candidate);
+                queue.clear();
+                searchedCores.add(candidate.getPoint());
+                claimNeighbours(neighbours, label, labels, members, queue);
+                // Breadth first, so items reachable from two clusters go to the one visited first.
+                for (int head = 0; head < queue.size(); head++) {
+                    DensityItem<T> item = queue.get(head);
+                    if (searchedCores.covers(item.getPoint())) {
+                        // Most of this item's neighbourhood has already been searched.
+                        continue;
+                    }
+                    List<DensityItem<T>> itemNeighbours = neighbours(item, epsilon, epsilonSquared);
+                    if (itemNeighbours.size() >= minPoints) {
+                        searchedCores.add(item.getPoint());
+                        claimNeighbours(itemNeighbours, label, labels, members, queue);
+                    }
+                }
+                results.add(createCluster(members, aggregator));
+            }
+
+            for (DensityItem<T> item : items) {
+                if (labels[item.mIndex] == NOISE) {
+                    results.add(item);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Adds the unclustered neighbours of a core item to its cluster, and queues those that have
+     * not been searched yet.
+     */
+    private static <T extends ClusterItem> void claimNeighbours(List<DensityItem<T>> neighbours, int label,
+                                                                int[] labels, List<DensityItem<T>> members,
+                                                                List<DensityItem<T>> queue) {
+        for (DensityItem<T> neighbour : neighbours) {
+            int neighbourLabel = labels[neighbour.mIndex];
+            if (neighbourLabel != UNVISITED && neighbourLabel != NOISE) {
+                continue;
+            }
+            labels[neighbour.mIndex] = label;
+            members.add(neighbour);
+            // Noise has already been searched and found not to be a core item.
+            if (neighbourLabel == UNVISITED) {
+                queue.add(neighbour);
+            }
+        }
+    }
+
+    private List<DensityItem<T>> neighbours(DensityItem<T> item, double epsilon, double epsilonSquared) {
+        Point p = item.getPoint();
+        Collection<DensityItem<T>> candidates =
+                mQuadTree.search(new Bounds(p.x - epsilon, p.x + epsilon, p.y - epsilon, p.y + epsilon));
+        List<DensityItem<T>> neighbours = new ArrayList<DensityItem<T>>(candidates.size());
+        for (DensityItem<T> candidate : candidates) {
+            if (distanceSquared(p, candidate.getPoint()) <= epsilonSquared) {
+                neighbours.add(candidate);
+            }
+        }
+        return neighbours;
+    }
+
+    private StaticCluster<T> createCluster(List<DensityItem<T>> members, ClusterAggregator<T, ?> aggregator) {
+        double x = 0;
+        double y = 0;
+        for (DensityItem<T> member : members) {
+            x += member.getPoint().x;
+            y += member.getPoint().y;
+        }
+        LatLng center = PROJECTION.toLatLng(new Point(x / members.size(), y / members.size()));
+        StaticCluster<T> cluster = new StaticCluster<T>(center, aggregator);
+        for (DensityItem<T> member : members) {
+            cluster.add(member.mClusterItem);
+        }
+        return cluster;
+    }
+
+    @Override
+    public Collection<T> search(Bounds bounds) {
+        List<T> items = new ArrayList<T>();
+        synchronized (mQuadTree) {
+            for (DensityItem<T> densityItem : mQuadTree.search(bounds)) {
+                items.add(densityItem.mClusterItem);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public Collection<T> getItems() {
+        synchronized (mQuadTree) {
+            return new ArrayList<T>(mItems.keySet());
+        }
+    }
+
+    /**
+     * Sets an aggregator to fold the items of each cluster with while clustering.
+     *
+     * @param aggregator the aggregator, or null to stop aggregating.
+     */
+    public void setClusterAggregator(ClusterAggregator<T, ?> aggregator) {
+        mAggregator = aggregator;
+    }
+
+    /**
+     * @param minPoints the number of items, including itself, an item needs within epsilon to
+     *                  start or extend a cluster. At least 2.
+     */
+    public void setMinPoints(int minPoints) {
+        if (minPoints < 2) {
+            throw new IllegalArgumentException("minPoints must be at least 2, was " + minPoints);
+        }
+        mMinPoints = minPoints;
+    }
+
+    public int getMinPoints() {
+        return mMinPoints;
+    }
+
+    /**
+     * Sets epsilon, the neighbourhood radius in dp.
+     */
+    @Override
+    public void setMaxDistanceBetweenClusteredItems(int maxDistance) {
+        if (maxDistance <= 0) {
+            throw new IllegalArgumentException("Epsilon must be positive, was " + maxDistance);
+        }
+        mEpsilon = maxDistance;
+    }
+
+    @Override
+    public int getMaxDistanceBetweenClusteredItems() {
+        return mEpsilon;
+    }
+
+    private static double distanceSquared(Point a, Point b) {
+        return (a.x - b.x) * (a.x - b.x) + (a.y - b.y) * (a.y - b.y);
+    }
+
+    /**
+     * The core items searched so far, bucketed in a grid of cells the size of the cover radius so
+     * that covers() only looks at the 3x3 cells around a point.
+     */
+    private static class SearchedCores {
+        private final double mRadius;
+        private final Map<Long, List<Point>> mCells = new HashMap<Long, List<Point>>();
+
+        private SearchedCores(double radius) {
+            mRadius = radius;
+        }
+
+        void add(Point point) {
+            Long key = key((long) Math.floor(point.x / mRadius), (long) Math.floor(point.y / mRadius));
+            List<Point> cell = mCells.get(key);
+            if (cell == null) {
+                cell = new ArrayList<Point>(4);
+                mCells.put(key, cell);
+            }
+            cell.add(point);
+        }
+
+        /**
+         * Whether a searched core item is within the cover radius of a point.
+         */
+        boolean covers(Point point) {
+            long x = (long) Math.floor(point.x / mRadius);
+            long y = (long) Math.floor(point.y / mRadius);
+            double radiusSquared = mRadius * mRadius;
+            for (long i = x - 1; i <= x + 1; i++) {
+                for (long j = y - 1; j <= y + 1; j++) {
+                    List<Point> cell = mCells.get(key(i, j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Point core : cell) {
+                        if (distanceSquared(core, point) <= radiusSquared) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static Long key(long x, long y) {
+            return (x << 32) ^ (y & 0xffffffffL);
+        }
+    }
+
+    private static class DensityItem<T extends ClusterItem> implements PointQuadTree.Item, Cluster<T> {
+        private final T mClusterItem;
+        private final Point mPoint;
+        private final LatLng mPosition;
+
+        /**
+         * Position in the snapshot of the current getClusters() call.
+         */
+        private int mIndex;
+
+        private DensityItem(T item) {
+            mClusterItem = item;
+            mPosition = item.getPosition();
+            mPoint = PROJECTION.toPoint(mPosition);
+        }
+
+        @Override
+        public Point getPoint() {
+            return mPoint;
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public Set<T> getItems() {
+            return Collections.singleton(mClusterItem);
+        }
+
+        @Override
+        public int getSize() {
+            return 1;
+        }
+
+        @Override
+        public int hashCode() {
+            return mClusterItem.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof DensityItem<?>)) {
+                return false;
+            }
+            return ((DensityItem<?>) other).mClusterItem.equals(mClusterItem);
+        }
+    }
+}
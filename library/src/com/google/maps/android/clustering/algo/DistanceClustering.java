@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.clustering.algo.NonHierarchicalDistanceBasedAlgorithm.QuadItem;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.quadtree.PointQuadTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The clustering pass of {@link NonHierarchicalDistanceBasedAlgorithm}, shared with the
+ * algorithms that cluster indexed items the same way.
+ */
+final class DistanceClustering {
+    /**
+     * Restricts which items may share a cluster.
+     */
+    interface Filter<Q> {
+        /**
+         * @return whether item may join the cluster of candidate. Candidates that may not join
+         * their own cluster are left out altogether.
+         */
+        boolean accept(Q candidate, Q item);
+    }
+
+    /**
+     * Creates the cluster that gathers the items around a candidate.
+     */
+    interface ClusterFactory<T extends ClusterItem, Q> {
+        StaticCluster<T> create(Q candidate);
+    }
+
+    private DistanceClustering() {
+    }
+
+    /**
+     * Visits the candidates in order. Each one not yet in a cluster gathers the items within the
+     * max distance of it, taking items from earlier clusters when it is closer to them.
+     *
+     * @param filter restricts which items may share a cluster, or null to let any do.
+     */
+    static <T extends ClusterItem, Q extends QuadItem<T>> Set<Cluster<T>> cluster(
+            PointQuadTree<Q> quadTree, Collection<Q> candidates, int maxDistance, double zoom,
+            Filter<? super Q> filter, ClusterFactory<T, ? super Q> factory) {
+        // Fractional zooms scale the span continuously, so clusters split gradually between
+        // integer zoom levels.
+        final double zoomSpecificSpan = maxDistance / Math.pow(2, zoom) / 256;
+
+        final Set<Cluster<T>> results = new HashSet<Cluster<T>>();
+        final Map<Q, Double> distanceToCluster = new HashMap<Q, Double>();
+        final Map<Q, StaticCluster<T>> itemToCluster = new HashMap<Q, StaticCluster<T>>();
+
+        for (Q candidate : candidates) {
+            if (distanceToCluster.containsKey(candidate)) {
+                // Candidate is already part of another cluster.
+                continue;
+            }
+            if (filter != null && !filter.accept(candidate, candidate)) {
+                continue;
+            }
+
+            Collection<Q> clusterItems = quadTree.search(createBoundsFromSpan(candidate.getPoint(), zoomSpecificSpan));
+            if (filter != null) {
+                List<Q> accepted = new ArrayList<Q>(clusterItems.size());
+                for (Q item : clusterItems) {
+                    if (filter.accept(candidate, item)) {
+                        accepted.add(item);
+                    }
+                }
+                clusterItems = accepted;
+            }
+            if (clusterItems.size() == 1) {
+                // Only the current marker is in range. Just add the single item to the results.
+                results.add(candidate);
+                distanceToCluster.put(candidate, 0d);
+                continue;
+            }
+            StaticCluster<T> cluster = factory.create(candidate);
+            results.add(cluster);
+
+            for (Q clusterItem : clusterItems) {
+                Double existingDistance = distanceToCluster.get(clusterItem);
+                double distance = distanceSquared(clusterItem.getPoint(), candidate.getPoint());
+                if (existingDistance != null) {
+                    // Item already belongs to another cluster. Check if it's closer to this cluster.
+                    if (existingDistance < distance) {
+                        continue;
+                    }
+                    // Move item to the closer cluster.
+                    StaticCluster<T> previous = itemToCluster.get(clusterItem);
+                    if (previous != null) {
+                        previous.remove(clusterItem.mClusterItem);
+                    } else {
+                        // It was on its own.
+                        results.remove(clusterItem);
+                    }
+                }
+                distanceToCluster.put(clusterItem, distance);
+                cluster.add(clusterItem.mClusterItem);
+                itemToCluster.put(clusterItem, cluster);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Clusters that lost items to a closer cluster recompute their aggregate on the next read.
+     * Do that here rather than on the UI thread.
+     */
+    static <T extends ClusterItem> void computeAggregates(Collection<Cluster<T>> clusters) {
+        for (Cluster<T> cluster : clusters) {
+            if (cluster instanceof StaticCluster) {
+                ((StaticCluster<T>) cluster).getAggregate();
+            }
+        }
+    }
+
+    private static double distanceSquared(Point a, Point b) {
+        return (a.x - b.x) * (a.x - b.x) + (a.y - b.y) * (a.y - b.y);
+    }
+
+    private static Bounds createBoundsFromSpan(Point p, double span) {
+        // TODO: Use a span that takes into account the visual size of the marker, not just its
+        // LatLng.
+        double halfSpan = span / 2;
+        return new Bounds(
+                p.x - halfSpan, p.x + halfSpan,
+                p.y - halfSpan, p.y + halfSpan);
+    }
+}
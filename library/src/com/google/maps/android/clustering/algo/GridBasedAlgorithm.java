@@ -16,46 +16,126 @@
 
 package com.google.maps.android.clustering.algo;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
-import android.support.v4.util.LongSparseArray;
-
+import com.google.maps.android.Bands;
 import com.google.maps.android.clustering.Cluster;
 import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
 import com.google.maps.android.geometry.Point;
 import com.google.maps.android.projection.SphericalMercatorProjection;
 
 /**
  * Groups markers into a grid.
+ * <p/>
+ * Items are projected once, when they are added, and kept in flat arrays. Clustering is then a
+ * single pass over those arrays which maps each grid cell to its cluster through a primitive
+ * hash table. Large item sets can optionally be bucketed on several threads, see
+ * {@link #setParallelBucketing(Executor, int)}.
  */
-public class GridBasedAlgorithm<T extends ClusterItem> implements Algorithm<T> {
+public class GridBasedAlgorithm<T extends ClusterItem> implements SearchableAlgorithm<T> {
     private static final int DEFAULT_GRID_SIZE = 100;
 
+    /**
+     * Minimum number of items for each parallel bucketing task.
+     */
+    private static final int MIN_ITEMS_PER_TASK = 10000;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
     private int mGridSize = DEFAULT_GRID_SIZE;
 
-    private final Set<T> mItems = Collections.synchronizedSet(new HashSet<T>());
+    private Executor mExecutor;
+
+    private int mParallelism = 1;
+
+    private ClusterAggregator<T, ?> mAggregator;
+
+    private ItemWeigher<T> mWeigher;
+
+    /**
+     * Index of each item in the arrays below.
+     * Any access to the items should be synchronized on mItemIndices.
+     */
+    private final Map<T, Integer> mItemIndices = new HashMap<T, Integer>();
+
+    /**
+     * Items, and their coordinates projected onto a world of width 1.
+     */
+    private Object[] mItems = new Object[INITIAL_CAPACITY];
+    private double[] mX = new double[INITIAL_CAPACITY];
+    private double[] mY = new double[INITIAL_CAPACITY];
+    private int mSize;
 
     @Override
     public void addItem(T item) {
-        mItems.add(item);
+        synchronized (mItemIndices) {
+            addItemLocked(item);
+        }
     }
 
     @Override
     public void addItems(Collection<T> items) {
-        mItems.addAll(items);
+        synchronized (mItemIndices) {
+            ensureCapacity(mSize + items.size());
+            for (T item : items) {
+                addItemLocked(item);
+            }
+        }
     }
 
     @Override
     public void clearItems() {
-        mItems.clear();
+        synchronized (mItemIndices) {
+            mItemIndices.clear();
+            Arrays.fill(mItems, 0, mSize, null);
+            mSize = 0;
+        }
     }
 
     @Override
     public void removeItem(T item) {
-        mItems.remove(item);
+        synchronized (mItemIndices) {
+            Integer index = mItemIndices.remove(item);
+            if (index == null) {
+                return;
+            }
+            // Move the last item into the gap.
+            int last = --mSize;
+            if (index != last) {
+                mItems[index] = mItems[last];
+                mX[index] = mX[last];
+                mY[index] = mY[last];
+                mItemIndices.put(itemAt(index), index);
+            }
+            mItems[last] = null;
+        }
+    }
+
+    /**
+     * Scans the projected coordinates of all items, as there is no spatial index.
+     */
+    @Override
+    public Collection<T> search(Bounds bounds) {
+        List<T> items = new ArrayList<T>();
+        synchronized (mItemIndices) {
+            for (int i = 0; i < mSize; i++) {
+                if (bounds.contains(mX[i], mY[i])) {
+                    items.add(itemAt(i));
+                }
+            }
+        }
+        return items;
     }
 
     @Override
@@ -68,39 +148,192 @@ public class GridBasedAlgorithm<T extends ClusterItem> implements Algorithm<T> {
         return mGridSize;
     }
 
+    /**
+     * Sets an aggregator to fold the items of each cluster with while clustering.
+     *
+     * @param aggregator the aggregator, or null to stop aggregating.
+     */
+    public void setClusterAggregator(ClusterAggregator<T, ?> aggregator) {
+        mAggregator = aggregator;
+    }
+
+    /**
+     * Positions clusters at the weighted centroid of their items rather than
+     * the center of their grid cell. The centroid is updated as items are assigned to clusters, without
+     * another pass over them.
+     *
+     * @param weigher weighs the items, or null to stop computing centroids.
+     */
+    public void setCentroidWeigher(ItemWeigher<T> weigher) {
+        mWeigher = weigher;
+    }
+
+    /**
+     * Buckets items on several threads when there are enough of them to make it worthwhile.
+     * Each thread buckets a contiguous range of items into its own cells, and the cells are
+     * then merged. The resulting clusters are the same as with serial bucketing.
+     *
+     * @param executor    runs the extra bucketing tasks, e.g. AsyncTask.THREAD_POOL_EXECUTOR.
+     *                    null disables parallel bucketing.
+     * @param parallelism maximum number of threads to bucket on, including the calling thread.
+     */
+    public void setParallelBucketing(Executor executor, int parallelism) {
+        mExecutor = executor;
+        mParallelism = Math.max(1, parallelism);
+    }
+
     @Override
     public Set<? extends Cluster<T>> getClusters(double zoom) {
         long numCells = (long) Math.ceil(256 * Math.pow(2, zoom) / mGridSize);
         SphericalMercatorProjection proj = new SphericalMercatorProjection(numCells);
 
-        HashSet<Cluster<T>> clusters = new HashSet<Cluster<T>>();
-        LongSparseArray<StaticCluster<T>> sparseArray = new LongSparseArray<StaticCluster<T>>();
-
-        synchronized (mItems) {
-            for (T item : mItems) {
-                Point p = proj.toPoint(item.getPosition());
-
-                long coord = getCoord(numCells, p.x, p.y);
-
-                StaticCluster<T> cluster = sparseArray.get(coord);
-                if (cluster == null) {
-                    cluster = new StaticCluster<T>(proj.toLatLng(new Point(Math.floor(p.x) + .5, Math.floor(p.y) + .5)));
-                    sparseArray.put(coord, cluster);
-                    clusters.add(cluster);
-                }
-                cluster.add(item);
+        Buckets<T> buckets;
+        synchronized (mItemIndices) {
+            int tasks = Bands.count(mExecutor, mParallelism, mSize, MIN_ITEMS_PER_TASK);
+            if (tasks <= 1) {
+                buckets = bucket(proj, numCells, 0, mSize);
+            } else {
+                buckets = bucketInParallel(proj, numCells, tasks);
             }
         }
 
-        return clusters;
+        // Hash the clusters only once they are complete, as their hash codes depend on their items.
+        return new HashSet<Cluster<T>>(buckets.mClusters);
     }
 
     @Override
     public Collection<T> getItems() {
-        return mItems;
+        synchronized (mItemIndices) {
+            final List<T> items = new ArrayList<T>(mSize);
+            for (int i = 0; i < mSize; i++) {
+                items.add(itemAt(i));
+            }
+            return items;
+        }
+    }
+
+    private void addItemLocked(T item) {
+        if (mItemIndices.containsKey(item)) {
+            return;
+        }
+        ensureCapacity(mSize + 1);
+        Point p = PROJECTION.toPoint(item.getPosition());
+        mItems[mSize] = item;
+        mX[mSize] = p.x;
+        mY[mSize] = p.y;
+        mItemIndices.put(item, mSize);
+        mSize++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mItems.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mItems.length * 2);
+        mItems = Arrays.copyOf(mItems, newCapacity);
+        mX = Arrays.copyOf(mX, newCapacity);
+        mY = Arrays.copyOf(mY, newCapacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) mItems[index];
+    }
+
+    /**
+     * Buckets the items in [from, to) into grid cells.
+     */
+    private Buckets<T> bucket(SphericalMercatorProjection proj, long numCells, int from, int to) {
+        ClusterAggregator<T, ?> aggregator = mAggregator;
+        ItemWeigher<T> weigher = mWeigher;
+        Buckets<T> buckets = new Buckets<T>(to - from);
+        for (int i = from; i < to; i++) {
+            // Same arithmetic as proj.toPoint(), without the allocation.
+            double x = mX[i] * numCells;
+            double y = mY[i] * numCells;
+
+            long coord = getCoord(numCells, x, y);
+
+            StaticCluster<T> cluster;
+            int index = buckets.mCells.get(coord);
+            if (index == LongIntHashMap.NO_VALUE) {
+                cluster = new StaticCluster<T>(proj.toLatLng(new Point(Math.floor(x) + .5, Math.floor(y) + .5)),
+                        aggregator, weigher);
+                buckets.add(coord, cluster);
+            } else {
+                cluster = buckets.mClusters.get(index);
+            }
+            cluster.add(itemAt(i));
+        }
+        return buckets;
+    }
+
+    /**
+     * Splits the items into contiguous ranges, buckets each range as a separate task and merges
+     * the results in range order.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Buckets<T> bucketInParallel(final SphericalMercatorProjection proj, final long numCells,
+                                        final int tasks) {
+        final int size = mSize;
+        final Buckets<T>[] parts = new Buckets[tasks];
+        Bands.run(mExecutor, tasks, 0, tasks, new Bands.Task() {
+            @Override
+            public void run(int fromTask, int toTask) {
+                for (int task = fromTask; task < toTask; task++) {
+                    parts[task] = bucket(proj, numCells, (int) ((long) size * task / tasks),
+                            (int) ((long) size * (task + 1) / tasks));
+                }
+            }
+        });
+
+        Buckets<T> merged = parts[0];
+        for (int i = 1; i < tasks; i++) {
+            merged.merge(parts[i]);
+        }
+        return merged;
     }
 
     private static long getCoord(long numCells, double x, double y) {
         return (long) (numCells * Math.floor(x) + Math.floor(y));
     }
-}
\ No newline at end of file
+
+    /**
+     * Clusters keyed by grid cell.
+     */
+    private static class Buckets<T extends ClusterItem> {
+        /**
+         * Grid cell to index in mClusters.
+         */
+        private final LongIntHashMap mCells;
+        private final List<StaticCluster<T>> mClusters = new ArrayList<StaticCluster<T>>();
+        private long[] mCoords = new long[INITIAL_CAPACITY];
+
+        private Buckets(int itemCount) {
+            mCells = new LongIntHashMap(Math.min(itemCount, 1024));
+        }
+
+        private void add(long coord, StaticCluster<T> cluster) {
+            int index = mClusters.size();
+            if (index == mCoords.length) {
+                mCoords = Arrays.copyOf(mCoords, index * 2);
+            }
+            mCoords[index] = coord;
+            mCells.put(coord, index);
+            mClusters.add(cluster);
+        }
+
+        private void merge(Buckets<T> other) {
+            for (int i = 0; i < other.mClusters.size(); i++) {
+                long coord = other.mCoords[i];
+                StaticCluster<T> cluster = other.mClusters.get(i);
+                int index = mCells.get(coord);
+                if (index == LongIntHashMap.NO_VALUE) {
+                    add(coord, cluster);
+                } else {
+                    mClusters.get(index).addAll(cluster);
+                }
+            }
+        }
+    }
+}
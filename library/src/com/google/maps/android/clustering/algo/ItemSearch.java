@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Searches algorithms that may not be {@link SearchableAlgorithm}s.
+ */
+final class ItemSearch {
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+    private ItemSearch() {
+    }
+
+    /**
+     * Searches through the algorithm's index if it has one, otherwise through all of its items.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends ClusterItem> Collection<T> search(Algorithm<T> algorithm, Bounds bounds) {
+        if (algorithm instanceof SearchableAlgorithm) {
+            return ((SearchableAlgorithm<T>) algorithm).search(bounds);
+        }
+        List<T> results = new ArrayList<T>();
+        for (T item : algorithm.getItems()) {
+            Point point = PROJECTION.toPoint(item.getPosition());
+            if (bounds.contains(point.x, point.y)) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+}
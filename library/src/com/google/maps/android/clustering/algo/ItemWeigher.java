@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.ClusterItem;
+
+/**
+ * Gives each item a weight, used to position clusters at the weighted centroid of their items.
+ */
+public interface ItemWeigher<T extends ClusterItem> {
+    /**
+     * @return the weight of an item; must not be negative and must not change while the item is
+     * clustered. Return 1 for every item to get plain centroids.
+     */
+    double getWeight(T item);
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from long keys to non-negative int values, with linear probing.
+ * Nothing is boxed and no objects are allocated per entry.
+ * This class is not thread safe.
+ */
+class LongIntHashMap {
+    /**
+     * Value stored in empty slots, and returned for missing keys.
+     */
+    static final int NO_VALUE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mSize;
+
+    /**
+     * @param expectedSize number of entries the map should hold before it needs to grow.
+     */
+    LongIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // Keep the load factor at or below 0.5.
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return the value for the key, or NO_VALUE if there is none.
+     */
+    int get(long key) {
+        int mask = mKeys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int value = mValues[i];
+            if (value == NO_VALUE || mKeys[i] == key) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     *
+     * @param value the value to store; must not be negative.
+     */
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative");
+        }
+        if (mSize * 2 >= mKeys.length) {
+            rehash(mKeys.length << 1);
+        }
+        int mask = mKeys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (mValues[i] == NO_VALUE) {
+                mKeys[i] = key;
+                mValues[i] = value;
+                mSize++;
+                return;
+            }
+            if (mKeys[i] == key) {
+                mValues[i] = value;
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        Arrays.fill(mValues, NO_VALUE);
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        allocate(capacity);
+        mSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != NO_VALUE) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Spreads the key's bits (the MurmurHash3 64-bit finalizer), as grid coordinates are
+     * highly regular.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -19,10 +19,8 @@ package com.google.maps.android.clustering.algo;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import com.google.android.gms.maps.model.LatLng;
@@ -46,11 +44,15 @@ import com.google.maps.android.quadtree.PointQuadTree;
  * <p/>
  * Clusters have the center of the first element (not the centroid of the items within it).
  */
-public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implements Algorithm<T> {
+public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implements SearchableAlgorithm<T> {
     private static final int DEFAULT_MAX_DISTANCE_AT_ZOOM = 100; // essentially 100 dp.
 
     private int mMaxDistance = DEFAULT_MAX_DISTANCE_AT_ZOOM;
 
+    private ClusterAggregator<T, ?> mAggregator;
+
+    private ItemWeigher<T> mWeigher;
+
     /**
      * Any modifications should be synchronized on mQuadTree.
      */
@@ -100,57 +102,37 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
 
     @Override
     public Set<? extends Cluster<T>> getClusters(double zoom) {
-        final int discreteZoom = (int) zoom;
-
-        final double zoomSpecificSpan = mMaxDistance / Math.pow(2, discreteZoom) / 256;
-
-        final Set<QuadItem<T>> visitedCandidates = new HashSet<QuadItem<T>>();
-        final Set<Cluster<T>> results = new HashSet<Cluster<T>>();
-        final Map<QuadItem<T>, Double> distanceToCluster = new HashMap<QuadItem<T>, Double>();
-        final Map<QuadItem<T>, StaticCluster<T>> itemToCluster = new HashMap<QuadItem<T>, StaticCluster<T>>();
+        final ClusterAggregator<T, ?> aggregator = mAggregator;
+        final ItemWeigher<T> weigher = mWeigher;
 
+        final Set<Cluster<T>> results;
         synchronized (mQuadTree) {
-            for (QuadItem<T> candidate : getClusteringItems(mQuadTree, discreteZoom)) {
-                if (visitedCandidates.contains(candidate)) {
-                    // Candidate is already part of another cluster.
-                    continue;
-                }
-
-                Bounds searchBounds = createBoundsFromSpan(candidate.getPoint(), zoomSpecificSpan);
-                Collection<QuadItem<T>> clusterItems;
-                clusterItems = mQuadTree.search(searchBounds);
-                if (clusterItems.size() == 1) {
-                    // Only the current marker is in range. Just add the single item to the results.
-                    results.add(candidate);
-                    visitedCandidates.add(candidate);
-                    distanceToCluster.put(candidate, 0d);
-                    continue;
-                }
-                StaticCluster<T> cluster = new StaticCluster<T>(candidate.mClusterItem.getPosition());
-                results.add(cluster);
-
-                for (QuadItem<T> clusterItem : clusterItems) {
-                    Double existingDistance = distanceToCluster.get(clusterItem);
-                    double distance = distanceSquared(clusterItem.getPoint(), candidate.getPoint());
-                    if (existingDistance != null) {
-                        // Item already belongs to another cluster. Check if it's closer to this cluster.
-                        if (existingDistance < distance) {
-                            continue;
+            results = DistanceClustering.cluster(mQuadTree, getClusteringItems(mQuadTree, zoom), mMaxDistance, zoom,
+                    null, new DistanceClustering.ClusterFactory<T, QuadItem<T>>() {
+                        @Override
+                        public StaticCluster<T> create(QuadItem<T> candidate) {
+                            return new StaticCluster<T>(candidate.getPosition(), aggregator, weigher);
                         }
-                        // Move item to the closer cluster.
-                        itemToCluster.get(clusterItem).remove(clusterItem.mClusterItem);
-                    }
-                    distanceToCluster.put(clusterItem, distance);
-                    cluster.add(clusterItem.mClusterItem);
-                    itemToCluster.put(clusterItem, cluster);
-                }
-                visitedCandidates.addAll(clusterItems);
-            }
+                    });
+        }
+        if (aggregator != null) {
+            DistanceClustering.computeAggregates(results);
         }
         return results;
     }
 
-    protected Collection<QuadItem<T>> getClusteringItems(PointQuadTree<QuadItem<T>> quadTree, int discreteZoom) {
+    @Override
+    public Collection<T> search(Bounds bounds) {
+        final List<T> items = new ArrayList<T>();
+        synchronized (mQuadTree) {
+            for (QuadItem<T> quadItem : mQuadTree.search(bounds)) {
+                items.add(quadItem.mClusterItem);
+            }
+        }
+        return items;
+    }
+
+    protected Collection<QuadItem<T>> getClusteringItems(PointQuadTree<QuadItem<T>> quadTree, double zoom) {
         return mItems;
     }
 
@@ -165,6 +147,26 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
         return items;
     }
 
+    /**
+     * Sets an aggregator to fold the items of each cluster with while clustering.
+     *
+     * @param aggregator the aggregator, or null to stop aggregating.
+     */
+    public void setClusterAggregator(ClusterAggregator<T, ?> aggregator) {
+        mAggregator = aggregator;
+    }
+
+    /**
+     * Positions clusters at the weighted centroid of their items rather than
+     * the position of their first item. The centroid is updated as items are assigned to clusters, without
+     * another pass over them.
+     *
+     * @param weigher weighs the items, or null to stop computing centroids.
+     */
+    public void setCentroidWeigher(ItemWeigher<T> weigher) {
+        mWeigher = weigher;
+    }
+
     @Override
     public void setMaxDistanceBetweenClusteredItems(int maxDistance) {
         mMaxDistance = maxDistance;
@@ -175,26 +177,13 @@ public class NonHierarchicalDistanceBasedAlgorithm<T extends ClusterItem> implem
         return mMaxDistance;
     }
 
-    private double distanceSquared(Point a, Point b) {
-        return (a.x - b.x) * (a.x - b.x) + (a.y - b.y) * (a.y - b.y);
-    }
-
-    private Bounds createBoundsFromSpan(Point p, double span) {
-        // TODO: Use a span that takes into account the visual size of the marker, not just its
-        // LatLng.
-        double halfSpan = span / 2;
-        return new Bounds(
-                p.x - halfSpan, p.x + halfSpan,
-                p.y - halfSpan, p.y + halfSpan);
-    }
-
     static class QuadItem<T extends ClusterItem> implements PointQuadTree.Item, Cluster<T> {
-        private final T mClusterItem;
+        final T mClusterItem;
         private final Point mPoint;
         private final LatLng mPosition;
         private Set<T> singletonSet;
 
-        private QuadItem(T item) {
+        QuadItem(T item) {
             mClusterItem = item;
             mPosition = item.getPosition();
             mPoint = PROJECTION.toPoint(mPosition);
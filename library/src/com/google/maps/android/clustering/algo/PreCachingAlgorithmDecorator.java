@@ -16,28 +16,88 @@
 
 package com.google.maps.android.clustering.algo;
 
-import android.support.v4.util.LruCache;
-
 import com.google.maps.android.clustering.Cluster;
 import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
 
 import java.util.Collection;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Optimistically fetch clusters for adjacent zoom levels, caching them as necessary.
+ * <p/>
+ * Zoom levels are quantised to a configurable step before clustering. The default step of 1
+ * clusters at integer zoom levels; smaller steps such as 0.25 let clusters follow fractional
+ * zoom, so fewer markers change at once as the camera zooms.
+ * <p/>
+ * The cache is bounded by the estimated memory of the clusters it holds rather than by a number
+ * of zoom levels, as a set of singletons at high zoom can be far larger than one at low zoom.
+ * When it is full, the sets that were cheapest to compute for their size are evicted first.
  */
-public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements Algorithm<T> {
+public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements SearchableAlgorithm<T> {
+    private static final double DEFAULT_ZOOM_STEP = 1;
+
+    /**
+     * Tolerance when quantising, so that e.g. 0.3 is step 3 of 0.1 despite rounding errors.
+     */
+    private static final double STEP_EPSILON = 1e-9;
+
+    /**
+     * Default cache budget: a sixteenth of the heap.
+     */
+    private static final long DEFAULT_MAX_CACHE_BYTES = Runtime.getRuntime().maxMemory() / 16;
+
     private final Algorithm<T> mAlgorithm;
 
-    // TODO: evaluate maxSize parameter for LruCache.
-    private final LruCache<Integer, Set<? extends Cluster<T>>> mCache = new LruCache<Integer, Set<? extends Cluster<T>>>(5);
-    private final ReadWriteLock mCacheLock = new ReentrantReadWriteLock();
+    /**
+     * Granularity of the cache, in zoom levels. Cache keys are zoom / mZoomStep, rounded down.
+     */
+    private final double mZoomStep;
+
+    private final ClusterCache<T> mCache;
+
+    /**
+     * Held while computing clusters, so that a zoom step is only computed once.
+     */
+    private final Lock mComputeLock = new ReentrantLock();
+
+    /**
+     * Whether to precache adjacent zoom levels; only turned off by tests, which need to know
+     * what the cache holds.
+     */
+    private volatile boolean mPrecaching = true;
 
     public PreCachingAlgorithmDecorator(Algorithm<T> algorithm) {
+        this(algorithm, DEFAULT_ZOOM_STEP);
+    }
+
+    /**
+     * @param algorithm the algorithm to cache clusters of.
+     * @param zoomStep  step to quantise zoom levels to, in zoom levels; e.g. with 0.25, zoom 12.9
+     *                  is clustered and cached as 12.75. Must be positive.
+     */
+    public PreCachingAlgorithmDecorator(Algorithm<T> algorithm, double zoomStep) {
+        this(algorithm, zoomStep, DEFAULT_MAX_CACHE_BYTES);
+    }
+
+    /**
+     * @param algorithm     the algorithm to cache clusters of.
+     * @param zoomStep      step to quantise zoom levels to, in zoom levels. Must be positive.
+     * @param maxCacheBytes budget for cached clusters, in estimated bytes. Clusters for a zoom
+     *                      level that don't fit at all are recomputed whenever they're needed.
+     */
+    public PreCachingAlgorithmDecorator(Algorithm<T> algorithm, double zoomStep, long maxCacheBytes) {
+        if (zoomStep <= 0) {
+            throw new IllegalArgumentException("zoomStep must be positive");
+        }
+        if (maxCacheBytes < 0) {
+            throw new IllegalArgumentException("maxCacheBytes must not be negative");
+        }
         mAlgorithm = algorithm;
+        mZoomStep = zoomStep;
+        mCache = new ClusterCache<T>(maxCacheBytes);
     }
 
     @Override
@@ -65,28 +125,87 @@ public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements Algo
     }
 
     private void clearCache() {
-        mCache.evictAll();
+        mCache.clear();
     }
 
     @Override
     public Set<? extends Cluster<T>> getClusters(double zoom) {
-        int discreteZoom = (int) zoom;
-        Set<? extends Cluster<T>> results = getClustersInternal(discreteZoom);
+        int step = getStep(zoom);
+        Set<? extends Cluster<T>> results = getClustersInternal(step);
+        if (!mPrecaching) {
+            return results;
+        }
         // TODO: Check if requests are already in-flight.
-        if (mCache.get(discreteZoom + 1) == null) {
-            new Thread(new PrecacheRunnable(discreteZoom + 1)).start();
+        if (mCache.peek(step + 1) == null) {
+            new Thread(new PrecacheRunnable(step + 1)).start();
         }
-        if (mCache.get(discreteZoom - 1) == null) {
-            new Thread(new PrecacheRunnable(discreteZoom - 1)).start();
+        if (mCache.peek(step - 1) == null) {
+            new Thread(new PrecacheRunnable(step - 1)).start();
         }
         return results;
     }
 
+    /**
+     * Turns precaching of adjacent zoom levels on or off. On by default.
+     */
+    void setPrecaching(boolean precaching) {
+        mPrecaching = precaching;
+    }
+
+    /**
+     * @return the zoom level that clusters are computed at for the given camera zoom.
+     */
+    public double getQuantisedZoom(double zoom) {
+        return getStep(zoom) * mZoomStep;
+    }
+
+    private int getStep(double zoom) {
+        return (int) Math.floor(zoom / mZoomStep + STEP_EPSILON);
+    }
+
+    /**
+     * @return the estimated size of the cached clusters, in bytes.
+     */
+    public long getCacheSize() {
+        return mCache.size();
+    }
+
+    /**
+     * @return the number of calls to {@link #getClusters(double)} served from the cache.
+     */
+    public int getCacheHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * @return the number of calls to {@link #getClusters(double)} that weren't served from the
+     * cache, though they may have waited for a precache of the same zoom level.
+     */
+    public int getCacheMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * @return the number of zoom levels evicted to make room for others. Clearing the cache when
+     * items change does not count.
+     */
+    public int getCacheEvictionCount() {
+        return mCache.evictionCount();
+    }
+
     @Override
     public Collection<T> getItems() {
         return mAlgorithm.getItems();
     }
 
+    /**
+     * Searches the decorated algorithm, or all of its items if it isn't searchable.
+     */
+    @Override
+    public Collection<T> search(Bounds bounds) {
+        return ItemSearch.search(mAlgorithm, bounds);
+    }
+
     @Override
     public void setMaxDistanceBetweenClusteredItems(int maxDistance) {
         mAlgorithm.setMaxDistanceBetweenClusteredItems(maxDistance);
@@ -98,29 +217,34 @@ public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements Algo
         return mAlgorithm.getMaxDistanceBetweenClusteredItems();
     }
 
-    private Set<? extends Cluster<T>> getClustersInternal(int discreteZoom) {
-        Set<? extends Cluster<T>> results;
-        mCacheLock.readLock().lock();
-        results = mCache.get(discreteZoom);
-        mCacheLock.readLock().unlock();
-
+    private Set<? extends Cluster<T>> getClustersInternal(int step) {
+        Set<? extends Cluster<T>> results = mCache.get(step);
         if (results == null) {
-            mCacheLock.writeLock().lock();
-            results = mCache.get(discreteZoom);
+            results = computeClusters(step);
+        }
+        return results;
+    }
+
+    private Set<? extends Cluster<T>> computeClusters(int step) {
+        mComputeLock.lock();
+        try {
+            Set<? extends Cluster<T>> results = mCache.peek(step);
             if (results == null) {
-                results = mAlgorithm.getClusters(discreteZoom);
-                mCache.put(discreteZoom, results);
+                long start = System.nanoTime();
+                results = mAlgorithm.getClusters(step * mZoomStep);
+                mCache.put(step, results, System.nanoTime() - start);
             }
-            mCacheLock.writeLock().unlock();
+            return results;
+        } finally {
+            mComputeLock.unlock();
         }
-        return results;
     }
 
     private class PrecacheRunnable implements Runnable {
-        private final int mZoom;
+        private final int mStep;
 
-        public PrecacheRunnable(int zoom) {
-            mZoom = zoom;
+        public PrecacheRunnable(int step) {
+            mStep = step;
         }
 
         @Override
@@ -131,7 +255,9 @@ public class PreCachingAlgorithmDecorator<T extends ClusterItem> implements Algo
             } catch (InterruptedException e) {
                 // ignore. keep going.
             }
-            getClustersInternal(mZoom);
+            if (mCache.peek(mStep) == null) {
+                computeClusters(mStep);
+            }
         }
     }
 }
@@ -19,11 +19,12 @@ package com.google.maps.android.clustering.algo;
 import com.google.android.gms.maps.model.CameraPosition;
 import com.google.maps.android.clustering.Cluster;
 import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
 
 import java.util.Collection;
 import java.util.Set;
 
-public class ScreenBasedAlgorithmAdapter<T extends ClusterItem> implements ScreenBasedAlgorithm<T> {
+public class ScreenBasedAlgorithmAdapter<T extends ClusterItem> implements ScreenBasedAlgorithm<T>, SearchableAlgorithm<T> {
 
     private Algorithm<T> mAlgorithm;
 
@@ -66,6 +67,14 @@ public class ScreenBasedAlgorithmAdapter<T extends ClusterItem> implements Scree
         return mAlgorithm.getItems();
     }
 
+    /**
+     * Searches the adapted algorithm, or all of its items if it isn't searchable.
+     */
+    @Override
+    public Collection<T> search(Bounds bounds) {
+        return ItemSearch.search(mAlgorithm, bounds);
+    }
+
     @Override
     public void setMaxDistanceBetweenClusteredItems(int maxDistance) {
         mAlgorithm.setMaxDistanceBetweenClusteredItems(maxDistance);
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.geometry.Bounds;
+
+import java.util.Collection;
+
+/**
+ * An algorithm that can look up its items by area, e.g. to find what was tapped.
+ */
+public interface SearchableAlgorithm<T extends ClusterItem> extends Algorithm<T> {
+    /**
+     * @param bounds the area to search, in the coordinates of a
+     *               {@link com.google.maps.android.projection.SphericalMercatorProjection} with a
+     *               world width of 1.
+     * @return the items in the bounds.
+     */
+    Collection<T> search(Bounds bounds);
+}
@@ -25,27 +25,144 @@ import java.util.Collection;
 import java.util.List;
 
 /**
- * A cluster whose center is determined upon creation.
+ * A cluster whose center is determined upon creation. If it is given an {@link ItemWeigher}, it
+ * is instead positioned at the weighted centroid of its items, which is kept up to date as items
+ * are added and removed.
  */
 public class StaticCluster<T extends ClusterItem> implements Cluster<T> {
     private final LatLng mCenter;
     private final List<T> mItems = new ArrayList<T>();
 
+    /**
+     * Folds items into mAggregate as they are added, if set.
+     */
+    private final ClusterAggregator<T, Object> mAggregator;
+    private Object mAggregate;
+
+    /**
+     * Whether an item was removed since mAggregate was computed. Aggregators can't undo an
+     * item, so the aggregate is then recomputed from all items on the next read.
+     */
+    private boolean mAggregateStale;
+
+    /**
+     * Weighs items for the centroid, if set. The centroid is kept as running sums of the weights
+     * and weighted coordinates. Longitudes are summed as offsets from mCenter, so clusters that
+     * span the antimeridian don't average to the other side of the world.
+     */
+    private final ItemWeigher<T> mWeigher;
+    private double mWeightSum;
+    private double mWeightedLatitudeSum;
+    private double mWeightedLongitudeOffsetSum;
+
+    /**
+     * The centroid, or null if it has changed since it was last read.
+     */
+    private LatLng mCentroid;
+
     public StaticCluster(LatLng center) {
+        this(center, null);
+    }
+
+    /**
+     * @param aggregator folds the items of this cluster as they are added; may be null.
+     */
+    public StaticCluster(LatLng center, ClusterAggregator<T, ?> aggregator) {
+        this(center, aggregator, null);
+    }
+
+    /**
+     * @param center     the position of the cluster, or the reference for its centroid.
+     * @param aggregator folds the items of this cluster as they are added; may be null.
+     * @param weigher    positions the cluster at the centroid of its items weighed by this; may be
+     *                   null to keep it at center.
+     */
+    @SuppressWarnings("unchecked")
+    public StaticCluster(LatLng center, ClusterAggregator<T, ?> aggregator, ItemWeigher<T> weigher) {
         mCenter = center;
+        mAggregator = (ClusterAggregator<T, Object>) aggregator;
+        mWeigher = weigher;
     }
 
     public boolean add(T t) {
-        return mItems.add(t);
+        boolean added = mItems.add(t);
+        if (mAggregator != null && !mAggregateStale) {
+            Object value = mAggregator.map(t);
+            mAggregate = mItems.size() == 1 ? value : mAggregator.reduce(mAggregate, value);
+        }
+        if (mWeigher != null) {
+            accumulate(t, 1);
+        }
+        return added;
+    }
+
+    private void accumulate(T t, int sign) {
+        double weight = sign * mWeigher.getWeight(t);
+        LatLng position = t.getPosition();
+        mWeightSum += weight;
+        mWeightedLatitudeSum += weight * position.latitude;
+        mWeightedLongitudeOffsetSum += weight * longitudeOffset(mCenter.longitude, position.longitude);
+        mCentroid = null;
+    }
+
+    /**
+     * @return the shortest signed distance in degrees from one longitude to another.
+     */
+    private static double longitudeOffset(double from, double to) {
+        double offset = to - from;
+        if (offset > 180) {
+            offset -= 360;
+        } else if (offset < -180) {
+            offset += 360;
+        }
+        return offset;
     }
 
+    /**
+     * Moves all items of another cluster built with the same aggregator and weigher into this
+     * one, combining the two aggregates and centroids rather than folding each item again.
+     */
+    void addAll(StaticCluster<T> other) {
+        if (mAggregator != null && !mAggregateStale && !other.mItems.isEmpty()) {
+            Object value = other.getAggregate();
+            mAggregate = mItems.isEmpty() ? value : mAggregator.reduce(mAggregate, value);
+        }
+        if (mWeigher != null) {
+            // The other cluster's longitudes are offsets from its own center.
+            double centerOffset = longitudeOffset(mCenter.longitude, other.mCenter.longitude);
+            mWeightSum += other.mWeightSum;
+            mWeightedLatitudeSum += other.mWeightedLatitudeSum;
+            mWeightedLongitudeOffsetSum += other.mWeightedLongitudeOffsetSum + other.mWeightSum * centerOffset;
+            mCentroid = null;
+        }
+        mItems.addAll(other.mItems);
+    }
+
+    /**
+     * @return the weighted centroid of the items if this cluster has a weigher and its items have
+     * any weight, otherwise the center it was created with.
+     */
     @Override
     public LatLng getPosition() {
-        return mCenter;
+        if (mWeigher == null || mWeightSum <= 0) {
+            return mCenter;
+        }
+        if (mCentroid == null) {
+            mCentroid = new LatLng(mWeightedLatitudeSum / mWeightSum,
+                    mCenter.longitude + mWeightedLongitudeOffsetSum / mWeightSum);
+        }
+        return mCentroid;
     }
 
     public boolean remove(T t) {
-        return mItems.remove(t);
+        boolean removed = mItems.remove(t);
+        if (removed && mAggregator != null) {
+            mAggregateStale = true;
+        }
+        if (removed && mWeigher != null) {
+            accumulate(t, -1);
+        }
+        return removed;
     }
 
     @Override
@@ -58,6 +175,22 @@ public class StaticCluster<T extends ClusterItem> implements Cluster<T> {
         return mItems.size();
     }
 
+    /**
+     * @return the value folded from this cluster's items by its aggregator, or null if it has no
+     * aggregator or no items. {@link ClusterAggregator#get(Cluster)} returns the same value typed.
+     */
+    public Object getAggregate() {
+        if (mAggregateStale) {
+            mAggregate = mAggregator.fold(mItems);
+            mAggregateStale = false;
+        }
+        return mAggregate;
+    }
+
+    ClusterAggregator<T, ?> getAggregator() {
+        return mAggregator;
+    }
+
     @Override
     public String toString() {
         return "StaticCluster{" +
@@ -80,4 +213,4 @@ public class StaticCluster<T extends ClusterItem> implements Cluster<T> {
         return ((StaticCluster<?>) other).mCenter.equals(mCenter)
                 && ((StaticCluster<?>) other).mItems.equals(mItems);
     }
-}
\ No newline at end of file
+}
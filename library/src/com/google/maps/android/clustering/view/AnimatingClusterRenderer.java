@@ -109,7 +109,19 @@ public class AnimatingClusterRenderer<T extends ClusterItem> extends BaseCluster
             // Create the new markers and animate them to their new positions.
             final Set<MarkerWithPosition> newMarkers = Collections.newSetFromMap(
                     new ConcurrentHashMap<MarkerWithPosition, Boolean>());
+            // Add the markers nearest the camera target first.
+            List<Cluster<T>> onScreenFirst = new ArrayList<>();
+            List<Cluster<T>> offScreen = new ArrayList<>();
             for (Cluster<T> c : clusters) {
+                if (visibleBounds.contains(c.getPosition())) {
+                    onScreenFirst.add(c);
+                } else {
+                    offScreen.add(c);
+                }
+            }
+            sortByDistanceToCameraTarget(onScreenFirst);
+            onScreenFirst.addAll(offScreen);
+            for (Cluster<T> c : onScreenFirst) {
                 boolean onScreen = visibleBounds.contains(c.getPosition());
                 if (zoomingIn && onScreen && SHOULD_ANIMATE) {
                     Point point = mSphericalMercatorProjection.toPoint(c.getPosition());
@@ -129,7 +141,7 @@ public class AnimatingClusterRenderer<T extends ClusterItem> extends BaseCluster
             markerModifier.waitUntilFree();
 
             // Don't remove any markers that were just added. This is basically anything that had
-            // a hit in the MarkerCache.
+            // a hit in the MarkerRegistry.
             markersToRemove.removeAll(newMarkers);
 
             // Find all of the new clusters that were added on-screen. These are candidates for
@@ -198,6 +210,10 @@ public class AnimatingClusterRenderer<T extends ClusterItem> extends BaseCluster
     private class MarkerModifier extends BaseMarkerModifier<CreateMarkerTask, Marker> {
         private Queue<AnimationTask> mAnimationTasks = new LinkedList<>();
 
+        private MarkerModifier() {
+            super(DEFAULT_TASKS_PER_MESSAGE, getMaxMarkersPerFrame());
+        }
+
         void animate(MarkerWithPosition marker, LatLng from, LatLng to) {
             lock.lock();
             mAnimationTasks.add(new AnimationTask(marker, from, to));
@@ -240,11 +256,22 @@ public class AnimatingClusterRenderer<T extends ClusterItem> extends BaseCluster
             }
         }
 
+        @Override
+        int getNextTaskMarkerCount() {
+            if (!mOnScreenRemoveMarkersTasks.isEmpty() || !mAnimationTasks.isEmpty()) {
+                return 1;
+            } else if (!mOnScreenCreateMarkersTasks.isEmpty()) {
+                return mOnScreenCreateMarkersTasks.peek().getMarkerCount();
+            } else if (!mCreateMarkersTasks.isEmpty()) {
+                return mCreateMarkersTasks.peek().getMarkerCount();
+            } else if (!mRemoveMarkersTasks.isEmpty()) {
+                return 1;
+            }
+            return 0;
+        }
+
         private void removeMarker(Marker m) {
-            Cluster<T> cluster = mMarkerToCluster.get(m);
-            mClusterToMarker.remove(cluster);
-            mMarkerCache.remove(m);
-            mMarkerToCluster.remove(m);
+            mMarkerRegistry.remove(m);
             mClusterManager.getMarkerManager().remove(m);
         }
 
@@ -316,10 +343,7 @@ public class AnimatingClusterRenderer<T extends ClusterItem> extends BaseCluster
         @Override
         public void onAnimationEnd(Animator animation) {
             if (mRemoveOnComplete) {
-                Cluster<T> cluster = mMarkerToCluster.get(marker);
-                mClusterToMarker.remove(cluster);
-                mMarkerCache.remove(marker);
-                mMarkerToCluster.remove(marker);
+                mMarkerRegistry.remove(marker);
                 mMarkerManager.remove(marker);
             }
             markerWithPosition.setPosition(to);
@@ -22,16 +22,20 @@ import com.google.maps.android.R;
 import com.google.maps.android.clustering.Cluster;
 import com.google.maps.android.clustering.ClusterItem;
 import com.google.maps.android.clustering.ClusterManager;
-import com.google.maps.android.clustering.view.model.MarkerCache;
+import com.google.maps.android.clustering.view.model.MarkerRegistry;
 import com.google.maps.android.clustering.view.model.MarkerWithPosition;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.projection.SphericalMercatorProjection;
 import com.google.maps.android.ui.IconGenerator;
 import com.google.maps.android.ui.SquareTextView;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class BaseClusterRenderer<T extends ClusterItem> implements ClusterRenderer<T> {
     final GoogleMap mMap;
@@ -40,6 +44,8 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
     private final float mDensity;
 
     private static final int[] BUCKETS = {10, 20, 50, 100, 200, 500, 1000};
+
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
     private ShapeDrawable mColoredCircleBackground;
 
     /**
@@ -54,9 +60,9 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
     private SparseArray<BitmapDescriptor> mIcons = new SparseArray<>();
 
     /**
-     * Markers for single ClusterItems.
+     * Lookup between markers and the associated items and clusters.
      */
-    MarkerCache<T> mMarkerCache = new MarkerCache<>();
+    final MarkerRegistry<T> mMarkerRegistry = new MarkerRegistry<>();
 
     /**
      * If cluster size is less than this size, display individual markers.
@@ -64,15 +70,14 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
     private int mMinClusterSize = 4;
 
     /**
-     * The currently displayed set of clusters.
+     * The maximum number of markers to add between frames, or 0 for no limit.
      */
-    Set<? extends Cluster<T>> mClusters;
+    private int mMaxMarkersPerFrame;
 
     /**
-     * Lookup between markers and the associated cluster.
+     * The currently displayed set of clusters.
      */
-    Map<Marker, Cluster<T>> mMarkerToCluster = new HashMap<>();
-    Map<Cluster<T>, Marker> mClusterToMarker = new HashMap<>();
+    Set<? extends Cluster<T>> mClusters;
 
     private ClusterManager.OnClusterClickListener<T> mClickListener;
     private ClusterManager.OnClusterInfoWindowClickListener<T> mInfoWindowClickListener;
@@ -81,6 +86,13 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
 
     private final ViewModifier mViewModifier = new ViewModifier();
 
+    /**
+     * Marker options prepared ahead of the next render, see {@link #prepare(Set, Bounds)}.
+     */
+    private final AtomicReference<StagedMarkers<T>> mStagedMarkers = new AtomicReference<>();
+
+    private volatile boolean mBackgroundPreparation;
+
     BaseClusterRenderer(Context context, GoogleMap map, ClusterManager<T> clusterManager) {
         mMap = map;
         mDensity = context.getResources().getDisplayMetrics().density;
@@ -96,7 +108,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
         mClusterManager.getMarkerCollection().setOnMarkerClickListener(new GoogleMap.OnMarkerClickListener() {
             @Override
             public boolean onMarkerClick(Marker marker) {
-                return mItemClickListener != null && mItemClickListener.onClusterItemClick(mMarkerCache.get(marker));
+                return mItemClickListener != null && mItemClickListener.onClusterItemClick(mMarkerRegistry.getItem(marker));
             }
         });
 
@@ -104,7 +116,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
             @Override
             public void onInfoWindowClick(Marker marker) {
                 if (mItemInfoWindowClickListener != null) {
-                    mItemInfoWindowClickListener.onClusterItemInfoWindowClick(mMarkerCache.get(marker));
+                    mItemInfoWindowClickListener.onClusterItemInfoWindowClick(mMarkerRegistry.getItem(marker));
                 }
             }
         });
@@ -112,7 +124,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
         mClusterManager.getClusterMarkerCollection().setOnMarkerClickListener(new GoogleMap.OnMarkerClickListener() {
             @Override
             public boolean onMarkerClick(Marker marker) {
-                return mClickListener != null && mClickListener.onClusterClick(mMarkerToCluster.get(marker));
+                return mClickListener != null && mClickListener.onClusterClick(mMarkerRegistry.getCluster(marker));
             }
         });
 
@@ -120,7 +132,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
             @Override
             public void onInfoWindowClick(Marker marker) {
                 if (mInfoWindowClickListener != null) {
-                    mInfoWindowClickListener.onClusterInfoWindowClick(mMarkerToCluster.get(marker));
+                    mInfoWindowClickListener.onClusterInfoWindowClick(mMarkerRegistry.getCluster(marker));
                 }
             }
         });
@@ -132,6 +144,8 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
         mClusterManager.getMarkerCollection().setOnInfoWindowClickListener(null);
         mClusterManager.getClusterMarkerCollection().setOnMarkerClickListener(null);
         mClusterManager.getClusterMarkerCollection().setOnInfoWindowClickListener(null);
+        // The ClusterManager has removed this renderer's markers.
+        mMarkerRegistry.clear();
     }
 
     @Override
@@ -203,6 +217,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
 
     /**
      * Determine whether the cluster should be rendered as individual markers or a cluster.
+     * Called on both the main thread and the background thread that renders are computed on.
      */
     protected boolean shouldRenderAsCluster(Cluster<T> cluster) {
         return cluster.getSize() > mMinClusterSize;
@@ -229,7 +244,8 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
     }
 
     /**
-     * Called before the marker for a ClusterItem is added to the map.
+     * Called before the marker for a ClusterItem is added to the map. Called on the main thread,
+     * unless background preparation is turned on, see {@link #setBackgroundPreparation(boolean)}.
      */
     protected void onBeforeClusterItemRendered(T item, MarkerOptions markerOptions) {
     }
@@ -237,31 +253,179 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
     /**
      * Called before the marker for a Cluster is added to the map.
      * The default implementation draws a circle with a rough count of the number of items.
+     * Called on the main thread, unless background preparation is turned on, see
+     * {@link #setBackgroundPreparation(boolean)}.
      */
     protected void onBeforeClusterRendered(Cluster<T> cluster, MarkerOptions markerOptions) {
         int bucket = getBucket(cluster);
-        BitmapDescriptor descriptor = mIcons.get(bucket);
-        if (descriptor == null) {
-            mColoredCircleBackground.getPaint().setColor(getColor(bucket));
-            descriptor = BitmapDescriptorFactory.fromBitmap(mIconGenerator.makeIcon(getClusterText(bucket)));
-            mIcons.put(bucket, descriptor);
+        BitmapDescriptor descriptor;
+        // Icons may also be drawn in the background, by prepare().
+        synchronized (mIcons) {
+            descriptor = mIcons.get(bucket);
+            if (descriptor == null) {
+                mColoredCircleBackground.getPaint().setColor(getColor(bucket));
+                descriptor = BitmapDescriptorFactory.fromBitmap(mIconGenerator.makeIcon(getClusterText(bucket)));
+                mIcons.put(bucket, descriptor);
+            }
         }
         // TODO: consider adding anchor(.5, .5) (Individual markers will overlap more often)
         markerOptions.icon(descriptor);
     }
 
     /**
-     * Called after the marker for a Cluster has been added to the map.
+     * Lets {@link #prepare(Set, Bounds)} build marker options on a background thread while a
+     * gesture is still in progress. {@link #onBeforeClusterRendered} and
+     * {@link #onBeforeClusterItemRendered}, and the methods the default implementations call,
+     * are then also called on that thread, at the same time as renders on the main thread. Only
+     * turn this on if they are thread safe; e.g. they must not share an IconGenerator or a view
+     * with the main thread. Off by default.
+     */
+    public void setBackgroundPreparation(boolean backgroundPreparation) {
+        mBackgroundPreparation = backgroundPreparation;
+        if (!backgroundPreparation) {
+            mStagedMarkers.set(null);
+        }
+    }
+
+    /**
+     * Builds the marker options, including icons, for the clusters and items that will be
+     * visible in an area, so that rendering them later only has to add the markers. Called on a
+     * background thread by {@link ClusterManager} when it predicts the zoom level a gesture will
+     * end at. Does nothing unless background preparation is turned on, see
+     * {@link #setBackgroundPreparation(boolean)}.
+     *
+     * @param clusters the clusters that are expected to be rendered next.
+     * @param area     the area expected to be visible, in the coordinates of a
+     *                 {@link SphericalMercatorProjection} with a world width of 1.
+     */
+    public void prepare(Set<? extends Cluster<T>> clusters, Bounds area) {
+        if (!mBackgroundPreparation) {
+            return;
+        }
+        Map<Cluster<T>, MarkerOptions> clusterOptions = new HashMap<>();
+        Map<T, MarkerOptions> itemOptions = new IdentityHashMap<>();
+        for (Cluster<T> cluster : clusters) {
+            if (!area.contains(PROJECTION.toPoint(cluster.getPosition()))) {
+                continue;
+            }
+            if (shouldRenderAsCluster(cluster)) {
+                clusterOptions.put(cluster, buildClusterMarkerOptions(cluster));
+            } else {
+                for (T item : cluster.getItems()) {
+                    itemOptions.put(item, buildItemMarkerOptions(item));
+                }
+            }
+        }
+        mStagedMarkers.set(new StagedMarkers<>(clusters, clusterOptions, itemOptions));
+    }
+
+    /**
+     * Discards the marker options staged by {@link #prepare(Set, Bounds)} once the clusters they
+     * were prepared for have been rendered. Renders of other clusters, e.g. while a gesture is
+     * still in progress, leave them staged.
+     */
+    void onClustersRendered(Set<? extends Cluster<T>> clusters) {
+        StagedMarkers<T> staged = mStagedMarkers.get();
+        if (staged != null && staged.mClusters.equals(clusters)) {
+            // Leaves options staged by a later prepare() in place.
+            mStagedMarkers.compareAndSet(staged, null);
+        }
+    }
+
+    /**
+     * @return new options for an item's marker, using the staged ones if there are any.
+     */
+    MarkerOptions getItemMarkerOptions(T item) {
+        StagedMarkers<T> staged = mStagedMarkers.get();
+        MarkerOptions markerOptions = staged == null ? null : staged.mItemOptions.get(item);
+        return markerOptions != null ? copy(markerOptions) : buildItemMarkerOptions(item);
+    }
+
+    /**
+     * @return new options for a cluster's marker, using the staged ones if there are any.
+     */
+    MarkerOptions getClusterMarkerOptions(Cluster<T> cluster) {
+        StagedMarkers<T> staged = mStagedMarkers.get();
+        MarkerOptions markerOptions = staged == null ? null : staged.mClusterOptions.get(cluster);
+        return markerOptions != null ? copy(markerOptions) : buildClusterMarkerOptions(cluster);
+    }
+
+    /**
+     * @return a copy of staged options, which may be rendered more than once and must not be
+     * changed by any render.
+     */
+    private static MarkerOptions copy(MarkerOptions staged) {
+        MarkerOptions markerOptions = new MarkerOptions();
+        markerOptions.position(staged.getPosition());
+        markerOptions.alpha(staged.getAlpha());
+        markerOptions.anchor(staged.getAnchorU(), staged.getAnchorV());
+        markerOptions.draggable(staged.isDraggable());
+        markerOptions.flat(staged.isFlat());
+        markerOptions.icon(staged.getIcon());
+        markerOptions.infoWindowAnchor(staged.getInfoWindowAnchorU(), staged.getInfoWindowAnchorV());
+        markerOptions.rotation(staged.getRotation());
+        markerOptions.snippet(staged.getSnippet());
+        markerOptions.title(staged.getTitle());
+        markerOptions.visible(staged.isVisible());
+        markerOptions.zIndex(staged.getZIndex());
+        return markerOptions;
+    }
+
+    private MarkerOptions buildItemMarkerOptions(T item) {
+        MarkerOptions markerOptions = new MarkerOptions().position(item.getPosition());
+        if (!(item.getTitle() == null) && !(item.getSnippet() == null)) {
+            markerOptions.title(item.getTitle());
+            markerOptions.snippet(item.getSnippet());
+
+        } else if (!(item.getSnippet() == null)) {
+            markerOptions.title(item.getSnippet());
+
+        } else if (!(item.getTitle() == null)) {
+            markerOptions.title(item.getTitle());
+        }
+        onBeforeClusterItemRendered(item, markerOptions);
+        return markerOptions;
+    }
+
+    private MarkerOptions buildClusterMarkerOptions(Cluster<T> cluster) {
+        MarkerOptions markerOptions = new MarkerOptions().position(cluster.getPosition());
+        onBeforeClusterRendered(cluster, markerOptions);
+        return markerOptions;
+    }
+
+    /**
+     * Called after the marker for a Cluster has been added to the map, on the main thread.
      */
     protected void onClusterRendered(Cluster<T> cluster, Marker marker) {
     }
 
     /**
-     * Called after the marker for a ClusterItem has been added to the map.
+     * Called after the marker for a ClusterItem has been added to the map, on the main thread.
      */
     protected void onClusterItemRendered(T clusterItem, Marker marker) {
     }
 
+    /**
+     * Limits how many markers are added, removed or animated between two frames. Markers are
+     * added nearest the camera target first, so a low limit makes them fill in from the middle of
+     * the screen while the UI stays responsive, at the cost of taking more frames in total.
+     * <p/>
+     * The markers of a cluster that is shown as its items are added in the same frame, so a
+     * frame exceeds the limit when such a cluster alone has more items than it.
+     *
+     * @param maxMarkersPerFrame the limit, or 0 for none (the default).
+     */
+    public void setMaxMarkersPerFrame(int maxMarkersPerFrame) {
+        if (maxMarkersPerFrame < 0) {
+            throw new IllegalArgumentException("maxMarkersPerFrame must not be negative, was " + maxMarkersPerFrame);
+        }
+        mMaxMarkersPerFrame = maxMarkersPerFrame;
+    }
+
+    public int getMaxMarkersPerFrame() {
+        return mMaxMarkersPerFrame;
+    }
+
     /**
      * Get the marker from a ClusterItem
      *
@@ -269,7 +433,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
      * @return a marker from a ClusterItem or null if it does not exists
      */
     public Marker getMarker(T clusterItem) {
-        return mMarkerCache.get(clusterItem);
+        return mMarkerRegistry.getMarker(clusterItem);
     }
 
     /**
@@ -279,7 +443,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
      * @return a ClusterItem from a marker or null if it does not exists
      */
     public T getClusterItem(Marker marker) {
-        return mMarkerCache.get(marker);
+        return mMarkerRegistry.getItem(marker);
     }
 
     /**
@@ -289,7 +453,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
      * @return a marker from a cluster or null if it does not exists
      */
     public Marker getMarker(Cluster<T> cluster) {
-        return mClusterToMarker.get(cluster);
+        return mMarkerRegistry.getClusterMarker(cluster);
     }
 
     /**
@@ -299,7 +463,7 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
      * @return a Cluster from a marker or null if it does not exists
      */
     public Cluster<T> getCluster(Marker marker) {
-        return mMarkerToCluster.get(marker);
+        return mMarkerRegistry.getCluster(marker);
     }
 
     /**
@@ -364,6 +528,22 @@ public abstract class BaseClusterRenderer<T extends ClusterItem> implements Clus
 
     abstract RenderTask createRenderTask(Set<? extends Cluster<T>> clusters);
 
+    /**
+     * Marker options built ahead of rendering. Immutable once published.
+     */
+    private static class StagedMarkers<T extends ClusterItem> {
+        private final Set<? extends Cluster<T>> mClusters;
+        private final Map<Cluster<T>, MarkerOptions> mClusterOptions;
+        private final Map<T, MarkerOptions> mItemOptions;
+
+        private StagedMarkers(Set<? extends Cluster<T>> clusters, Map<Cluster<T>, MarkerOptions> clusterOptions,
+                              Map<T, MarkerOptions> itemOptions) {
+            mClusters = clusters;
+            mClusterOptions = clusterOptions;
+            mItemOptions = itemOptions;
+        }
+    }
+
     interface RenderTask extends Runnable {
         void setCallback(Runnable runnable);
 
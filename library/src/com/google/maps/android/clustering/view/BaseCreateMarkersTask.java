@@ -35,31 +35,25 @@ class BaseCreateMarkersTask<T extends ClusterItem, M extends BaseMarkerModifier>
         // no-op
     }
 
+    /**
+     * @return the number of markers this task adds or reuses.
+     */
+    int getMarkerCount() {
+        return clusterRenderer.shouldRenderAsCluster(cluster) ? 1 : Math.max(1, cluster.getSize());
+    }
+
     void perform(M markerModifier) {
         // Don't show small clusters. Render the markers inside, instead.
         if (!clusterRenderer.shouldRenderAsCluster(cluster)) {
             for (T item : cluster.getItems()) {
-                Marker marker = clusterRenderer.mMarkerCache.get(item);
+                Marker marker = clusterRenderer.mMarkerRegistry.getMarker(item);
                 MarkerWithPosition markerWithPosition;
                 if (marker == null) {
-                    MarkerOptions markerOptions = new MarkerOptions();
+                    MarkerOptions markerOptions = clusterRenderer.getItemMarkerOptions(item);
                     setPosition(markerOptions, item.getPosition());
-
-                    if (!(item.getTitle() == null) && !(item.getSnippet() == null)) {
-                        markerOptions.title(item.getTitle());
-                        markerOptions.snippet(item.getSnippet());
-
-                    } else if (!(item.getSnippet() == null)) {
-                        markerOptions.title(item.getSnippet());
-
-                    } else if (!(item.getTitle() == null)) {
-                        markerOptions.title(item.getTitle());
-                    }
-
-                    clusterRenderer.onBeforeClusterItemRendered(item, markerOptions);
                     marker = clusterRenderer.mClusterManager.getMarkerCollection().addMarker(markerOptions);
                     markerWithPosition = new MarkerWithPosition(marker);
-                    clusterRenderer.mMarkerCache.put(item, marker);
+                    clusterRenderer.mMarkerRegistry.putItem(item, marker);
                     onMarkerCreated(markerModifier, markerWithPosition, item.getPosition());
                 } else {
                     markerWithPosition = new MarkerWithPosition(marker);
@@ -70,16 +64,13 @@ class BaseCreateMarkersTask<T extends ClusterItem, M extends BaseMarkerModifier>
             return;
         }
 
-        Marker marker = clusterRenderer.mClusterToMarker.get(cluster);
+        Marker marker = clusterRenderer.mMarkerRegistry.getClusterMarker(cluster);
         MarkerWithPosition markerWithPosition;
         if (marker == null) {
-            MarkerOptions markerOptions = new MarkerOptions().
-                    position(cluster.getPosition());
+            MarkerOptions markerOptions = clusterRenderer.getClusterMarkerOptions(cluster);
             setPosition(markerOptions, cluster.getPosition());
-            clusterRenderer.onBeforeClusterRendered(cluster, markerOptions);
             marker = clusterRenderer.mClusterManager.getClusterMarkerCollection().addMarker(markerOptions);
-            clusterRenderer.mMarkerToCluster.put(marker, cluster);
-            clusterRenderer.mClusterToMarker.put(cluster, marker);
+            clusterRenderer.mMarkerRegistry.putCluster(cluster, marker);
             markerWithPosition = new MarkerWithPosition(marker);
             onMarkerCreated(markerModifier, markerWithPosition, cluster.getPosition());
         } else {
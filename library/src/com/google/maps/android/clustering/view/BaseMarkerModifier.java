@@ -18,6 +18,8 @@ import java.util.concurrent.locks.ReentrantLock;
 abstract class BaseMarkerModifier<ADD_TYPE, REMOVE_TYPE> extends Handler implements MessageQueue.IdleHandler {
     private static final int BLANK = 0;
 
+    static final int DEFAULT_TASKS_PER_MESSAGE = 10;
+
     Queue<ADD_TYPE> mCreateMarkersTasks = new LinkedList<>();
     Queue<ADD_TYPE> mOnScreenCreateMarkersTasks = new LinkedList<>();
     Queue<REMOVE_TYPE> mRemoveMarkersTasks = new LinkedList<>();
@@ -31,8 +33,29 @@ abstract class BaseMarkerModifier<ADD_TYPE, REMOVE_TYPE> extends Handler impleme
      */
     private boolean mListenerAdded;
 
+    /**
+     * The number of tasks to perform per message, i.e. between frames.
+     */
+    private final int mTasksPerMessage;
+
+    /**
+     * The number of markers to add, remove or animate per message, or 0 to count tasks instead.
+     */
+    private final int mMarkersPerMessage;
+
     BaseMarkerModifier() {
+        this(DEFAULT_TASKS_PER_MESSAGE, 0);
+    }
+
+    /**
+     * @param markersPerMessage if positive, perform tasks until the next one would take the
+     *                          number of markers in this message over it, rather than a number
+     *                          of tasks. At least one task is performed per message.
+     */
+    BaseMarkerModifier(int tasksPerMessage, int markersPerMessage) {
         super(Looper.getMainLooper());
+        mTasksPerMessage = tasksPerMessage;
+        mMarkersPerMessage = markersPerMessage;
     }
 
     @Override
@@ -46,11 +69,21 @@ abstract class BaseMarkerModifier<ADD_TYPE, REMOVE_TYPE> extends Handler impleme
         lock.lock();
         try {
 
-            // Perform up to 10 tasks at once.
-            // Consider only performing 10 remove tasks, not adds and animations.
-            // Removes are relatively slow and are much better when batched.
-            for (int i = 0; i < 10; i++) {
-                performNextTask();
+            if (mMarkersPerMessage > 0) {
+                int markers = 0;
+                int next;
+                while ((next = getNextTaskMarkerCount()) > 0
+                        && (markers == 0 || markers + next <= mMarkersPerMessage)) {
+                    performNextTask();
+                    markers += next;
+                }
+            } else {
+                // Perform up to mTasksPerMessage tasks at once.
+                // Consider only limiting remove tasks, not adds and animations.
+                // Removes are relatively slow and are much better when batched.
+                for (int i = 0; i < mTasksPerMessage; i++) {
+                    performNextTask();
+                }
             }
 
             if (!isBusy()) {
@@ -101,6 +134,12 @@ abstract class BaseMarkerModifier<ADD_TYPE, REMOVE_TYPE> extends Handler impleme
      */
     abstract void performNextTask();
 
+    /**
+     * @return the number of markers the task {@link #performNextTask()} would perform adds,
+     * removes or animates, at least 1, or 0 if there are no tasks.
+     */
+    abstract int getNextTaskMarkerCount();
+
     /**
      * @return true if there is still work to be processed.
      */
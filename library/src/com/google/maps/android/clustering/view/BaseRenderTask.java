@@ -6,28 +6,42 @@ import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.maps.android.clustering.Cluster;
 import com.google.maps.android.clustering.ClusterItem;
 import com.google.maps.android.clustering.view.model.MarkerWithPosition;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
- * Transforms the current view (represented by FastClusterRenderer.mClusters and FastClusterRenderer.mZoom) to a
- * new zoom level and set of clusters.
+ * Transforms the current view (represented by the renderer's mClusters and mZoom) to a new zoom
+ * level and set of clusters. If the clusters are unchanged, nothing is rendered.
  * <p/>
  * This must be run off the UI thread. Work is coordinated in the RenderTask, then queued up to
- * be executed by a MarkerModifier.
+ * be executed by a MarkerModifier, which does on-screen work before off-screen work and handles
+ * at most {@link BaseClusterRenderer#getMaxMarkersPerFrame()} markers between two frames.
  * <p/>
- * There are three stages for the render:
+ * {@link FastClusterRenderer} renders in three phases, waiting for the markers of each one to be
+ * done before starting the next:
  * <p/>
- * 1. Markers are added to the map
+ * 1. Markers for the on-screen clusters are added, nearest the camera target first.
  * <p/>
- * 2. Any old markers are removed from the map
+ * 2. The old on-screen markers are removed, and markers for the off-screen clusters are added.
  * <p/>
- * When zooming in, markers are created out from the nearest existing cluster. When zooming
- * out, existing clusters are moved into to the nearest new cluster.
+ * 3. The remaining old markers are removed.
+ * <p/>
+ * {@link AnimatingClusterRenderer} renders in two phases: all markers are added, on-screen ones
+ * first, then the old markers are removed. When zooming in, markers are created out from the
+ * nearest existing cluster. When zooming out, existing clusters are moved into the nearest new
+ * cluster.
  */
 public abstract class BaseRenderTask<T extends ClusterItem> implements BaseClusterRenderer.RenderTask {
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
     private Runnable mCallback;
     private Projection mProjection;
+    private LatLng mCameraTarget;
 
     private final BaseClusterRenderer<T> clusterRenderer;
     final Set<? extends Cluster<T>> clusters;
@@ -45,11 +59,42 @@ public abstract class BaseRenderTask<T extends ClusterItem> implements BaseClust
     @Override
     public void setProjection(Projection projection) {
         this.mProjection = projection;
+        this.mCameraTarget = clusterRenderer.mMap.getCameraPosition().target;
+    }
+
+    /**
+     * Sorts clusters nearest to the camera target first, so that markers fill in from the middle
+     * of the screen, where the user is most likely to be looking.
+     */
+    final void sortByDistanceToCameraTarget(List<Cluster<T>> clusters) {
+        sortByDistance(clusters, mCameraTarget);
+    }
+
+    /**
+     * Sorts clusters nearest to a target first, measuring across the antimeridian where that is
+     * shorter.
+     */
+    static <T extends ClusterItem> void sortByDistance(List<Cluster<T>> clusters, LatLng targetPosition) {
+        Point target = PROJECTION.toPoint(targetPosition);
+        List<RankedCluster<T>> ranked = new ArrayList<>(clusters.size());
+        for (Cluster<T> cluster : clusters) {
+            Point point = PROJECTION.toPoint(cluster.getPosition());
+            double dx = Math.abs(point.x - target.x);
+            // The world wraps horizontally.
+            dx = Math.min(dx, 1 - dx);
+            double dy = point.y - target.y;
+            ranked.add(new RankedCluster<>(cluster, dx * dx + dy * dy));
+        }
+        Collections.sort(ranked);
+        for (int i = 0; i < ranked.size(); i++) {
+            clusters.set(i, ranked.get(i).mCluster);
+        }
     }
 
     @Override
     public final void run() {
         if (clusters.equals(clusterRenderer.mClusters)) {
+            clusterRenderer.onClustersRendered(clusters);
             mCallback.run();
             return;
         }
@@ -67,9 +112,25 @@ public abstract class BaseRenderTask<T extends ClusterItem> implements BaseClust
 
         clusterRenderer.mMarkers = executeWork(visibleBounds);
         clusterRenderer.mClusters = clusters;
+        clusterRenderer.onClustersRendered(clusters);
 
         mCallback.run();
     }
 
     protected abstract Set<MarkerWithPosition> executeWork(LatLngBounds visibleBounds);
+
+    private static class RankedCluster<T extends ClusterItem> implements Comparable<RankedCluster<T>> {
+        private final Cluster<T> mCluster;
+        private final double mDistanceSquared;
+
+        private RankedCluster(Cluster<T> cluster, double distanceSquared) {
+            mCluster = cluster;
+            mDistanceSquared = distanceSquared;
+        }
+
+        @Override
+        public int compareTo(RankedCluster<T> other) {
+            return Double.compare(mDistanceSquared, other.mDistanceSquared);
+        }
+    }
 }
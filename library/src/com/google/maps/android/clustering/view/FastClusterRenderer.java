@@ -29,6 +29,7 @@ import com.google.maps.android.clustering.view.model.MarkerWithPosition;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -62,51 +63,94 @@ public class FastClusterRenderer<T extends ClusterItem> extends BaseClusterRende
             final Set<MarkerWithPosition> newMarkers = Collections.newSetFromMap(
                     new ConcurrentHashMap<MarkerWithPosition, Boolean>());
 
-            List<CreateMarkersTask> onScreenToAdd = new ArrayList<>();
-            List<CreateMarkersTask> offScreenToAdd = new ArrayList<>();
+            List<Cluster<T>> onScreenToAdd = new ArrayList<>();
+            List<Cluster<T>> offScreenToAdd = new ArrayList<>();
             for (Cluster<T> c : clusters) {
                 boolean onScreen = visibleBounds.contains(c.getPosition());
-                CreateMarkersTask markersTask = new CreateMarkersTask(c, newMarkers);
                 if (onScreen) {
-                    onScreenToAdd.add(markersTask);
+                    onScreenToAdd.add(c);
                 } else {
-                    offScreenToAdd.add(markersTask);
+                    offScreenToAdd.add(c);
                 }
             }
+            sortByDistanceToCameraTarget(onScreenToAdd);
 
-            markerModifier.add(true, onScreenToAdd);
-            markerModifier.add(false, offScreenToAdd);
-
-            // Wait for all markers to be added.
+            addMarkers(markerModifier, true, onScreenToAdd, newMarkers);
             markerModifier.waitUntilFree();
 
-            // Don't remove any markers that were just added. This is basically anything that had
-            // a hit in the MarkerCache.
-            markersToRemove.removeAll(newMarkers);
-
-            // Remove the old markers.
+            // Replace the markers the user can see before doing any off-screen work. Don't remove
+            // any markers that were just added. This is basically anything that had a hit in the
+            // MarkerRegistry.
             List<Marker> onScreenToRemove = new ArrayList<>();
-            List<Marker> offScreenToRemove = new ArrayList<>();
-            for (final MarkerWithPosition marker : markersToRemove) {
-                boolean onScreen = visibleBounds.contains(marker.getPosition());
-                if (onScreen) {
+            for (Iterator<MarkerWithPosition> it = markersToRemove.iterator(); it.hasNext(); ) {
+                MarkerWithPosition marker = it.next();
+                if (visibleBounds.contains(marker.getPosition()) && !newMarkers.contains(marker)) {
                     onScreenToRemove.add(marker.getMarker());
-                } else {
-                    offScreenToRemove.add(marker.getMarker());
+                    it.remove();
                 }
             }
+            removeMarkers(markerModifier, true, onScreenToRemove);
+            addMarkers(markerModifier, false, offScreenToAdd, newMarkers);
+            markerModifier.waitUntilFree();
 
-            markerModifier.remove(true, onScreenToRemove);
-            markerModifier.remove(false, offScreenToRemove);
+            // Remove the remaining old markers.
+            markersToRemove.removeAll(newMarkers);
+            List<Marker> offScreenToRemove = new ArrayList<>();
+            for (final MarkerWithPosition marker : markersToRemove) {
+                offScreenToRemove.add(marker.getMarker());
+            }
+            removeMarkers(markerModifier, false, offScreenToRemove);
 
             markerModifier.waitUntilFree();
 
             return newMarkers;
         }
+
+        /**
+         * Queues the clusters in order, split into batches of at most the markers per frame. A
+         * cluster that alone has more markers than that gets a batch of its own.
+         */
+        private void addMarkers(MarkerModifier markerModifier, boolean priority, List<Cluster<T>> clusters,
+                                Set<MarkerWithPosition> newMarkers) {
+            int maxMarkersPerFrame = getMaxMarkersPerFrame();
+            List<CreateMarkersTask> batch = new ArrayList<>();
+            int batchMarkers = 0;
+            for (Cluster<T> cluster : clusters) {
+                CreateMarkersTask task = new CreateMarkersTask(cluster, newMarkers);
+                int markers = task.getMarkerCount();
+                if (maxMarkersPerFrame > 0 && !batch.isEmpty() && batchMarkers + markers > maxMarkersPerFrame) {
+                    markerModifier.add(priority, batch);
+                    batch = new ArrayList<>();
+                    batchMarkers = 0;
+                }
+                batch.add(task);
+                batchMarkers += markers;
+            }
+            if (!batch.isEmpty()) {
+                markerModifier.add(priority, batch);
+            }
+        }
+
+        private void removeMarkers(MarkerModifier markerModifier, boolean priority, List<Marker> markers) {
+            int batchSize = getBatchSize(markers.size());
+            for (int from = 0; from < markers.size(); from += batchSize) {
+                markerModifier.remove(priority,
+                        new ArrayList<>(markers.subList(from, Math.min(markers.size(), from + batchSize))));
+            }
+        }
+
+        private int getBatchSize(int size) {
+            int maxMarkersPerFrame = getMaxMarkersPerFrame();
+            return maxMarkersPerFrame > 0 ? maxMarkersPerFrame : Math.max(1, size);
+        }
     }
 
     @SuppressLint("HandlerLeak")
     private class MarkerModifier extends BaseMarkerModifier<List<CreateMarkersTask>, List<Marker>> {
+        private MarkerModifier() {
+            super(DEFAULT_TASKS_PER_MESSAGE, getMaxMarkersPerFrame());
+        }
+
         @Override
         void performNextTask() {
             if (!mOnScreenRemoveMarkersTasks.isEmpty()) {
@@ -123,6 +167,28 @@ public class FastClusterRenderer<T extends ClusterItem> extends BaseClusterRende
             }
         }
 
+        @Override
+        int getNextTaskMarkerCount() {
+            if (!mOnScreenRemoveMarkersTasks.isEmpty()) {
+                return mOnScreenRemoveMarkersTasks.peek().size();
+            } else if (!mOnScreenCreateMarkersTasks.isEmpty()) {
+                return getMarkerCount(mOnScreenCreateMarkersTasks.peek());
+            } else if (!mCreateMarkersTasks.isEmpty()) {
+                return getMarkerCount(mCreateMarkersTasks.peek());
+            } else if (!mRemoveMarkersTasks.isEmpty()) {
+                return mRemoveMarkersTasks.peek().size();
+            }
+            return 0;
+        }
+
+        private int getMarkerCount(List<CreateMarkersTask> createMarkersTaskList) {
+            int markers = 0;
+            for (CreateMarkersTask task : createMarkersTaskList) {
+                markers += task.getMarkerCount();
+            }
+            return markers;
+        }
+
         private void addMarkers(List<CreateMarkersTask> createMarkersTaskList) {
             for (CreateMarkersTask task : createMarkersTaskList) {
                 task.perform(this);
@@ -131,10 +197,7 @@ public class FastClusterRenderer<T extends ClusterItem> extends BaseClusterRende
 
         private void removeMarkers(List<Marker> markers) {
             for (Marker m : markers) {
-                Cluster<T> cluster = mMarkerToCluster.get(m);
-                mClusterToMarker.remove(cluster);
-                mMarkerCache.remove(m);
-                mMarkerToCluster.remove(m);
+                mMarkerRegistry.remove(m);
                 mClusterManager.getMarkerManager().remove(m);
             }
         }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.view.model;
+
+import com.google.android.gms.maps.model.Marker;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The markers a renderer has on the map, and the items or clusters they represent.
+ * <p/>
+ * Each marker is given a small int handle, which indexes the arrays below. Markers are found by
+ * their id. Marker.getId() calls into the maps service just as Marker.hashCode() does, so a
+ * lookup by Marker still costs one such call; what keying on the id saves is the further calls
+ * Marker.equals() would make on every hash collision. Callers that already hold a marker's id can
+ * pass it instead and make no call at all. The map never reuses marker ids, so a marker that has
+ * been removed can't be mistaken for the marker that reused its handle. Marker tags are left to
+ * the app. Items are looked up by identity, so their hashCode() and equals() are not called.
+ * Clusters are looked up by equality, so that a cluster that is recomputed unchanged keeps its
+ * marker.
+ */
+public class MarkerRegistry<T extends ClusterItem> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Marker[] mMarkers = new Marker[INITIAL_CAPACITY];
+
+    /**
+     * The item or cluster each marker represents.
+     */
+    private Object[] mOwners = new Object[INITIAL_CAPACITY];
+    private boolean[] mIsCluster = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Handles below mHandleLimit that are not in use, reused before new ones.
+     */
+    private int[] mFreeHandles = new int[INITIAL_CAPACITY];
+    private int mFreeCount;
+    private int mHandleLimit;
+
+    private final Map<String, Integer> mHandlesById = new HashMap<>();
+    private final Map<T, Integer> mItemHandles = new IdentityHashMap<>();
+    private final Map<Cluster<T>, Integer> mClusterHandles = new HashMap<>();
+
+    public Marker getMarker(T item) {
+        Integer handle = mItemHandles.get(item);
+        return handle == null ? null : mMarkers[handle];
+    }
+
+    public Marker getClusterMarker(Cluster<T> cluster) {
+        Integer handle = mClusterHandles.get(cluster);
+        return handle == null ? null : mMarkers[handle];
+    }
+
+    /**
+     * @return the item a marker represents, or null if it represents a cluster or is unknown.
+     */
+    public T getItem(Marker marker) {
+        return marker == null ? null : getItem(marker.getId());
+    }
+
+    /**
+     * @return the item the marker with an id represents, or null if it represents a cluster or is
+     * unknown.
+     */
+    @SuppressWarnings("unchecked")
+    T getItem(String markerId) {
+        Integer handle = mHandlesById.get(markerId);
+        return handle == null || mIsCluster[handle] ? null : (T) mOwners[handle];
+    }
+
+    /**
+     * @return the cluster a marker represents, or null if it represents an item or is unknown.
+     */
+    public Cluster<T> getCluster(Marker marker) {
+        return marker == null ? null : getCluster(marker.getId());
+    }
+
+    /**
+     * @return the cluster the marker with an id represents, or null if it represents an item or
+     * is unknown.
+     */
+    @SuppressWarnings("unchecked")
+    Cluster<T> getCluster(String markerId) {
+        Integer handle = mHandlesById.get(markerId);
+        return handle == null || !mIsCluster[handle] ? null : (Cluster<T>) mOwners[handle];
+    }
+
+    public void putItem(T item, Marker marker) {
+        putItem(item, marker, marker.getId());
+    }
+
+    void putItem(T item, Marker marker, String markerId) {
+        mItemHandles.put(item, register(item, false, marker, markerId));
+    }
+
+    public void putCluster(Cluster<T> cluster, Marker marker) {
+        putCluster(cluster, marker, marker.getId());
+    }
+
+    void putCluster(Cluster<T> cluster, Marker marker, String markerId) {
+        mClusterHandles.put(cluster, register(cluster, true, marker, markerId));
+    }
+
+    /**
+     * Forgets a marker and what it represents. The marker itself is not removed from the map.
+     */
+    public void remove(Marker marker) {
+        if (marker != null) {
+            remove(marker.getId());
+        }
+    }
+
+    /**
+     * Forgets the marker with an id and what it represents.
+     */
+    void remove(String markerId) {
+        Integer handle = mHandlesById.remove(markerId);
+        if (handle == null) {
+            return;
+        }
+        if (mIsCluster[handle]) {
+            mClusterHandles.remove(mOwners[handle]);
+        } else {
+            mItemHandles.remove(mOwners[handle]);
+        }
+        mMarkers[handle] = null;
+        mOwners[handle] = null;
+        mFreeHandles[mFreeCount++] = handle;
+    }
+
+    /**
+     * Forgets all markers at once.
+     */
+    public void clear() {
+        Arrays.fill(mMarkers, 0, mHandleLimit, null);
+        Arrays.fill(mOwners, 0, mHandleLimit, null);
+        mHandlesById.clear();
+        mItemHandles.clear();
+        mClusterHandles.clear();
+        mFreeCount = 0;
+        mHandleLimit = 0;
+    }
+
+    /**
+     * @return the number of markers.
+     */
+    public int size() {
+        return mHandleLimit - mFreeCount;
+    }
+
+    /**
+     * @return the number of handles ever in use at once since the last {@link #clear()}.
+     */
+    int getHandleLimit() {
+        return mHandleLimit;
+    }
+
+    private int register(Object owner, boolean isCluster, Marker marker, String markerId) {
+        // A marker represents one thing at a time.
+        remove(markerId);
+        int handle;
+        if (mFreeCount > 0) {
+            handle = mFreeHandles[--mFreeCount];
+        } else {
+            if (mHandleLimit == mMarkers.length) {
+                int capacity = mHandleLimit * 2;
+                mMarkers = Arrays.copyOf(mMarkers, capacity);
+                mOwners = Arrays.copyOf(mOwners, capacity);
+                mIsCluster = Arrays.copyOf(mIsCluster, capacity);
+                mFreeHandles = Arrays.copyOf(mFreeHandles, capacity);
+            }
+            handle = mHandleLimit++;
+        }
+        mMarkers[handle] = marker;
+        mOwners[handle] = owner;
+        mIsCluster[handle] = isCluster;
+        mHandlesById.put(markerId, handle);
+        return handle;
+    }
+}
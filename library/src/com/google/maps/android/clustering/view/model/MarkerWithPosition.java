@@ -17,17 +17,21 @@ public class MarkerWithPosition {
         position = marker.getPosition();
     }
 
+    /**
+     * Compares markers by identity. Renderers wrap the Marker instances kept in their
+     * {@link MarkerRegistry}, and Marker.equals() and hashCode() call into the maps service.
+     */
     @Override
     public boolean equals(Object other) {
         if (other instanceof MarkerWithPosition) {
-            return marker.equals(((MarkerWithPosition) other).marker);
+            return marker == ((MarkerWithPosition) other).marker;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return marker.hashCode();
+        return System.identityHashCode(marker);
     }
 
     public Marker getMarker() {
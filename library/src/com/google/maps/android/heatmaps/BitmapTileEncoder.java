@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes tiles as PNG with {@link Bitmap#compress}, using the platform's encoder. Each thread
+ * reuses a bitmap and an output buffer from tile to tile.
+ */
+public class BitmapTileEncoder implements TileEncoder {
+
+    @Override
+    public byte[] encode(int[] pixels, int width, int height) {
+        TileBuffers buffers = TileBuffers.get();
+        Bitmap bitmap = buffers.bitmap(width, height);
+        // (int[] pixels, int offset, int stride, int x, int y, int width, int height)
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+
+        // Convert it into byte array (required for tile creation)
+        ByteArrayOutputStream stream = buffers.mStream;
+        stream.reset();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, stream);
+        return stream.toByteArray();
+    }
+}
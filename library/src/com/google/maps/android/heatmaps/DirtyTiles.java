@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.maps.android.geometry.Point;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * The tiles of a {@link HeatmapTileProvider} that an update of its data changed, so that only
+ * those need to be rendered again. Tiles change either because points were added or removed
+ * under them, or because their zoom level's maximum intensity changed, which recolors every
+ * tile of that zoom level. A zoom level with more than {@link #MAX_TILES_PER_ZOOM} dirty tiles is
+ * reported dirty as a whole, so that the report stays small however many points an update has.
+ */
+public class DirtyTiles {
+    /**
+     * Most dirty tiles kept for a zoom level before the whole zoom level is marked dirty.
+     */
+    static final int MAX_TILES_PER_ZOOM = 256;
+
+    /**
+     * Zoom levels whose every tile is dirty.
+     */
+    private final boolean[] mZoomDirty;
+
+    /**
+     * Dirty tiles at the other zoom levels.
+     */
+    private final Set<TileCoordinates> mTiles = new HashSet<TileCoordinates>();
+
+    /**
+     * Number of tiles in {@link #mTiles} at each zoom level.
+     */
+    private final int[] mTileCounts;
+
+    /**
+     * @param zoomLevels the number of zoom levels tiles may be requested at
+     */
+    DirtyTiles(int zoomLevels) {
+        mZoomDirty = new boolean[zoomLevels];
+        mTileCounts = new int[zoomLevels];
+    }
+
+    /**
+     * @return whether no tile is dirty.
+     */
+    public boolean isEmpty() {
+        if (!mTiles.isEmpty()) {
+            return false;
+        }
+        for (boolean dirty : mZoomDirty) {
+            if (dirty) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether every tile at the given zoom level is dirty.
+     */
+    public boolean isZoomDirty(int zoom) {
+        return zoom >= mZoomDirty.length || mZoomDirty[zoom];
+    }
+
+    /**
+     * @return whether the given tile is dirty.
+     */
+    public boolean isDirty(int x, int y, int zoom) {
+        return isZoomDirty(zoom) || mTiles.contains(new TileCoordinates(x, y, zoom));
+    }
+
+    /**
+     * @return the dirty tiles at zoom levels that aren't dirty as a whole, see
+     * {@link #isZoomDirty(int)}.
+     */
+    public Set<TileCoordinates> getTiles() {
+        return Collections.unmodifiableSet(mTiles);
+    }
+
+    /**
+     * Marks every tile at a zoom level dirty.
+     */
+    void addZoom(int zoom) {
+        if (mZoomDirty[zoom]) {
+            return;
+        }
+        mZoomDirty[zoom] = true;
+        if (mTileCounts[zoom] == 0) {
+            return;
+        }
+        mTileCounts[zoom] = 0;
+        for (Iterator<TileCoordinates> iterator = mTiles.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().zoom == zoom) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Marks the tiles at all zoom levels whose padded bounds contain a point dirty, i.e. those
+     * whose pixels the point's intensity is blurred into. Zoom levels that collect more than
+     * {@link #MAX_TILES_PER_ZOOM} dirty tiles are marked dirty as a whole instead.
+     *
+     * @param point   the point, in world coordinates
+     * @param radius  the radius of the blur, in pixels
+     * @param tileDim the width of a tile, in pixels
+     */
+    void addPoint(Point point, int radius, int tileDim) {
+        for (int zoom = 0; zoom < mZoomDirty.length; zoom++) {
+            if (mZoomDirty[zoom]) {
+                continue;
+            }
+            int tiles = 1 << zoom;
+            double x = point.x * tileDim * tiles;
+            double y = point.y * tileDim * tiles;
+            // Tile i spans pixels [i * tileDim - radius, (i + 1) * tileDim + radius], inclusive.
+            int minX = (int) Math.ceil((x - radius) / tileDim - 1);
+            int maxX = (int) Math.floor((x + radius) / tileDim);
+            int minY = Math.max(0, (int) Math.ceil((y - radius) / tileDim - 1));
+            int maxY = Math.min(tiles - 1, (int) Math.floor((y + radius) / tileDim));
+            for (int tileX = minX; tileX <= maxX; tileX++) {
+                // Tiles wrap around the antimeridian
+                int wrappedX = (tileX % tiles + tiles) % tiles;
+                for (int tileY = minY; tileY <= maxY; tileY++) {
+                    if (mTiles.add(new TileCoordinates(wrappedX, tileY, zoom))) {
+                        mTileCounts[zoom]++;
+                    }
+                }
+            }
+            if (mTileCounts[zoom] > MAX_TILES_PER_ZOOM) {
+                addZoom(zoom);
+            }
+        }
+    }
+}
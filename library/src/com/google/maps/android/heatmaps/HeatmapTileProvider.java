@@ -18,19 +18,24 @@ package com.google.maps.android.heatmaps;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.support.v4.util.LongSparseArray;
 
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Tile;
 import com.google.android.gms.maps.model.TileProvider;
+import com.google.maps.android.Bands;
 import com.google.maps.android.geometry.Bounds;
 import com.google.maps.android.geometry.Point;
 import com.google.maps.android.quadtree.PointQuadTree;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Tile provider that creates heatmap tiles.
@@ -47,6 +52,39 @@ public class HeatmapTileProvider implements TileProvider {
      */
     public static final double DEFAULT_OPACITY = 0.7;
 
+    /**
+     * How points are blurred into the heatmap.
+     */
+    public enum BlurMode {
+        /**
+         * Convolves with a Gaussian kernel. Exact, but its cost per pixel grows with the radius.
+         */
+        GAUSSIAN,
+
+        /**
+         * Approximates the Gaussian with three successive box blurs of running sums, whose cost
+         * per pixel is the same whatever the radius. The total intensity is the same as with
+         * {@link #GAUSSIAN}, but isolated peaks are flatter: about 10% lower at large radii, and
+         * up to 20% lower at the minimum radius.
+         */
+        TRIPLE_BOX
+    }
+
+    /**
+     * Default blur mode
+     */
+    public static final BlurMode DEFAULT_BLUR_MODE = BlurMode.GAUSSIAN;
+
+    /**
+     * Default maximum size of the encoded tiles kept in memory, in bytes.
+     */
+    public static final int DEFAULT_TILE_CACHE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Default highest zoom level at which tiles are rendered from pre-summed intensities
+     */
+    public static final int DEFAULT_PYRAMID_MAX_ZOOM = 10;
+
     /**
      * Colors for default gradient.
      * Array of colors, represented by ints.
@@ -80,7 +118,7 @@ public class HeatmapTileProvider implements TileProvider {
     /**
      * Tile dimension, in pixels.
      */
-    private static final int TILE_DIM = 512;
+    static final int TILE_DIM = 512;
 
     /**
      * Assumed screen size (pixels)
@@ -100,25 +138,72 @@ public class HeatmapTileProvider implements TileProvider {
     /**
      * Maximum zoom level possible on a map.
      */
-    private static final int MAX_ZOOM_LEVEL = 22;
+    static final int MAX_ZOOM_LEVEL = 22;
+
+    /**
+     * Maximum zoom level that intensities can be pre-summed for. The world is then 2^19 pixels
+     * wide, and summing them takes a temporary array of that many ints.
+     */
+    static final int MAX_PYRAMID_ZOOM = 10;
+
+    /**
+     * Minimum number of points added or removed since the pyramid was summed for it to be summed
+     * again. It is also only summed again once they are more than 1 / PENDING_POINTS_RATIO of
+     * all points, so that its cost is spread over as many updates as it takes.
+     */
+    private static final int MIN_PENDING_POINTS = 4096;
+    private static final int PENDING_POINTS_RATIO = 16;
 
     /**
      * Minimum radius value.
      */
-    private static final int MIN_RADIUS = 10;
+    static final int MIN_RADIUS = 10;
 
     /**
      * Maximum radius value.
      */
-    private static final int MAX_RADIUS = 50;
+    static final int MAX_RADIUS = 50;
 
     /**
-     * Quad tree of all the points to display in the heatmap
+     * Minimum number of rows for each band of a parallel convolution. Below this, handing bands to
+     * other threads costs more than it saves.
+     */
+    private static final int MIN_ROWS_PER_BAND = 64;
+
+    /**
+     * Guards the data and everything derived from it: held for reading while tiles quantise
+     * points, and for writing while the data changes.
+     */
+    private final ReadWriteLock mDataLock = new ReentrantReadWriteLock();
+
+    /**
+     * Quad tree of all the points to display in the heatmap, or null if they are columnar
      */
     private PointQuadTree<WeightedLatLng> mTree;
 
     /**
-     * Collection of all the data.
+     * Flat index of all the points to display in the heatmap if they are columnar, or null
+     */
+    private PointGrid mGrid;
+
+    /**
+     * Intensities of the points pre-summed into pixels at low zoom levels, or null if disabled
+     */
+    private IntensityPyramid mPyramid;
+
+    /**
+     * Highest zoom level to pre-sum intensities for, or -1 if disabled
+     */
+    private final int mPyramidMaxZoom;
+
+    /**
+     * Number of points in the heatmap
+     */
+    private int mPointCount;
+
+    /**
+     * Collection of all the data, or null once points have been added or removed. The quad tree
+     * then holds the only copy, see {@link #getData()}. Also null if the data is columnar.
      */
     private Collection<WeightedLatLng> mData;
 
@@ -145,33 +230,73 @@ public class HeatmapTileProvider implements TileProvider {
     /**
      * Kernel to use for convolution
      */
-    private double[] mKernel;
+    private float[] mKernel;
+
+    /**
+     * How to blur the points
+     */
+    private volatile BlurMode mBlurMode;
+
+    /**
+     * Encodes the colored tiles
+     */
+    private volatile TileEncoder mTileEncoder;
 
     /**
      * Opacity of the overall heatmap overlay [0...1]
      */
     private double mOpacity;
 
+    /**
+     * Buckets of the points that maximum intensities are estimated from
+     */
+    private MaxIntensityEstimator mEstimator;
+
     /**
      * Maximum intensity estimates for heatmap
      */
     private double[] mMaxIntensity;
 
+    /**
+     * Runs bands of the convolution in parallel, if set.
+     */
+    private volatile Executor mExecutor;
+    private volatile int mParallelism = 1;
+
+    /**
+     * Buckets points in parallel to estimate maximum intensities, if set.
+     */
+    private volatile Executor mEstimationExecutor;
+    private volatile int mEstimationParallelism = 1;
+
+    /**
+     * Tiles already rendered with the current settings, or null if caching is disabled.
+     */
+    private final TileCache mTileCache;
+
     /**
      * Builder class for the HeatmapTileProvider.
      */
     public static class Builder {
-        // Required parameters - not final, as there are 2 ways to set it
+        // Required parameters - not final, as there are 3 ways to set it
         private Collection<WeightedLatLng> data;
+        private ProjectedPoints columns;
 
         // Optional, initialised to default values
         private int radius = DEFAULT_RADIUS;
         private Gradient gradient = DEFAULT_GRADIENT;
         private double opacity = DEFAULT_OPACITY;
+        private int tileCacheSize = DEFAULT_TILE_CACHE_SIZE;
+        private BlurMode blurMode = DEFAULT_BLUR_MODE;
+        private TileEncoder tileEncoder = new BitmapTileEncoder();
+        private int pyramidMaxZoom = DEFAULT_PYRAMID_MAX_ZOOM;
+        private Executor estimationExecutor;
+        private int estimationParallelism = 1;
 
         /**
          * Constructor for builder.
-         * No required parameters here, but user must call either data() or weightedData().
+         * No required parameters here, but user must call either data(), weightedData() or
+         * columnarData().
          */
         public Builder() {
         }
@@ -196,6 +321,7 @@ public class HeatmapTileProvider implements TileProvider {
          */
         public Builder weightedData(Collection<WeightedLatLng> val) {
             this.data = val;
+            this.columns = null;
 
             // Check that points is non empty
             if (this.data.isEmpty()) {
@@ -204,6 +330,36 @@ public class HeatmapTileProvider implements TileProvider {
             return this;
         }
 
+        /**
+         * Setter for columnar data in builder, see
+         * {@link HeatmapTileProvider#setColumnarData(double[], double[], float[])}.
+         *
+         * @param latitudes   Latitudes of the points. Should be non-empty.
+         * @param longitudes  Longitudes of the points, as many as latitudes.
+         * @param intensities Intensities of the points, as many as latitudes, or null.
+         * @return updated builder object
+         */
+        public Builder columnarData(double[] latitudes, double[] longitudes, float[] intensities) {
+            return columnarData(DoubleBuffer.wrap(latitudes), DoubleBuffer.wrap(longitudes),
+                    intensities == null ? null : FloatBuffer.wrap(intensities));
+        }
+
+        /**
+         * Setter for columnar data in builder, see
+         * {@link HeatmapTileProvider#setColumnarData(DoubleBuffer, DoubleBuffer, FloatBuffer)}.
+         *
+         * @param latitudes   Latitudes of the points. Should be non-empty.
+         * @param longitudes  Longitudes of the points, as many as latitudes.
+         * @param intensities Intensities of the points, as many as latitudes, or null.
+         * @return updated builder object
+         */
+        public Builder columnarData(DoubleBuffer latitudes, DoubleBuffer longitudes,
+                                    FloatBuffer intensities) {
+            this.columns = ProjectedPoints.project(latitudes, longitudes, intensities);
+            this.data = null;
+            return this;
+        }
+
         /**
          * Setter for radius in builder
          *
@@ -246,17 +402,94 @@ public class HeatmapTileProvider implements TileProvider {
             return this;
         }
 
+        /**
+         * Setter for blur mode in builder
+         *
+         * @param val How to blur the points, see {@link BlurMode}.
+         * @return updated builder object
+         */
+        public Builder blurMode(BlurMode val) {
+            if (val == null) {
+                throw new IllegalArgumentException("Blur mode must not be null");
+            }
+            blurMode = val;
+            return this;
+        }
+
+        /**
+         * Setter for tile encoder in builder
+         *
+         * @param val Encoder of the tiles' pixels. Defaults to a {@link BitmapTileEncoder}.
+         * @return updated builder object
+         */
+        public Builder tileEncoder(TileEncoder val) {
+            if (val == null) {
+                throw new IllegalArgumentException("Tile encoder must not be null");
+            }
+            tileEncoder = val;
+            return this;
+        }
+
+        /**
+         * Setter for pyramid max zoom in builder
+         *
+         * @param val Highest zoom level at which tiles are rendered from intensities pre-summed
+         *            into their pixels, rather than from the points, in range [0, 10].
+         *            Summing takes memory proportional to the number of distinct pixels the
+         *            points fall in. -1 disables it.
+         * @return updated builder object
+         */
+        public Builder pyramidMaxZoom(int val) {
+            pyramidMaxZoom = val;
+            // Check that zoom is in range
+            if (pyramidMaxZoom < -1 || pyramidMaxZoom > MAX_PYRAMID_ZOOM) {
+                throw new IllegalArgumentException("Pyramid max zoom must be in range [-1, "
+                        + MAX_PYRAMID_ZOOM + "]");
+            }
+            return this;
+        }
+
+        /**
+         * Setter for parallel estimation in builder, see
+         * {@link HeatmapTileProvider#setParallelEstimation(Executor, int)}.
+         *
+         * @param executor    Runs the extra bucketing tasks, or null to bucket on one thread.
+         * @param parallelism Maximum number of threads to bucket on.
+         * @return updated builder object
+         */
+        public Builder parallelEstimation(Executor executor, int parallelism) {
+            estimationExecutor = executor;
+            estimationParallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        /**
+         * Setter for tile cache size in builder
+         *
+         * @param val Maximum size of the encoded tiles to keep in memory, in bytes.
+         *            0 disables the cache.
+         * @return updated builder object
+         */
+        public Builder tileCacheSize(int val) {
+            tileCacheSize = val;
+            // Check that size is not negative
+            if (tileCacheSize < 0) {
+                throw new IllegalArgumentException("Tile cache size must not be negative");
+            }
+            return this;
+        }
+
         /**
          * Call when all desired options have been set.
-         * Note: you must set data using data or weightedData before this!
+         * Note: you must set data using data, weightedData or columnarData before this!
          *
          * @return HeatmapTileProvider created with desired options.
          */
         public HeatmapTileProvider build() {
-            // Check if data or weightedData has been called
-            if (data == null) {
-                throw new IllegalStateException("No input data: you must use either .data or " +
-                        ".weightedData before building");
+            // Check if data, weightedData or columnarData has been called
+            if (data == null && columns == null) {
+                throw new IllegalStateException("No input data: you must use either .data, " +
+                        ".weightedData or .columnarData before building");
             }
 
             return new HeatmapTileProvider(this);
@@ -270,15 +503,25 @@ public class HeatmapTileProvider implements TileProvider {
         mRadius = builder.radius;
         mGradient = builder.gradient;
         mOpacity = builder.opacity;
+        mBlurMode = builder.blurMode;
+        mTileEncoder = builder.tileEncoder;
+        mPyramidMaxZoom = builder.pyramidMaxZoom;
+        mEstimationExecutor = builder.estimationExecutor;
+        mEstimationParallelism = builder.estimationParallelism;
+        mTileCache = builder.tileCacheSize > 0 ? new TileCache(builder.tileCacheSize) : null;
 
         // Compute kernel density function (sd = 1/3rd of radius)
-        mKernel = generateKernel(mRadius, mRadius / 3.0);
+        mKernel = toFloats(generateKernel(mRadius, mRadius / 3.0));
 
         // Generate color map
         setGradient(mGradient);
 
         // Set the data
-        setWeightedData(mData);
+        if (builder.columns != null) {
+            setColumnarData(builder.columns);
+        } else {
+            setWeightedData(mData);
+        }
     }
 
     /**
@@ -293,32 +536,226 @@ public class HeatmapTileProvider implements TileProvider {
      *             changing the radius.
      */
     public void setWeightedData(Collection<WeightedLatLng> data) {
-        // Change point set
-        mData = data;
-
         // Check point set is OK
-        if (mData.isEmpty()) {
+        if (data.isEmpty()) {
             throw new IllegalArgumentException("No input points.");
         }
 
-        // Because quadtree bounds are final once the quadtree is created, we cannot add
-        // points outside of those bounds to the quadtree after creation.
-        // As quadtree creation is actually quite lightweight/fast as compared to other functions
-        // called in heatmap creation, re-creating the quadtree is an acceptable solution here.
+        mDataLock.writeLock().lock();
+        try {
+            // Change point set
+            mData = data;
+            mPointCount = data.size();
+            mGrid = null;
+
+            // Because quadtree bounds are final once the quadtree is created, we cannot add
+            // points outside of those bounds to the quadtree after creation.
+            // As quadtree creation is actually quite lightweight/fast as compared to other functions
+            // called in heatmap creation, re-creating the quadtree is an acceptable solution here.
+
+            // Make the quad tree
+            mBounds = getBounds(mData);
+            buildTree(mData);
+
+            // Pre-sum intensities for low zoom levels, whose tiles cover many points
+            ProjectedPoints points = ProjectedPoints.of(mData);
+            buildPyramid(points);
+
+            // Calculate reasonable maximum intensity for color scale (user can also specify)
+            // Get max intensities
+            mEstimator = newEstimator(points, mBounds, mRadius, mEstimationExecutor,
+                    mEstimationParallelism);
+            mMaxIntensity = getMaxIntensities(mEstimator);
+        } finally {
+            mDataLock.writeLock().unlock();
+        }
+
+        invalidateTileCache();
+    }
+
+    /**
+     * Changes the dataset the heatmap is portraying to columns of coordinates and intensities.
+     * The points are projected and indexed in flat arrays, without creating any objects per
+     * point, so they take several times less memory than as WeightedLatLngs. They can't be
+     * added to or removed from later.
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param latitudes   Latitudes of the points, in degrees. Should be non-empty.
+     * @param longitudes  Longitudes of the points, in degrees, as many as latitudes.
+     * @param intensities Intensities of the points, as many as latitudes, or null for
+     *                    {@link WeightedLatLng#DEFAULT_INTENSITY}. Negative intensities are
+     *                    replaced by it, as by WeightedLatLng.
+     *                    The arrays are copied, so can be reused once this returns.
+     */
+    public void setColumnarData(double[] latitudes, double[] longitudes, float[] intensities) {
+        setColumnarData(DoubleBuffer.wrap(latitudes), DoubleBuffer.wrap(longitudes),
+                intensities == null ? null : FloatBuffer.wrap(intensities));
+    }
+
+    /**
+     * As {@link #setColumnarData(double[], double[], float[])}, reading the remaining values of
+     * buffers, e.g. direct buffers of memory-mapped columns. Their positions are not changed.
+     */
+    public void setColumnarData(DoubleBuffer latitudes, DoubleBuffer longitudes,
+                                FloatBuffer intensities) {
+        setColumnarData(ProjectedPoints.project(latitudes, longitudes, intensities));
+    }
+
+    private void setColumnarData(ProjectedPoints points) {
+        mDataLock.writeLock().lock();
+        try {
+            mData = null;
+            mTree = null;
+            mPointCount = points.mSize;
+            mBounds = points.getBounds();
+            mGrid = new PointGrid(points, mBounds);
+
+            // The index holds the points in its own order from now on
+            buildPyramid(mGrid.getPoints());
+            mEstimator = newEstimator(mGrid.getPoints(), mBounds, mRadius, mEstimationExecutor,
+                    mEstimationParallelism);
+            mMaxIntensity = getMaxIntensities(mEstimator);
+        } finally {
+            mDataLock.writeLock().unlock();
+        }
+
+        invalidateTileCache();
+    }
+
+    /**
+     * Adds points to the heatmap, updating its index and maximum intensities rather than
+     * rebuilding them. Points outside the bounds of the current data still rebuild the index.
+     * <p/>
+     * After this, the heatmap no longer reads the collection last passed to setWeightedData.
+     * Not supported for columnar data.
+     *
+     * @param points Points to add.
+     * @return the tiles that changed, which this provider's tile cache has dropped. Tiles of the
+     * overlay's cache can be cleared accordingly.
+     */
+    public DirtyTiles addPoints(Collection<WeightedLatLng> points) {
+        return updatePoints(points, true);
+    }
+
+    /**
+     * Removes points from the heatmap, updating its index and maximum intensities rather than
+     * rebuilding them. Points are matched by identity; those not in the heatmap are ignored.
+     * <p/>
+     * After this, the heatmap no longer reads the collection last passed to setWeightedData.
+     * Not supported for columnar data.
+     *
+     * @param points Points to remove.
+     * @return the tiles that changed, which this provider's tile cache has dropped. Tiles of the
+     * overlay's cache can be cleared accordingly.
+     */
+    public DirtyTiles removePoints(Collection<WeightedLatLng> points) {
+        return updatePoints(points, false);
+    }
+
+    private DirtyTiles updatePoints(Collection<WeightedLatLng> points, boolean add) {
+        DirtyTiles dirty = new DirtyTiles(MAX_ZOOM_LEVEL);
+        mDataLock.writeLock().lock();
+        try {
+            if (mGrid != null) {
+                throw new IllegalStateException("Columnar data can't be added to or removed from");
+            }
+            // The tree holds the data from now on
+            mData = null;
+            double[] previousMaxIntensity = mMaxIntensity;
+            int radius = mRadius;
+
+            if (add) {
+                boolean outside = false;
+                for (WeightedLatLng point : points) {
+                    outside |= !mBounds.contains(point.getPoint().x, point.getPoint().y);
+                }
+                if (outside) {
+                    // Grow the bounds, and rebuild what depends on them
+                    Collection<WeightedLatLng> data = getData();
+                    data.addAll(points);
+                    mBounds = getBounds(data);
+                    buildTree(data);
+                    mEstimator = newEstimator(ProjectedPoints.of(data), mBounds, radius,
+                            mEstimationExecutor, mEstimationParallelism);
+                } else {
+                    for (WeightedLatLng point : points) {
+                        mTree.add(point);
+                        mEstimator.add(point);
+                    }
+                }
+                mPointCount += points.size();
+                for (WeightedLatLng point : points) {
+                    dirty.addPoint(point.getPoint(), radius, TILE_DIM);
+                    if (mPyramid != null) {
+                        mPyramid.add(point);
+                    }
+                }
+            } else {
+                for (WeightedLatLng point : points) {
+                    if (!mTree.remove(point)) {
+                        continue;
+                    }
+                    mEstimator.remove(point);
+                    mPointCount--;
+                    dirty.addPoint(point.getPoint(), radius, TILE_DIM);
+                    if (mPyramid != null) {
+                        mPyramid.remove(point);
+                    }
+                }
+            }
+
+            // Sum the pyramid again once tiles spend long enough on its pending points
+            if (mPyramid != null && mPyramid.getPendingCount() > MIN_PENDING_POINTS
+                    && mPyramid.getPendingCount() > mPointCount / PENDING_POINTS_RATIO) {
+                buildPyramid(ProjectedPoints.of(getData()));
+            }
+
+            mMaxIntensity = getMaxIntensities(mEstimator);
+            for (int zoom = 0; zoom < MAX_ZOOM_LEVEL; zoom++) {
+                if (mMaxIntensity[zoom] != previousMaxIntensity[zoom]) {
+                    dirty.addZoom(zoom);
+                }
+            }
+        } finally {
+            mDataLock.writeLock().unlock();
+        }
+
+        if (mTileCache != null) {
+            mTileCache.invalidate(dirty);
+        }
+        return dirty;
+    }
 
-        // Make the quad tree
-        mBounds = getBounds(mData);
+    /**
+     * @return all the points of the heatmap. A new list if they are only held by the tree.
+     */
+    private Collection<WeightedLatLng> getData() {
+        if (mData != null) {
+            return mData;
+        }
+        ArrayList<WeightedLatLng> data = new ArrayList<WeightedLatLng>();
+        mTree.search(mBounds, data);
+        return data;
+    }
 
+    private void buildTree(Collection<WeightedLatLng> data) {
         mTree = new PointQuadTree<WeightedLatLng>(mBounds);
 
         // Add points to quad tree
-        for (WeightedLatLng l : mData) {
+        for (WeightedLatLng l : data) {
             mTree.add(l);
         }
+    }
+
+    /**
+     * @return all the points of the heatmap, projected. A new copy unless they are columnar.
+     */
+    private ProjectedPoints getPoints() {
+        return mGrid != null ? mGrid.getPoints() : ProjectedPoints.of(getData());
+    }
 
-        // Calculate reasonable maximum intensity for color scale (user can also specify)
-        // Get max intensities
-        mMaxIntensity = getMaxIntensities(mRadius);
+    private void buildPyramid(ProjectedPoints points) {
+        mPyramid = mPyramidMaxZoom >= 0 ? new IntensityPyramid(points, TILE_DIM, mPyramidMaxZoom) : null;
     }
 
     /**
@@ -358,28 +795,81 @@ public class HeatmapTileProvider implements TileProvider {
      * @return image in Tile format
      */
     public Tile getTile(int x, int y, int zoom) {
+        if (mTileCache == null) {
+            return renderTile(x, y, zoom);
+        }
+        Tile tile = mTileCache.get(x, y, zoom);
+        if (tile == null) {
+            int generation = mTileCache.getGeneration();
+            tile = renderTile(x, y, zoom);
+            mTileCache.put(generation, x, y, zoom, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * @return the fraction of tile requests served from the tile cache, or 0 if caching is
+     * disabled or no tiles have been requested.
+     */
+    public float getTileCacheHitRate() {
+        return mTileCache == null ? 0 : mTileCache.getHitRate();
+    }
+
+    /**
+     * @return the number of tile requests served from the tile cache.
+     */
+    public int getTileCacheHitCount() {
+        return mTileCache == null ? 0 : mTileCache.hitCount();
+    }
+
+    /**
+     * @return the number of tile requests that had to be rendered.
+     */
+    public int getTileCacheMissCount() {
+        return mTileCache == null ? 0 : mTileCache.missCount();
+    }
+
+    /**
+     * Drops cached tiles once the settings they were rendered with change.
+     */
+    private void invalidateTileCache() {
+        if (mTileCache != null) {
+            mTileCache.invalidate();
+        }
+    }
+
+    /**
+     * Renders a tile with the current settings. Works in the calling thread's {@link TileBuffers},
+     * so that the only allocations in steady state are of the returned tile.
+     */
+    private Tile renderTile(int x, int y, int zoom) {
         // Convert tile coordinates and zoom into Point/Bounds format
         // Know that at zoom level 0, there is one tile: (0, 0) (arbitrary width 512)
         // Each zoom level multiplies number of tiles by 2
         // Width of the world = WORLD_WIDTH = 1
         // x = [0, 1) corresponds to [-180, 180)
 
+        // Read the settings once, as they may be changed while rendering
+        int radius = mRadius;
+        float[] kernel = mKernel;
+
         // calculate width of one tile, given there are 2 ^ zoom tiles in that zoom level
         // In terms of world width units
         double tileWidth = WORLD_WIDTH / Math.pow(2, zoom);
 
         // how much padding to include in search
-        // is to tileWidth as mRadius (padding in terms of pixels) is to TILE_DIM
+        // is to tileWidth as radius (padding in terms of pixels) is to TILE_DIM
         // In terms of world width units
-        double padding = tileWidth * mRadius / TILE_DIM;
+        double padding = tileWidth * radius / TILE_DIM;
 
         // padded tile width
         // In terms of world width units
         double tileWidthPadded = tileWidth + 2 * padding;
 
-        // padded bucket width - divided by number of buckets
+        // padded dimension of the grid, and bucket width - divided by number of buckets
         // In terms of world width units
-        double bucketWidth = tileWidthPadded / (TILE_DIM + mRadius * 2);
+        int dimPadded = TILE_DIM + radius * 2;
+        double bucketWidth = tileWidthPadded / dimPadded;
 
         // Make bounds: minX, maxX, minY, maxY
         double minX = x * tileWidth - padding;
@@ -387,74 +877,165 @@ public class HeatmapTileProvider implements TileProvider {
         double minY = y * tileWidth - padding;
         double maxY = (y + 1) * tileWidth + padding;
 
+        // Main tile bounds to search
+        Bounds tileBounds = new Bounds(minX, maxX, minY, maxY);
+
+        TileBuffers buffers = TileBuffers.get();
+        float[] intensity;
+        double maxIntensity;
+        mDataLock.readLock().lock();
+        try {
+            // If outside of *padded* quadtree bounds, return blank tile
+            // This is comparing our bounds to the padded bounds of all points in the quadtree
+            // ie tiles that don't touch the heatmap at all
+            Bounds paddedBounds = new Bounds(mBounds.minX - padding, mBounds.maxX + padding,
+                    mBounds.minY - padding, mBounds.maxY + padding);
+            if (!tileBounds.intersects(paddedBounds)) {
+                return TileProvider.NO_TILE;
+            }
+
+            intensity = buffers.intensity(dimPadded * dimPadded);
+
+            // Read pre-summed intensities if there are any for this zoom level
+            if (mPyramid != null && mPyramid.hasLevel(zoom)) {
+                if (mPyramid.quantize(zoom, x * TILE_DIM - radius, y * TILE_DIM - radius, intensity,
+                        dimPadded) == 0) {
+                    return TileProvider.NO_TILE;
+                }
+            } else if (!quantize(tileBounds, bucketWidth, buffers.mPoints, intensity, dimPadded)) {
+                return TileProvider.NO_TILE;
+            }
+            maxIntensity = mMaxIntensity[zoom];
+        } finally {
+            mDataLock.readLock().unlock();
+        }
+
+        return toTile(intensity, radius, kernel, mBlurMode, mColorMap, maxIntensity, mTileEncoder,
+                mExecutor, mParallelism, buffers);
+    }
+
+    /**
+     * Blurs, colors and encodes the quantised intensities of a tile.
+     *
+     * @param intensity    the intensities, in a grid padded by the radius on each side
+     * @param radius       radius of the heatmap
+     * @param kernel       Gaussian kernel of the radius
+     * @param maxIntensity intensity that maps to the last color of the color map
+     * @param buffers      the calling thread's buffers, which intensity is from
+     * @return the tile
+     */
+    static Tile toTile(float[] intensity, int radius, float[] kernel, BlurMode blurMode,
+                       int[] colorMap, double maxIntensity, TileEncoder encoder, Executor executor,
+                       int parallelism, TileBuffers buffers) {
+        int dimPadded = TILE_DIM + radius * 2;
+
+        // Convolve it ("smoothen" it out)
+        float[] convolved = buffers.output(TILE_DIM * TILE_DIM);
+        if (blurMode == BlurMode.TRIPLE_BOX) {
+            boxBlur(intensity, dimPadded, kernel, buffers.intermediate(dimPadded * dimPadded),
+                    convolved, executor, parallelism);
+        } else {
+            convolve(intensity, dimPadded, kernel, buffers.intermediate(dimPadded * dimPadded),
+                    buffers.nonEmptyRows(dimPadded), convolved, executor, parallelism);
+        }
+
+        // Color it
+        int[] colors = buffers.colors(TILE_DIM * TILE_DIM);
+        colorize(convolved, TILE_DIM, colorMap, maxIntensity, colors);
+
+        // Encode it into a tile and return
+        return new Tile(TILE_DIM, TILE_DIM, encoder.encode(colors, TILE_DIM, TILE_DIM));
+    }
+
+    /**
+     * Searches for the points within the bounds of a padded tile, and adds their intensities to
+     * its buckets.
+     *
+     * @param tileBounds  the padded tile's bounds, which are the grid's edges
+     * @param bucketWidth width of a bucket, in world width units
+     * @param points      list to collect the points in, left empty
+     * @param grid        the grid
+     * @param dim         the grid's width and height
+     * @return whether there were any points
+     */
+    private boolean quantize(Bounds tileBounds, double bucketWidth, ArrayList<WeightedLatLng> points,
+                             float[] grid, int dim) {
+        double minX = tileBounds.minX;
+        double maxX = tileBounds.maxX;
+        double minY = tileBounds.minY;
+        double maxY = tileBounds.maxY;
+
+        // Quantize all points within tile bounds
+        // If no points, return blank tile
+        if (quantize(tileBounds, 0, minX, minY, bucketWidth, points, grid, dim) == 0) {
+            return false;
+        }
+
         // Deal with overlap across lat = 180
         // Need to make it wrap around both ways
         // However, maximum tile size is such that you wont ever have to deal with both, so
         // hence, the else
         // Note: Tile must remain square, so cant optimise by editing bounds
-        double xOffset = 0;
-        Collection<WeightedLatLng> wrappedPoints = new ArrayList<WeightedLatLng>();
         if (minX < 0) {
             // Need to consider "negative" points
             // (minX to 0) ->  (512+minX to 512) ie +512
             // add 512 to search bounds and subtract 512 from actual points
-            Bounds overlapBounds = new Bounds(minX + WORLD_WIDTH, WORLD_WIDTH, minY, maxY);
-            xOffset = -WORLD_WIDTH;
-            wrappedPoints = mTree.search(overlapBounds);
+            quantize(new Bounds(minX + WORLD_WIDTH, WORLD_WIDTH, minY, maxY), -WORLD_WIDTH, minX, minY,
+                    bucketWidth, points, grid, dim);
         } else if (maxX > WORLD_WIDTH) {
             // Cant both be true as then tile covers whole world
             // Need to consider "overflow" points
             // (512 to maxX) -> (0 to maxX-512) ie -512
             // subtract 512 from search bounds and add 512 to actual points
-            Bounds overlapBounds = new Bounds(0, maxX - WORLD_WIDTH, minY, maxY);
-            xOffset = WORLD_WIDTH;
-            wrappedPoints = mTree.search(overlapBounds);
+            quantize(new Bounds(0, maxX - WORLD_WIDTH, minY, maxY), WORLD_WIDTH, minX, minY,
+                    bucketWidth, points, grid, dim);
         }
 
-        // Main tile bounds to search
-        Bounds tileBounds = new Bounds(minX, maxX, minY, maxY);
-
-        // If outside of *padded* quadtree bounds, return blank tile
-        // This is comparing our bounds to the padded bounds of all points in the quadtree
-        // ie tiles that don't touch the heatmap at all
-        Bounds paddedBounds = new Bounds(mBounds.minX - padding, mBounds.maxX + padding,
-                mBounds.minY - padding, mBounds.maxY + padding);
-        if (!tileBounds.intersects(paddedBounds)) {
-            return TileProvider.NO_TILE;
-        }
-
-        // Search for all points within tile bounds
-        Collection<WeightedLatLng> points = mTree.search(tileBounds);
+        return true;
+    }
 
-        // If no points, return blank tile
-        if (points.isEmpty()) {
-            return TileProvider.NO_TILE;
+    /**
+     * Searches for the points within bounds, from the flat index if the data is columnar or
+     * else the quad tree, and adds their intensities to the buckets of a grid.
+     *
+     * @param bounds  the bounds to search
+     * @param xOffset offset to add to the points' x coordinates, for wraparound points
+     * @param points  list to collect the points in, left empty
+     * @return the number of points added
+     */
+    private int quantize(Bounds bounds, double xOffset, double minX, double minY, double bucketWidth,
+                         ArrayList<WeightedLatLng> points, float[] grid, int dim) {
+        if (mGrid != null) {
+            return mGrid.quantize(bounds, xOffset, minX, minY, bucketWidth, grid, dim);
         }
+        points.clear();
+        mTree.search(bounds, points);
+        quantize(points, xOffset, minX, minY, bucketWidth, grid, dim);
+        int count = points.size();
+        points.clear();
+        return count;
+    }
 
-        // Quantize points
-        double[][] intensity = new double[TILE_DIM + mRadius * 2][TILE_DIM + mRadius * 2];
-        for (WeightedLatLng w : points) {
-            Point p = w.getPoint();
-            int bucketX = (int) ((p.x - minX) / bucketWidth);
-            int bucketY = (int) ((p.y - minY) / bucketWidth);
-            intensity[bucketX][bucketY] += w.getIntensity();
-        }
-        // Quantize wraparound points (taking xOffset into account)
-        for (WeightedLatLng w : wrappedPoints) {
+    /**
+     * Adds the intensities of points to the buckets of a flat, row-major grid.
+     *
+     * @param points      the points to add
+     * @param xOffset     offset to add to the points' x coordinates, for wraparound points
+     * @param minX        x coordinate of the grid's left edge
+     * @param minY        y coordinate of the grid's top edge
+     * @param bucketWidth width of a bucket, in world width units
+     * @param grid        the grid
+     * @param dim         the grid's width and height
+     */
+    private static void quantize(ArrayList<WeightedLatLng> points, double xOffset, double minX,
+                                 double minY, double bucketWidth, float[] grid, int dim) {
+        for (int i = 0; i < points.size(); i++) {
+            WeightedLatLng w = points.get(i);
             Point p = w.getPoint();
             int bucketX = (int) ((p.x + xOffset - minX) / bucketWidth);
             int bucketY = (int) ((p.y - minY) / bucketWidth);
-            intensity[bucketX][bucketY] += w.getIntensity();
+            grid[bucketY * dim + bucketX] += w.getIntensity();
         }
-
-        // Convolve it ("smoothen" it out)
-        double[][] convolved = convolve(intensity, mKernel);
-
-        // Color it into a bitmap
-        Bitmap bitmap = colorize(convolved, mColorMap, mMaxIntensity[zoom]);
-
-        // Convert bitmap to tile and return
-        return convertBitmap(bitmap);
     }
 
     /**
@@ -466,6 +1047,7 @@ public class HeatmapTileProvider implements TileProvider {
     public void setGradient(Gradient gradient) {
         mGradient = gradient;
         mColorMap = gradient.generateColorMap(mOpacity);
+        invalidateTileCache();
     }
 
     /**
@@ -477,9 +1059,75 @@ public class HeatmapTileProvider implements TileProvider {
     public void setRadius(int radius) {
         mRadius = radius;
         // need to recompute kernel
-        mKernel = generateKernel(mRadius, mRadius / 3.0);
+        mKernel = toFloats(generateKernel(mRadius, mRadius / 3.0));
         // need to recalculate max intensity
-        mMaxIntensity = getMaxIntensities(mRadius);
+        mDataLock.writeLock().lock();
+        try {
+            mEstimator = newEstimator(getPoints(), mBounds, mRadius, mEstimationExecutor,
+                    mEstimationParallelism);
+            mMaxIntensity = getMaxIntensities(mEstimator);
+        } finally {
+            mDataLock.writeLock().unlock();
+        }
+        invalidateTileCache();
+    }
+
+    /**
+     * Setter for blur mode.
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param blurMode How to blur the points, see {@link BlurMode}.
+     */
+    public void setBlurMode(BlurMode blurMode) {
+        if (blurMode == null) {
+            throw new IllegalArgumentException("Blur mode must not be null");
+        }
+        mBlurMode = blurMode;
+        invalidateTileCache();
+    }
+
+    /**
+     * Setter for the tile encoder. Tiles already in the tile cache are kept, as they show the
+     * same pixels.
+     *
+     * @param encoder Encoder of the tiles' pixels, e.g. a {@link PngTileEncoder} with a lower
+     *                deflate level to render faster at the cost of larger tiles.
+     */
+    public void setTileEncoder(TileEncoder encoder) {
+        if (encoder == null) {
+            throw new IllegalArgumentException("Tile encoder must not be null");
+        }
+        mTileEncoder = encoder;
+    }
+
+    /**
+     * Convolves each tile on several threads. The Maps SDK already requests tiles on a few threads,
+     * so this mostly shortens the time until the first tiles show, when there are fewer tiles
+     * than threads. Tiles are the same as when convolved on one thread.
+     * Does not require clearing the tile cache.
+     *
+     * @param executor    runs the extra convolution bands, e.g. AsyncTask.THREAD_POOL_EXECUTOR.
+     *                    null disables parallel convolution.
+     * @param parallelism maximum number of threads to convolve each tile on, including the
+     *                    thread that requested it.
+     */
+    public void setParallelConvolution(Executor executor, int parallelism) {
+        mExecutor = executor;
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Buckets points on several threads to estimate maximum intensities, when there are enough of
+     * them to make it worthwhile. Applies from the next change of the data or radius; the
+     * estimates are the same as when bucketed on one thread.
+     *
+     * @param executor    runs the extra bucketing tasks, e.g. AsyncTask.THREAD_POOL_EXECUTOR.
+     *                    null disables parallel estimation.
+     * @param parallelism maximum number of threads to bucket on, including the calling thread.
+     */
+    public void setParallelEstimation(Executor executor, int parallelism) {
+        mEstimationExecutor = executor;
+        mEstimationParallelism = Math.max(1, parallelism);
     }
 
     /**
@@ -494,22 +1142,41 @@ public class HeatmapTileProvider implements TileProvider {
         setGradient(mGradient);
     }
 
+    /**
+     * Buckets points to estimate maximum intensities at each zoom level from DEFAULT_MIN_ZOOM to
+     * DEFAULT_MAX_ZOOM.
+     *
+     * @param data        the points
+     * @param bounds      bounds of the points
+     * @param radius      radius of the heatmap
+     * @param executor    runs extra bucketing bands, or null
+     * @param parallelism maximum number of threads to bucket on
+     * @return the estimator
+     */
+    static MaxIntensityEstimator newEstimator(ProjectedPoints data, Bounds bounds, int radius,
+                                              Executor executor, int parallelism) {
+        int[] screenDims = new int[DEFAULT_MAX_ZOOM - DEFAULT_MIN_ZOOM];
+        for (int i = DEFAULT_MIN_ZOOM; i < DEFAULT_MAX_ZOOM; i++) {
+            // Each zoom level multiplies viewable size by 2
+            screenDims[i - DEFAULT_MIN_ZOOM] = (int) (SCREEN_SIZE * Math.pow(2, i - 3));
+        }
+        return new MaxIntensityEstimator(data, bounds, radius, screenDims, executor, parallelism);
+    }
+
     /**
      * Gets array of maximum intensity values to use with the heatmap for each zoom level
      * This is the value that the highest color on the color map corresponds to
      *
-     * @param radius radius of the heatmap
+     * @param estimator estimator of maximum intensities at DEFAULT_MIN_ZOOM to DEFAULT_MAX_ZOOM
      * @return array of maximum intensities
      */
-    private double[] getMaxIntensities(int radius) {
+    static double[] getMaxIntensities(MaxIntensityEstimator estimator) {
         // Can go from zoom level 3 to zoom level 22
         double[] maxIntensityArray = new double[MAX_ZOOM_LEVEL];
 
         // Calculate max intensity for each zoom level
         for (int i = DEFAULT_MIN_ZOOM; i < DEFAULT_MAX_ZOOM; i++) {
-            // Each zoom level multiplies viewable size by 2
-            maxIntensityArray[i] = getMaxValue(mData, mBounds, radius,
-                    (int) (SCREEN_SIZE * Math.pow(2, i - 3)));
+            maxIntensityArray[i] = estimator.getMaxValue(i - DEFAULT_MIN_ZOOM);
             if (i == DEFAULT_MIN_ZOOM) {
                 for (int j = 0; j < i; j++) maxIntensityArray[j] = maxIntensityArray[i];
             }
@@ -521,19 +1188,6 @@ public class HeatmapTileProvider implements TileProvider {
         return maxIntensityArray;
     }
 
-    /**
-     * helper function - convert a bitmap into a tile
-     *
-     * @param bitmap bitmap to convert into a tile
-     * @return the tile
-     */
-    private static Tile convertBitmap(Bitmap bitmap) {
-        // Convert it into byte array (required for tile creation)
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.PNG, 100, stream);
-        byte[] bitmapdata = stream.toByteArray();
-        return new Tile(TILE_DIM, TILE_DIM, bitmapdata);
-    }
 
     /* Utility functions below */
 
@@ -586,188 +1240,364 @@ public class HeatmapTileProvider implements TileProvider {
     }
 
     /**
-     * Applies a 2D Gaussian convolution to the input grid, returning a 2D grid cropped of padding.
+     * @return a float copy of a kernel
+     */
+    static float[] toFloats(double[] kernel) {
+        float[] floats = new float[kernel.length];
+        for (int i = 0; i < kernel.length; i++) {
+            floats[i] = (float) kernel[i];
+        }
+        return floats;
+    }
+
+    /**
+     * Applies a 2D Gaussian convolution to a flat, row-major grid, writing the result cropped of
+     * padding to another. Each pass adds every non-zero value's contribution to its neighbours
+     * in turn, so that only the non-empty parts of the grid are visited.
      *
-     * @param grid   Raw input grid to convolve: dimension (dim + 2 * radius) x (dim + 2 * radius)
-     *               ie dim * dim with padding of size radius
-     * @param kernel Pre-computed Gaussian kernel of size radius * 2 + 1
-     * @return the smoothened grid
-     */
-    static double[][] convolve(double[][] grid, double[] kernel) {
-        // Calculate radius size
-        int radius = (int) Math.floor((double) kernel.length / 2.0);
-        // Padded dimension
-        int dimOld = grid.length;
-        // Calculate final (non padded) dimension
+     * @param grid         Raw input grid to convolve: dimension dimOld x dimOld
+     *                     ie (dimOld - 2 * radius) squared with padding of size radius
+     * @param dimOld       padded dimension of the grid
+     * @param kernel       Pre-computed Gaussian kernel of size radius * 2 + 1
+     * @param intermediate zeroed grid of dimension dimOld x dimOld, for the horizontal pass
+     * @param nonEmptyRows flags of size dimOld, for which rows have any values after the
+     *                     horizontal pass
+     * @param output       zeroed grid of dimension (dimOld - 2 * radius) squared, for the result
+     */
+    static void convolve(float[] grid, int dimOld, float[] kernel, float[] intermediate,
+                         boolean[] nonEmptyRows, float[] output) {
+        convolve(grid, dimOld, kernel, intermediate, nonEmptyRows, output, null, 1);
+    }
+
+    /**
+     * As {@link #convolve(float[], int, float[], float[], boolean[], float[])}, splitting each pass
+     * into bands of rows that are convolved in parallel. Each value is computed by the same
+     * operations in the same order as by a single thread, so the result is identical to serial
+     * convolution. Like serial float convolution, it differs from the former convolution in
+     * doubles by rounding, to within about 1e-4 of each value.
+     *
+     * @param executor    runs the extra bands; null to convolve on the calling thread only
+     * @param parallelism maximum number of bands, including the calling thread's. Grids with
+     *                    fewer than MIN_ROWS_PER_BAND rows per band are split into fewer bands.
+     */
+    static void convolve(final float[] grid, final int dimOld, final float[] kernel,
+                         final float[] intermediate, final boolean[] nonEmptyRows,
+                         final float[] output, Executor executor, int parallelism) {
+        int radius = kernel.length / 2;
         int dim = dimOld - 2 * radius;
+        int bands = Bands.count(executor, parallelism, dim, MIN_ROWS_PER_BAND);
+
+        // Each pass only writes the rows of its band, and the vertical pass reads rows of the
+        // horizontal pass from neighbouring bands, so the passes run one after the other.
+        Bands.run(executor, bands, 0, dimOld, new Bands.Task() {
+            @Override
+            public void run(int from, int to) {
+                convolveHorizontally(grid, dimOld, kernel, intermediate, nonEmptyRows, from, to);
+            }
+        });
+        Bands.run(executor, bands, radius, radius + dim, new Bands.Task() {
+            @Override
+            public void run(int from, int to) {
+                convolveVertically(intermediate, dimOld, kernel, nonEmptyRows, output, from, to);
+            }
+        });
+    }
 
+    /**
+     * Convolves the rows [fromY, toY) of a grid horizontally, including rows in the vertical
+     * padding, but only adding to points within the non-padded columns.
+     */
+    private static void convolveHorizontally(float[] grid, int dimOld, float[] kernel,
+                                             float[] intermediate, boolean[] nonEmptyRows,
+                                             int fromY, int toY) {
+        int radius = kernel.length / 2;
         // Upper and lower limits of non padded (inclusive)
         int lowerLimit = radius;
-        int upperLimit = radius + dim - 1;
-
-        // Convolve horizontally
-        double[][] intermediate = new double[dimOld][dimOld];
-
-        // Need to convolve every point (including those outside of non-padded area)
-        // but only need to add to points within non-padded area
-        int x, y, x2, xUpperLimit, initial;
-        double val;
-        for (x = 0; x < dimOld; x++) {
-            for (y = 0; y < dimOld; y++) {
-                // for each point (x, y)
-                val = grid[x][y];
+        int upperLimit = dimOld - radius - 1;
+
+        int x, y, x2, xUpperLimit, initial, row;
+        float val;
+        for (y = fromY; y < toY; y++) {
+            row = y * dimOld;
+            boolean nonEmpty = false;
+            for (x = 0; x < dimOld; x++) {
+                val = grid[row + x];
                 // only bother if something there
                 if (val != 0) {
-                    // need to "apply" convolution from that point to every point in
-                    // (max(lowerLimit, x - radius), y) to (min(upperLimit, x + radius), y)
+                    nonEmpty = true;
                     xUpperLimit = ((upperLimit < x + radius) ? upperLimit : x + radius) + 1;
-                    // Replace Math.max
                     initial = (lowerLimit > x - radius) ? lowerLimit : x - radius;
                     for (x2 = initial; x2 < xUpperLimit; x2++) {
-                        // multiplier for x2 = x - radius is kernel[0]
-                        // x2 = x + radius is kernel[radius * 2]
-                        // so multiplier for x2 in general is kernel[x2 - (x - radius)]
-                        intermediate[x2][y] += val * kernel[x2 - (x - radius)];
+                        // multiplier for x2 in general is kernel[x2 - (x - radius)]
+                        intermediate[row + x2] += val * kernel[x2 - (x - radius)];
                     }
                 }
             }
+            nonEmptyRows[y] = nonEmpty;
         }
+    }
 
-        // Convolve vertically
-        double[][] outputGrid = new double[dim][dim];
-
-        // Similarly, need to convolve every point, but only add to points within non-padded area
-        // However, we are adding to a smaller grid here (previously, was to a grid of same size)
-        int y2, yUpperLimit;
-
-        // Don't care about convolving parts in horizontal padding - wont impact inner
-        for (x = lowerLimit; x < upperLimit + 1; x++) {
-            for (y = 0; y < dimOld; y++) {
-                // for each point (x, y)
-                val = intermediate[x][y];
-                // only bother if something there
-                if (val != 0) {
-                    // need to "apply" convolution from that point to every point in
-                    // (x, max(lowerLimit, y - radius) to (x, min(upperLimit, y + radius))
-                    // Don't care about
-                    yUpperLimit = ((upperLimit < y + radius) ? upperLimit : y + radius) + 1;
-                    // replace math.max
-                    initial = (lowerLimit > y - radius) ? lowerLimit : y - radius;
-                    for (y2 = initial; y2 < yUpperLimit; y2++) {
-                        // Similar logic to above
-                        // subtract, as adding to a smaller grid
-                        outputGrid[x - radius][y2 - radius] += val * kernel[y2 - (y - radius)];
+    /**
+     * Convolves vertically into the non-padded rows [fromY2, toY2) of the padded grid, gathering
+     * into each from the rows within the radius, in order. Only the non-padded columns of the
+     * intermediate grid have values.
+     */
+    private static void convolveVertically(float[] intermediate, int dimOld, float[] kernel,
+                                           boolean[] nonEmptyRows, float[] output,
+                                           int fromY2, int toY2) {
+        int radius = kernel.length / 2;
+        int dim = dimOld - 2 * radius;
+        int lowerLimit = radius;
+        int upperLimit = dimOld - radius - 1;
+
+        int x, y, y2, yUpperLimit, row, outRow;
+        float val, k;
+        for (y2 = fromY2; y2 < toY2; y2++) {
+            outRow = (y2 - radius) * dim - radius;
+            yUpperLimit = y2 + radius + 1;
+            for (y = y2 - radius; y < yUpperLimit; y++) {
+                if (!nonEmptyRows[y]) {
+                    continue;
+                }
+                k = kernel[y2 - (y - radius)];
+                row = y * dimOld;
+                for (x = lowerLimit; x <= upperLimit; x++) {
+                    val = intermediate[row + x];
+                    if (val != 0) {
+                        output[outRow + x] += val * k;
                     }
                 }
             }
         }
+    }
 
-        return outputGrid;
+    /**
+     * @return the sum of a kernel's values
+     */
+    static float sum(float[] kernel) {
+        float sum = 0;
+        for (float k : kernel) {
+            sum += k;
+        }
+        return sum;
     }
 
     /**
-     * Converts a grid of intensity values to a colored Bitmap, using a given color map
+     * @return the variance of a kernel's weights over their offsets from its centre
+     */
+    static double variance(float[] kernel) {
+        int radius = kernel.length / 2;
+        double sum = 0;
+        double weighted = 0;
+        for (int i = 0; i < kernel.length; i++) {
+            sum += kernel[i];
+            weighted += kernel[i] * (double) (i - radius) * (i - radius);
+        }
+        return weighted / sum;
+    }
+
+    /**
+     * Computes the radii of three box blurs which, applied in turn, approximate a Gaussian blur.
+     * A box of odd width w has variance (w * w - 1) / 12, and variances add up, so the boxes mix
+     * the widest odd width w whose three passes don't exceed the given variance with w + 2, in
+     * the proportion that comes nearest to it.
      *
-     * @param grid     the input grid (assumed to be square)
-     * @param colorMap color map (created by generateColorMap)
-     * @param max      Maximum intensity value: maps to 100% on gradient
-     * @return the colorized grid in Bitmap form, with same dimensions as grid
+     * @param variance variance to match, e.g. of the Gaussian kernel, see {@link #variance}
+     * @return the three radii, smallest first
      */
-    static Bitmap colorize(double[][] grid, int[] colorMap, double max) {
-        // Maximum color value
-        int maxColor = colorMap[colorMap.length - 1];
-        // Multiplier to "scale" intensity values with, to map to appropriate color
-        double colorMapScaling = (colorMap.length - 1) / max;
-        // Dimension of the input grid (and dimension of output bitmap)
-        int dim = grid.length;
-
-        int i, j, index, col;
-        double val;
-        // Array of colors
-        int colors[] = new int[dim * dim];
-        for (i = 0; i < dim; i++) {
-            for (j = 0; j < dim; j++) {
-                // [x][y]
-                // need to enter each row of x coordinates sequentially (x first)
-                // -> [j][i]
-                val = grid[j][i];
-                index = i * dim + j;
-                col = (int) (val * colorMapScaling);
+    static int[] boxRadii(double variance) {
+        int passes = 3;
+        int lowerWidth = (int) Math.floor(Math.sqrt(12 * variance / passes + 1));
+        if (lowerWidth % 2 == 0) lowerWidth--;
+        int upperWidth = lowerWidth + 2;
+        double lowerVariance = (lowerWidth * lowerWidth - 1) / 12.0;
+        // Each pass at the upper width rather than the lower one adds this much variance
+        double step = (upperWidth * upperWidth - lowerWidth * lowerWidth) / 12.0;
+        long upperPasses = Math.round((variance - passes * lowerVariance) / step);
+        upperPasses = Math.max(0, Math.min(passes, upperPasses));
+        int[] radii = new int[passes];
+        for (int i = 0; i < passes; i++) {
+            radii[i] = ((i < passes - upperPasses ? lowerWidth : upperWidth) - 1) / 2;
+        }
+        return radii;
+    }
 
-                if (val != 0) {
-                    // Make it more resilient: cant go outside colorMap
-                    if (col < colorMap.length) colors[index] = colorMap[col];
-                    else colors[index] = maxColor;
-                } else {
-                    colors[index] = Color.TRANSPARENT;
+    /**
+     * Approximates {@link #convolve(float[], int, float[], float[], boolean[], float[])} with a
+     * Gaussian kernel, by three box blurs in each direction that match the kernel's variance.
+     * Each box blur keeps running sums along rows or down columns, so costs the same whatever the
+     * radius. Rows are blurred independently of each other, then columns, so each direction can
+     * be split into bands that run in parallel.
+     *
+     * @param grid         Raw input grid to blur: dimension dimOld x dimOld
+     *                     ie (dimOld - 2 * radius) squared with padding of size radius.
+     *                     Used as scratch space: its values are overwritten.
+     * @param dimOld       padded dimension of the grid
+     * @param kernel       Pre-computed Gaussian kernel to approximate. The result is scaled by
+     *                     the sum of its values in each direction to match its intensities.
+     * @param intermediate zeroed grid of dimension dimOld x dimOld, for scratch space
+     * @param output       grid of dimension (dimOld - 2 * radius) squared, for the result
+     * @param executor     runs the extra bands; null to blur on the calling thread only
+     * @param parallelism  maximum number of bands, including the calling thread's
+     */
+    static void boxBlur(final float[] grid, final int dimOld, float[] kernel,
+                        final float[] intermediate, final float[] output, Executor executor,
+                        int parallelism) {
+        final int radius = kernel.length / 2;
+        final int[] boxRadii = boxRadii(variance(kernel));
+        final int dim = dimOld - 2 * radius;
+        float kernelSum = sum(kernel);
+        final double scale = (double) kernelSum * kernelSum;
+        int bands = Bands.count(executor, parallelism, dim, MIN_ROWS_PER_BAND);
+
+        // Rows, including those in the vertical padding: grid -> intermediate -> grid -> intermediate.
+        // Rows without values are left as they are, i.e. 0 in intermediate.
+        Bands.run(executor, bands, 0, dimOld, new Bands.Task() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    int row = y * dimOld;
+                    if (isZero(grid, row, row + dimOld)) {
+                        continue;
+                    }
+                    boxBlurRow(grid, intermediate, row, 0, dimOld, dimOld, boxRadii[0], 1);
+                    boxBlurRow(intermediate, grid, row, 0, dimOld, dimOld, boxRadii[1], 1);
+                    // Only the non-padded columns are needed from here on
+                    boxBlurRow(grid, intermediate, row, radius, radius + dim, dimOld, boxRadii[2], 1);
                 }
             }
+        });
+        // Non-padded columns: intermediate -> grid -> intermediate -> output, cropping the rows
+        Bands.run(executor, bands, radius, radius + dim, new Bands.Task() {
+            @Override
+            public void run(int from, int to) {
+                double[] sums = new double[to - from];
+                boxBlurColumns(intermediate, grid, 0, dimOld, dimOld, from, to, 0, dimOld, boxRadii[0], 1, sums);
+                boxBlurColumns(grid, intermediate, 0, dimOld, dimOld, from, to, 0, dimOld, boxRadii[1], 1, sums);
+                boxBlurColumns(intermediate, output, -radius - radius * dim, dim, dimOld, from, to,
+                        radius, radius + dim, boxRadii[2], scale, sums);
+            }
+        });
+    }
+
+    private static boolean isZero(float[] grid, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (grid[i] != 0) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        // Now turn these colors into a bitmap
-        Bitmap tile = Bitmap.createBitmap(dim, dim, Bitmap.Config.ARGB_8888);
-        // (int[] pixels, int offset, int stride, int x, int y, int width, int height)
-        tile.setPixels(colors, 0, dim, 0, 0, dim, dim);
-        return tile;
+    /**
+     * Box blurs the positions [from, to) of a row, treating values beyond its ends as 0.
+     *
+     * @param src       the grid to read
+     * @param dst       the grid to write
+     * @param row       index of the row's first value in both grids
+     * @param from      first position of the row to write
+     * @param to        position after the last one to write
+     * @param length    number of values in the row
+     * @param boxRadius radius of the box
+     * @param scale     factor to scale the averages by
+     */
+    private static void boxBlurRow(float[] src, float[] dst, int row, int from, int to, int length,
+                                   int boxRadius, double scale) {
+        double multiplier = scale / (2 * boxRadius + 1);
+        // Sum of the box around position from - 1, in double to avoid drift
+        double sum = 0;
+        int last = Math.min(length - 1, from - 1 + boxRadius);
+        for (int i = Math.max(0, from - 1 - boxRadius); i <= last; i++) {
+            sum += src[row + i];
+        }
+        for (int i = from; i < to; i++) {
+            int entering = i + boxRadius;
+            int leaving = i - boxRadius - 1;
+            if (entering < length) sum += src[row + entering];
+            if (leaving >= 0) sum -= src[row + leaving];
+            dst[row + i] = (float) (sum * multiplier);
+        }
     }
 
     /**
-     * Calculate a reasonable maximum intensity value to map to maximum color intensity
+     * Box blurs the columns [fromX, toX) of a grid down the rows [fromY, toY), treating values
+     * beyond its top and bottom as 0. Works a row at a time, keeping a running sum per column.
      *
-     * @param points    Collection of LatLngs to put into buckets
-     * @param bounds    Bucket boundaries
-     * @param radius    radius of convolution
-     * @param screenDim larger dimension of screen in pixels (for scale)
-     * @return Approximate max value
-     */
-    static double getMaxValue(Collection<WeightedLatLng> points, Bounds bounds, int radius,
-                              int screenDim) {
-        // Approximate scale as if entire heatmap is on the screen
-        // ie scale dimensions to larger of width or height (screenDim)
-        double minX = bounds.minX;
-        double maxX = bounds.maxX;
-        double minY = bounds.minY;
-        double maxY = bounds.maxY;
-        double boundsDim = (maxX - minX > maxY - minY) ? maxX - minX : maxY - minY;
-
-        // Number of buckets: have diameter sized buckets
-        int nBuckets = (int) (screenDim / (2 * radius) + 0.5);
-        // Scaling factor to convert width in terms of point distance, to which bucket
-        double scale = nBuckets / boundsDim;
-
-        // Make buckets
-        // Use a sparse array - use LongSparseArray just in case
-        LongSparseArray<LongSparseArray<Double>> buckets = new LongSparseArray<LongSparseArray<Double>>();
-        //double[][] buckets = new double[nBuckets][nBuckets];
-
-        // Assign into buckets + find max value as we go along
-        double x, y;
-        double max = 0;
-        for (WeightedLatLng l : points) {
-            x = l.getPoint().x;
-            y = l.getPoint().y;
-
-            int xBucket = (int) ((x - minX) * scale);
-            int yBucket = (int) ((y - minY) * scale);
-
-            // Check if x bucket exists, if not make it
-            LongSparseArray<Double> column = buckets.get(xBucket);
-            if (column == null) {
-                column = new LongSparseArray<Double>();
-                buckets.put(xBucket, column);
+     * @param src       the grid to read, of dimension dim x dim
+     * @param dst       the grid to write
+     * @param dstOffset index in dst that (0, 0) would be written to
+     * @param dstWidth  width of dst
+     * @param dim       dimension of src
+     * @param boxRadius radius of the box
+     * @param scale     factor to scale the averages by
+     * @param sums      scratch space for toX - fromX running sums
+     */
+    private static void boxBlurColumns(float[] src, float[] dst, int dstOffset, int dstWidth,
+                                       int dim, int fromX, int toX, int fromY, int toY,
+                                       int boxRadius, double scale, double[] sums) {
+        double multiplier = scale / (2 * boxRadius + 1);
+        int columns = toX - fromX;
+        // Sums of the boxes around row fromY - 1, in double to avoid drift
+        Arrays.fill(sums, 0, columns, 0);
+        int last = Math.min(dim - 1, fromY - 1 + boxRadius);
+        for (int y = Math.max(0, fromY - 1 - boxRadius); y <= last; y++) {
+            int row = y * dim + fromX;
+            for (int c = 0; c < columns; c++) {
+                sums[c] += src[row + c];
+            }
+        }
+        for (int y = fromY; y < toY; y++) {
+            int entering = y + boxRadius;
+            int leaving = y - boxRadius - 1;
+            if (entering < dim) {
+                int row = entering * dim + fromX;
+                for (int c = 0; c < columns; c++) {
+                    sums[c] += src[row + c];
+                }
             }
-            // Check if there is already a y value there
-            Double value = column.get(yBucket);
-            if (value == null) {
-                value = 0.0;
+            if (leaving >= 0) {
+                int row = leaving * dim + fromX;
+                for (int c = 0; c < columns; c++) {
+                    sums[c] -= src[row + c];
+                }
+            }
+            int dstRow = dstOffset + y * dstWidth + fromX;
+            for (int c = 0; c < columns; c++) {
+                dst[dstRow + c] = (float) (sums[c] * multiplier);
             }
-            value += l.getIntensity();
-            // Yes, do need to update it, despite it being a Double.
-            column.put(yBucket, value);
-
-            if (value > max) max = value;
         }
+    }
 
-        return max;
+    /**
+     * Converts a flat, row-major grid of intensity values to colors, using a given color map
+     *
+     * @param grid     the input grid (assumed to be square)
+     * @param dim      dimension of the grid
+     * @param colorMap color map (created by generateColorMap)
+     * @param max      Maximum intensity value: maps to 100% on gradient
+     * @param colors   array of at least dim * dim colors to write the result to, in the same order
+     */
+    static void colorize(float[] grid, int dim, int[] colorMap, double max, int[] colors) {
+        // Maximum color value
+        int maxColor = colorMap[colorMap.length - 1];
+        // Multiplier to "scale" intensity values with, to map to appropriate color
+        double colorMapScaling = (colorMap.length - 1) / max;
+
+        int i, col;
+        float val;
+        int size = dim * dim;
+        for (i = 0; i < size; i++) {
+            val = grid[i];
+            // Removing points can leave rounding errors slightly below 0
+            if (val > 0) {
+                col = (int) (val * colorMapScaling);
+                // Make it more resilient: cant go outside colorMap
+                if (col < colorMap.length) colors[i] = colorMap[col];
+                else colors[i] = maxColor;
+            } else {
+                colors[i] = Color.TRANSPARENT;
+            }
+        }
     }
+
 }
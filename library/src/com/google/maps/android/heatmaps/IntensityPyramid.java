@@ -0,0 +1,391 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.maps.android.geometry.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Intensities of points summed into the pixels of tiles, for a range of low zoom levels. At
+ * zoom z, the world is TILE_DIM * 2^z cells wide, one per pixel, so a tile reads the sums of the
+ * cells under it rather than quantising every point under it. Its cost is then bounded by its
+ * pixels rather than its points.
+ * <p/>
+ * Only non-empty cells are stored, row by row: the ids of non-empty rows, and for each of them
+ * the columns and sums of its cells, sorted by column. Each level is summed from the one above,
+ * and levels that don't combine enough points into each cell to be worth their memory are
+ * dropped.
+ * <p/>
+ * The levels are immutable once built. Points added or removed later are kept aside and
+ * quantised one by one, until there are enough of them that the pyramid should be built again,
+ * see {@link #getPendingCount()}. Not thread safe.
+ */
+class IntensityPyramid {
+    /**
+     * Minimum number of points per non-empty cell for a level to be kept.
+     */
+    private static final int MIN_POINTS_PER_CELL = 2;
+
+    private final Level[] mLevels;
+
+    /**
+     * Points added and removed since the levels were built.
+     */
+    private final ArrayList<WeightedLatLng> mAdded = new ArrayList<WeightedLatLng>();
+    private final ArrayList<WeightedLatLng> mRemoved = new ArrayList<WeightedLatLng>();
+
+    /**
+     * @param points  the points to sum
+     * @param tileDim width of a tile, in pixels
+     * @param maxZoom highest zoom level to sum the points for
+     */
+    IntensityPyramid(ProjectedPoints points, int tileDim, int maxZoom) {
+        mLevels = new Level[maxZoom + 1];
+        int minCells = points.mSize / MIN_POINTS_PER_CELL;
+        Level level = Level.of(points, tileDim << maxZoom);
+        for (int zoom = maxZoom; zoom >= 0; zoom--) {
+            if (zoom < maxZoom) {
+                level = level.halve();
+            }
+            if (level.mXs.length <= minCells) {
+                mLevels[zoom] = level;
+            }
+        }
+    }
+
+    /**
+     * @return whether intensities are summed for the given zoom level.
+     */
+    boolean hasLevel(int zoom) {
+        return zoom < mLevels.length && mLevels[zoom] != null;
+    }
+
+    /**
+     * Adds a point after the levels were built.
+     */
+    void add(WeightedLatLng point) {
+        mAdded.add(point);
+    }
+
+    /**
+     * Removes a point that was summed into the levels or added since.
+     */
+    void remove(WeightedLatLng point) {
+        if (!mAdded.remove(point)) {
+            mRemoved.add(point);
+        }
+    }
+
+    /**
+     * @return the number of points added and removed since the levels were built, which every
+     * tile quantises.
+     */
+    int getPendingCount() {
+        return mAdded.size() + mRemoved.size();
+    }
+
+    /**
+     * @return the number of cells stored at all zoom levels.
+     */
+    int getCellCount() {
+        int count = 0;
+        for (Level level : mLevels) {
+            if (level != null) {
+                count += level.mXs.length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the sums of the cells in a window of a zoom level to a flat, row-major grid, the way
+     * the points themselves would be quantised. Columns left of the world wrap around to its
+     * right, and, if none do, columns right of the world wrap around to its left.
+     *
+     * @param zoom a zoom level for which {@link #hasLevel(int)} is true
+     * @param minX column of the world at the grid's left edge; may be negative
+     * @param minY row of the world at the grid's top edge; may be negative
+     * @param grid the grid
+     * @param dim  the grid's width and height
+     * @return the number of cells and pending points added, which is 0 if the window has no
+     * points.
+     */
+    int quantize(int zoom, int minX, int minY, float[] grid, int dim) {
+        Level level = mLevels[zoom];
+        int size = level.mSize;
+        int maxX = minX + dim;
+        int added = addCells(level, minX, minY, Math.max(minX, 0), Math.min(maxX, size), grid, dim);
+        if (minX < 0) {
+            added += addCells(level, minX + size, minY, minX + size, size, grid, dim);
+        } else if (maxX > size) {
+            added += addCells(level, minX - size, minY, 0, maxX - size, grid, dim);
+        }
+        added += addPoints(mAdded, 1, size, minX, minY, grid, dim);
+        addPoints(mRemoved, -1, size, minX, minY, grid, dim);
+        return added;
+    }
+
+    /**
+     * Adds the intensities of points to the grid, wrapping around the world as cells do.
+     *
+     * @param sign 1 to add the intensities, -1 to subtract them
+     * @return the number of points added
+     */
+    private static int addPoints(ArrayList<WeightedLatLng> points, int sign, int size, int minX,
+                                 int minY, float[] grid, int dim) {
+        int added = 0;
+        for (int i = 0; i < points.size(); i++) {
+            WeightedLatLng point = points.get(i);
+            Point p = point.getPoint();
+            int row = Level.row(p.y, size);
+            int y = row - minY;
+            if (row < 0 || y < 0 || y >= dim) {
+                continue;
+            }
+            // The same placements as cells: in the window, and wrapped around either way
+            int x = Level.column(p.x, size) - minX;
+            int wrappedX = minX < 0 ? x - size : minX + dim > size ? x + size : -1;
+            float intensity = (float) (sign * point.getIntensity());
+            boolean inWindow = false;
+            if (x >= 0 && x < dim) {
+                grid[y * dim + x] += intensity;
+                inWindow = true;
+            }
+            if (wrappedX >= 0 && wrappedX < dim) {
+                grid[y * dim + wrappedX] += intensity;
+                inWindow = true;
+            }
+            if (inWindow) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds the cells in columns [fromX, toX) of a level to the grid, cell x at column x - minX.
+     */
+    private static int addCells(Level level, int minX, int minY, int fromX, int toX,
+                                float[] grid, int dim) {
+        if (fromX >= toX) {
+            return 0;
+        }
+        int[] rows = level.mRows;
+        int[] rowStarts = level.mRowStarts;
+        int[] xs = level.mXs;
+        float[] sums = level.mSums;
+        int maxY = minY + dim;
+        int added = 0;
+        int row = Arrays.binarySearch(rows, Math.max(minY, 0));
+        for (row = row < 0 ? -row - 1 : row; row < rows.length && rows[row] < maxY; row++) {
+            int offset = (rows[row] - minY) * dim - minX;
+            int end = rowStarts[row + 1];
+            int cell = Arrays.binarySearch(xs, rowStarts[row], end, fromX);
+            for (cell = cell < 0 ? -cell - 1 : cell; cell < end && xs[cell] < toX; cell++) {
+                grid[offset + xs[cell]] += sums[cell];
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * The non-empty cells of one zoom level.
+     */
+    private static class Level {
+        /**
+         * Width and height of the level, in cells.
+         */
+        private final int mSize;
+
+        /**
+         * Ids of the non-empty rows, ascending.
+         */
+        private final int[] mRows;
+
+        /**
+         * Index in mXs and mSums of the first cell of each row in mRows, followed by the number
+         * of cells.
+         */
+        private final int[] mRowStarts;
+
+        /**
+         * Columns of the cells, ascending within each row.
+         */
+        private final int[] mXs;
+
+        /**
+         * Summed intensities of the cells.
+         */
+        private final float[] mSums;
+
+        private Level(int size, int[] rows, int[] rowStarts, int[] xs, float[] sums) {
+            mSize = size;
+            mRows = rows;
+            mRowStarts = rowStarts;
+            mXs = xs;
+            mSums = sums;
+        }
+
+        /**
+         * Sums points into the cells of a level with the given size.
+         */
+        private static Level of(ProjectedPoints points, int size) {
+            // Counting sort the points by row: count them into ends[y + 1], then turn the counts
+            // into the start of each row, which placing the points advances to its end. Points
+            // outside every row are left out.
+            double[] xs = points.mX;
+            double[] ys = points.mY;
+            int[] ends = new int[size + 1];
+            for (int i = 0; i < points.mSize; i++) {
+                int y = row(ys[i], size);
+                if (y >= 0) {
+                    ends[y + 1]++;
+                }
+            }
+            for (int y = 0; y < size; y++) {
+                ends[y + 1] += ends[y];
+            }
+            // Each point is packed as (x, intensity), so that a primitive sort orders a row by x.
+            long[] packed = new long[ends[size]];
+            for (int i = 0; i < points.mSize; i++) {
+                int y = row(ys[i], size);
+                if (y >= 0) {
+                    packed[ends[y]++] = (long) column(xs[i], size) << 32
+                            | (Float.floatToRawIntBits((float) points.getIntensity(i)) & 0xffffffffL);
+                }
+            }
+
+            Builder builder = new Builder(size, packed.length);
+            for (int y = 0, from = 0; y < size; from = ends[y++]) {
+                int to = ends[y];
+                Arrays.sort(packed, from, to);
+                for (int i = from; i < to; ) {
+                    int x = (int) (packed[i] >>> 32);
+                    double sum = 0;
+                    for (; i < to && (int) (packed[i] >>> 32) == x; i++) {
+                        sum += Float.intBitsToFloat((int) packed[i]);
+                    }
+                    builder.add(y, x, sum);
+                }
+            }
+            return builder.build();
+        }
+
+        /**
+         * @return the column of a level of the given size that a point's x coordinate is in.
+         * Longitude 180 is the same as -180.
+         */
+        private static int column(double x, int size) {
+            return (int) (x * size) % size;
+        }
+
+        /**
+         * @return the row of a level of the given size that a point's y coordinate is in, or -1
+         * if it is beyond the edge of the world, as points near the poles are. Tiles never show
+         * those points.
+         */
+        private static int row(double y, int size) {
+            if (!(y >= 0 && y <= 1)) {
+                return -1;
+            }
+            return Math.min((int) (y * size), size - 1);
+        }
+
+        /**
+         * @return the level half as wide, each of whose cells sums 2x2 cells of this one.
+         */
+        private Level halve() {
+            Builder builder = new Builder(mSize / 2, mXs.length);
+            for (int row = 0; row < mRows.length; row++) {
+                int y = mRows[row] >> 1;
+                int from = mRowStarts[row];
+                int to = mRowStarts[row + 1];
+                // Merge with the odd row of the same pair, if it is next.
+                int otherFrom = to;
+                int otherTo = to;
+                if (row + 1 < mRows.length && mRows[row + 1] >> 1 == y) {
+                    row++;
+                    otherTo = mRowStarts[row + 1];
+                }
+                while (from < to || otherFrom < otherTo) {
+                    int x;
+                    if (otherFrom == otherTo || (from < to && mXs[from] <= mXs[otherFrom])) {
+                        x = mXs[from] >> 1;
+                    } else {
+                        x = mXs[otherFrom] >> 1;
+                    }
+                    double sum = 0;
+                    for (; from < to && mXs[from] >> 1 == x; from++) {
+                        sum += mSums[from];
+                    }
+                    for (; otherFrom < otherTo && mXs[otherFrom] >> 1 == x; otherFrom++) {
+                        sum += mSums[otherFrom];
+                    }
+                    builder.add(y, x, sum);
+                }
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Appends cells to a level, in order of row then column.
+     */
+    private static class Builder {
+        private final int mSize;
+        private int[] mRows = new int[16];
+        private int[] mRowStarts = new int[17];
+        private int mRowCount;
+        private final int[] mXs;
+        private final float[] mSums;
+        private int mCellCount;
+
+        /**
+         * @param maxCells an upper bound of the number of cells
+         */
+        private Builder(int size, int maxCells) {
+            mSize = size;
+            mXs = new int[maxCells];
+            mSums = new float[maxCells];
+        }
+
+        private void add(int y, int x, double sum) {
+            if (mRowCount == 0 || mRows[mRowCount - 1] != y) {
+                if (mRowCount == mRows.length) {
+                    mRows = Arrays.copyOf(mRows, mRowCount * 2);
+                    mRowStarts = Arrays.copyOf(mRowStarts, mRowCount * 2 + 1);
+                }
+                mRows[mRowCount] = y;
+                mRowStarts[mRowCount] = mCellCount;
+                mRowCount++;
+            }
+            mXs[mCellCount] = x;
+            mSums[mCellCount] = (float) sum;
+            mCellCount++;
+        }
+
+        private Level build() {
+            int[] rowStarts = Arrays.copyOf(mRowStarts, mRowCount + 1);
+            rowStarts[mRowCount] = mCellCount;
+            return new Level(mSize, Arrays.copyOf(mRows, mRowCount), rowStarts,
+                    Arrays.copyOf(mXs, mCellCount), Arrays.copyOf(mSums, mCellCount));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from non-negative long keys to double sums, with linear probing.
+ * Nothing is boxed and no objects are allocated per entry.
+ * This class is not thread safe.
+ */
+class LongDoubleHashMap {
+    /**
+     * Key stored in empty slots.
+     */
+    private static final long NO_KEY = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private double[] mValues;
+    private int mSize;
+
+    /**
+     * @param expectedSize number of entries the map should hold before it needs to grow.
+     */
+    LongDoubleHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // Keep the load factor at or below 0.5.
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Adds to the value for a key, which is 0 if there is none. Keys whose values become 0 are
+     * removed, so that adding and then subtracting values leaves the map as small as it was.
+     *
+     * @param key   the key; must not be negative.
+     * @param delta the amount to add
+     * @return the new value
+     */
+    double add(long key, double delta) {
+        if (mSize * 2 >= mKeys.length) {
+            rehash(mKeys.length << 1);
+        }
+        int mask = mKeys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (mKeys[i] == key) {
+                double value = mValues[i] += delta;
+                if (value == 0) {
+                    removeAt(i);
+                }
+                return value;
+            }
+            if (mKeys[i] == NO_KEY) {
+                if (delta == 0) {
+                    return 0;
+                }
+                mKeys[i] = key;
+                mSize++;
+                return mValues[i] = delta;
+            }
+        }
+    }
+
+    /**
+     * Adds the values of another map to this one, key by key, each multiplied by a factor.
+     */
+    void addAll(LongDoubleHashMap other, double factor) {
+        for (int i = 0; i < other.mKeys.length; i++) {
+            if (other.mKeys[i] != NO_KEY) {
+                add(other.mKeys[i], other.mValues[i] * factor);
+            }
+        }
+    }
+
+    /**
+     * @return the largest value, or 0 if there are none larger.
+     */
+    double max() {
+        double max = 0;
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] != NO_KEY && mValues[i] > max) {
+                max = mValues[i];
+            }
+        }
+        return max;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Empties a slot, moving back the entries after it that would no longer be found past it.
+     */
+    private void removeAt(int slot) {
+        int mask = mKeys.length - 1;
+        for (int i = (slot + 1) & mask; mKeys[i] != NO_KEY; i = (i + 1) & mask) {
+            int home = hash(mKeys[i]) & mask;
+            // An entry can move back unless its home is cyclically within (slot, i]
+            boolean stays = slot <= i ? slot < home && home <= i : slot < home || home <= i;
+            if (!stays) {
+                mKeys[slot] = mKeys[i];
+                mValues[slot] = mValues[i];
+                slot = i;
+            }
+        }
+        mKeys[slot] = NO_KEY;
+        mValues[slot] = 0;
+        mSize--;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new double[capacity];
+        Arrays.fill(mKeys, NO_KEY);
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = mKeys;
+        double[] values = mValues;
+        allocate(capacity);
+        mSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != NO_KEY) {
+                add(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Spreads the key's bits (the MurmurHash3 64-bit finalizer), as grid coordinates are
+     * highly regular.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
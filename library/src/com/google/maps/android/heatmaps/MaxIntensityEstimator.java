@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.maps.android.Bands;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Estimates the maximum intensity of a heatmap as displayed on screens of several sizes, by
+ * summing the points into diameter sized buckets. The buckets are kept, so that points can be
+ * added and removed without summing all of them again.
+ * <p/>
+ * The buckets of all screen sizes are filled in a single pass over the points, into primitive
+ * hash maps. Large point sets can be bucketed on several threads, each filling its own maps
+ * from a contiguous range of points, which are then merged.
+ */
+class MaxIntensityEstimator {
+    /**
+     * Minimum number of points for each parallel bucketing band.
+     */
+    private static final int MIN_POINTS_PER_BAND = 50000;
+
+    /**
+     * Bound of the initial capacity of each level's buckets, as they grow as needed.
+     */
+    private static final int MAX_INITIAL_BUCKETS = 1 << 14;
+
+    private final Bounds mBounds;
+
+    /**
+     * Scaling factor of each level to convert width in terms of point distance, to which bucket.
+     */
+    private final double[] mScales;
+
+    /**
+     * Summed intensity of each level's buckets, keyed by {@link #key(int, int)}.
+     */
+    private final LongDoubleHashMap[] mBuckets;
+
+    /**
+     * Maximum bucket of each level, unless stale.
+     */
+    private final double[] mMax;
+
+    /**
+     * Whether a level's mMax must be found again, as it was never found or its bucket decreased.
+     */
+    private final boolean[] mMaxStale;
+
+    /**
+     * @param points      the points
+     * @param bounds      bounds of the points; later points must be within them too
+     * @param radius      radius of the heatmap
+     * @param screenDims  dimension of each screen to estimate for, in pixels
+     * @param executor    runs extra bucketing bands, or null to bucket on the calling thread
+     * @param parallelism maximum number of threads to bucket on, including the calling thread
+     */
+    MaxIntensityEstimator(ProjectedPoints points, Bounds bounds, int radius, int[] screenDims,
+                          Executor executor, int parallelism) {
+        mBounds = bounds;
+        int levels = screenDims.length;
+        mScales = new double[levels];
+        mMax = new double[levels];
+        mMaxStale = new boolean[levels];
+        // Approximate scale as if entire heatmap is on the screen
+        // ie scale dimensions to larger of width or height (screenDim)
+        double boundsDim = Math.max(bounds.maxX - bounds.minX, bounds.maxY - bounds.minY);
+        for (int i = 0; i < levels; i++) {
+            // Number of buckets: have diameter sized buckets
+            int nBuckets = (int) (screenDims[i] / (2 * radius) + 0.5);
+            mScales[i] = nBuckets / boundsDim;
+            mMaxStale[i] = true;
+        }
+
+        int bands = Bands.count(executor, parallelism, points.mSize, MIN_POINTS_PER_BAND);
+        if (bands <= 1) {
+            mBuckets = bucket(points, 0, points.mSize);
+        } else {
+            mBuckets = bucketInParallel(points, executor, bands);
+        }
+    }
+
+    private LongDoubleHashMap[] newBuckets(int points) {
+        LongDoubleHashMap[] buckets = new LongDoubleHashMap[mScales.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongDoubleHashMap(Math.min(points, MAX_INITIAL_BUCKETS));
+        }
+        return buckets;
+    }
+
+    /**
+     * Buckets the points in [from, to) into new maps.
+     */
+    private LongDoubleHashMap[] bucket(ProjectedPoints points, int from, int to) {
+        LongDoubleHashMap[] buckets = newBuckets(to - from);
+        for (int i = from; i < to; i++) {
+            add(buckets, points.mX[i], points.mY[i], points.getIntensity(i));
+        }
+        return buckets;
+    }
+
+    /**
+     * Buckets contiguous ranges of points into separate maps, and merges them.
+     */
+    private LongDoubleHashMap[] bucketInParallel(final ProjectedPoints points, Executor executor,
+                                                 final int bands) {
+        final LongDoubleHashMap[][] parts = new LongDoubleHashMap[bands][];
+        Bands.run(executor, bands, 0, bands, new Bands.Task() {
+            @Override
+            public void run(int fromBand, int toBand) {
+                for (int band = fromBand; band < toBand; band++) {
+                    parts[band] = bucket(points, (int) ((long) points.mSize * band / bands),
+                            (int) ((long) points.mSize * (band + 1) / bands));
+                }
+            }
+        });
+
+        LongDoubleHashMap[] merged = parts[0];
+        for (int band = 1; band < bands; band++) {
+            for (int i = 0; i < merged.length; i++) {
+                merged[i].addAll(parts[band][i], 1);
+            }
+        }
+        return merged;
+    }
+
+    void add(WeightedLatLng point) {
+        double intensity = point.getIntensity();
+        Point p = point.getPoint();
+        double x = p.x - mBounds.minX;
+        double y = p.y - mBounds.minY;
+        for (int i = 0; i < mScales.length; i++) {
+            double value = mBuckets[i].add(key((int) (x * mScales[i]), (int) (y * mScales[i])), intensity);
+            if (value > mMax[i]) {
+                mMax[i] = value;
+            }
+        }
+    }
+
+    void remove(WeightedLatLng point) {
+        double intensity = point.getIntensity();
+        Point p = point.getPoint();
+        double x = p.x - mBounds.minX;
+        double y = p.y - mBounds.minY;
+        for (int i = 0; i < mScales.length; i++) {
+            double value = mBuckets[i].add(key((int) (x * mScales[i]), (int) (y * mScales[i])), -intensity);
+            // The bucket may have held the maximum
+            if (value + intensity >= mMax[i]) {
+                mMaxStale[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Adds an intensity to the buckets of all levels, without tracking the maximum.
+     */
+    private void add(LongDoubleHashMap[] buckets, double pointX, double pointY, double intensity) {
+        double x = pointX - mBounds.minX;
+        double y = pointY - mBounds.minY;
+        for (int i = 0; i < mScales.length; i++) {
+            buckets[i].add(key((int) (x * mScales[i]), (int) (y * mScales[i])), intensity);
+        }
+    }
+
+    /**
+     * @return the maximum intensity of a bucket on the screen at the given index.
+     */
+    double getMaxValue(int screen) {
+        if (mMaxStale[screen]) {
+            mMax[screen] = mBuckets[screen].max();
+            mMaxStale[screen] = false;
+        }
+        return mMax[screen];
+    }
+
+    /**
+     * Adds the buckets of another estimator to this one's, or subtracts them. The estimators
+     * must share their bounds, radius and screen dimensions.
+     *
+     * @param sign 1 to add the buckets, -1 to subtract them
+     */
+    void addAll(MaxIntensityEstimator other, int sign) {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i].addAll(other.mBuckets[i], sign);
+            mMaxStale[i] = true;
+        }
+    }
+
+    private static long key(int xBucket, int yBucket) {
+        return (long) xBucket << 32 | yBucket;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes tiles as PNG in Java, with a configurable deflate level. Rows are written unfiltered,
+ * straight from the pixels, so encoding costs little more than deflating. Lower levels trade
+ * larger tiles for speed, down to {@link Deflater#NO_COMPRESSION}, which stores the pixels as
+ * they are.
+ * <p/>
+ * Each thread keeps a Deflater and buffers that are sized for the tiles it has encoded, so the
+ * only allocation per tile is of the returned data. They are shared by all encoders with the
+ * same level, so a thread never holds more than one Deflater per level however many encoders
+ * are created.
+ */
+public class PngTileEncoder implements TileEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+    private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+    private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+
+    /**
+     * Bit depth and color type (RGBA) of the image.
+     */
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    /**
+     * Filter type of every row: none.
+     */
+    private static final int FILTER_NONE = 0;
+
+    /**
+     * Size of a chunk besides its data: length, type and CRC.
+     */
+    private static final int CHUNK_OVERHEAD = 12;
+
+    /**
+     * Each thread's encoding state, indexed by deflate level + 1 so that
+     * {@link Deflater#DEFAULT_COMPRESSION} is 0.
+     */
+    private static final ThreadLocal<State[]> STATES = new ThreadLocal<State[]>() {
+        @Override
+        protected State[] initialValue() {
+            return new State[Deflater.BEST_COMPRESSION + 2];
+        }
+    };
+
+    private final int mLevel;
+
+    /**
+     * Creates an encoder with the default deflate level.
+     */
+    public PngTileEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level deflate level, from {@link Deflater#NO_COMPRESSION} (0) to
+     *              {@link Deflater#BEST_COMPRESSION} (9), or {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public PngTileEncoder(int level) {
+        if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+                && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid deflate level: " + level);
+        }
+        mLevel = level;
+    }
+
+    @Override
+    public byte[] encode(int[] pixels, int width, int height) {
+        State state = getState();
+        int rowLength = 1 + 4 * width;
+        // Stored deflate blocks add 5 bytes per 64 KiB, and zlib 6 bytes in all
+        int rawLength = rowLength * height;
+        state.reset(SIGNATURE.length + 3 * CHUNK_OVERHEAD + 13 + rawLength + rawLength / 16000 + 64,
+                rowLength);
+
+        state.write(SIGNATURE, 0, SIGNATURE.length);
+
+        state.startChunk(IHDR);
+        state.writeInt(width);
+        state.writeInt(height);
+        state.write(BIT_DEPTH);
+        state.write(COLOR_TYPE_RGBA);
+        // Compression, filter and interlace methods: all the defaults
+        state.write(0);
+        state.write(0);
+        state.write(0);
+        state.endChunk();
+
+        state.startChunk(IDAT);
+        Deflater deflater = state.mDeflater;
+        byte[] row = state.mRow;
+        for (int y = 0; y < height; y++) {
+            row[0] = FILTER_NONE;
+            int offset = y * width;
+            for (int x = 0, i = 1; x < width; x++, i += 4) {
+                int color = pixels[offset + x];
+                row[i] = (byte) (color >> 16);
+                row[i + 1] = (byte) (color >> 8);
+                row[i + 2] = (byte) color;
+                row[i + 3] = (byte) (color >>> 24);
+            }
+            deflater.setInput(row, 0, rowLength);
+            while (!deflater.needsInput()) {
+                state.deflate();
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            state.deflate();
+        }
+        state.endChunk();
+
+        state.startChunk(IEND);
+        state.endChunk();
+
+        return Arrays.copyOf(state.mBuffer, state.mSize);
+    }
+
+    /**
+     * @return the calling thread's encoding state for this encoder's level.
+     */
+    private State getState() {
+        State[] states = STATES.get();
+        int index = mLevel + 1;
+        if (states[index] == null) {
+            states[index] = new State(mLevel);
+        }
+        return states[index];
+    }
+
+    /**
+     * Per-thread encoding state.
+     */
+    private static class State {
+        private final Deflater mDeflater;
+        private final CRC32 mCrc = new CRC32();
+        private byte[] mBuffer = new byte[0];
+        private int mSize;
+        private byte[] mRow = new byte[0];
+
+        /**
+         * Where the data of the current chunk starts in mBuffer.
+         */
+        private int mChunkStart;
+
+        private State(int level) {
+            mDeflater = new Deflater(level);
+        }
+
+        private void reset(int expectedSize, int rowLength) {
+            if (mBuffer.length < expectedSize) {
+                mBuffer = new byte[expectedSize];
+            }
+            if (mRow.length < rowLength) {
+                mRow = new byte[rowLength];
+            }
+            mSize = 0;
+            mDeflater.reset();
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (mBuffer.length < capacity) {
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(capacity, mBuffer.length * 2));
+            }
+        }
+
+        private void write(int b) {
+            ensureCapacity(mSize + 1);
+            mBuffer[mSize++] = (byte) b;
+        }
+
+        private void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(mSize + length);
+            System.arraycopy(bytes, offset, mBuffer, mSize, length);
+            mSize += length;
+        }
+
+        private void writeInt(int value) {
+            ensureCapacity(mSize + 4);
+            mBuffer[mSize++] = (byte) (value >>> 24);
+            mBuffer[mSize++] = (byte) (value >>> 16);
+            mBuffer[mSize++] = (byte) (value >>> 8);
+            mBuffer[mSize++] = (byte) value;
+        }
+
+        /**
+         * Writes the chunk's type, leaving room for its length.
+         */
+        private void startChunk(byte[] type) {
+            writeInt(0);
+            write(type, 0, type.length);
+            mChunkStart = mSize;
+        }
+
+        /**
+         * Fills in the length of the chunk, and appends its CRC of type and data.
+         */
+        private void endChunk() {
+            int length = mSize - mChunkStart;
+            int lengthIndex = mChunkStart - 8;
+            mBuffer[lengthIndex] = (byte) (length >>> 24);
+            mBuffer[lengthIndex + 1] = (byte) (length >>> 16);
+            mBuffer[lengthIndex + 2] = (byte) (length >>> 8);
+            mBuffer[lengthIndex + 3] = (byte) length;
+            mCrc.reset();
+            mCrc.update(mBuffer, mChunkStart - 4, length + 4);
+            writeInt((int) mCrc.getValue());
+        }
+
+        /**
+         * Deflates into the free space of the buffer, growing it if there is none.
+         */
+        private void deflate() {
+            if (mSize == mBuffer.length) {
+                ensureCapacity(mSize + 1);
+            }
+            mSize += mDeflater.deflate(mBuffer, mSize, mBuffer.length - mSize);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.maps.android.geometry.Bounds;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index of {@link ProjectedPoints}, in flat arrays rather than a tree of objects. The
+ * bounds of the points are cut into horizontal rows, and the points are sorted by row, then by
+ * column within each row. The points within a rectangle are then found by a binary search of
+ * each row it covers. Immutable.
+ */
+class PointGrid {
+    /**
+     * Average number of points per row, and bound of the number of rows.
+     */
+    private static final int POINTS_PER_ROW = 16;
+    private static final int MAX_ROWS = 1 << 16;
+
+    /**
+     * Columns that x coordinates are sorted by within a row: as fine as an int allows, so that
+     * a row's points are in order of x to within a tiny fraction of a pixel.
+     */
+    private static final int COLUMNS = Integer.MAX_VALUE;
+
+    private final Bounds mBounds;
+
+    /**
+     * The points, sorted by row then column.
+     */
+    private final ProjectedPoints mPoints;
+
+    /**
+     * Index in mPoints of the first point of each row, followed by the number of points.
+     */
+    private final int[] mRowStarts;
+
+    /**
+     * Scaling factors from distance to mBounds' top-left corner, to row and to column.
+     */
+    private final double mRowScale;
+    private final double mColumnScale;
+
+    /**
+     * @param points the points to index
+     * @param bounds bounds of the points
+     */
+    PointGrid(ProjectedPoints points, Bounds bounds) {
+        mBounds = bounds;
+        int size = points.mSize;
+        int rows = Math.max(1, Math.min(MAX_ROWS, size / POINTS_PER_ROW));
+        double height = bounds.maxY - bounds.minY;
+        double width = bounds.maxX - bounds.minX;
+        mRowScale = height > 0 ? rows / height : 0;
+        mColumnScale = width > 0 ? COLUMNS / width : 0;
+
+        // Counting sort the points by row: count them into ends[row + 1], then turn the counts
+        // into the start of each row, which placing the points advances to its end.
+        int[] ends = new int[rows + 1];
+        for (int i = 0; i < size; i++) {
+            ends[row(points.mY[i], rows) + 1]++;
+        }
+        int longestRow = 0;
+        for (int row = 0; row < rows; row++) {
+            longestRow = Math.max(longestRow, ends[row + 1]);
+            ends[row + 1] += ends[row];
+        }
+        mRowStarts = ends.clone();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[ends[row(points.mY[i], rows)]++] = i;
+        }
+
+        // Sort each row by column. Each point is packed as (column, index in row), so that a
+        // primitive sort orders it.
+        double[] x = new double[size];
+        double[] y = new double[size];
+        float[] intensity = points.mIntensity == null ? null : new float[size];
+        long[] packed = new long[longestRow];
+        for (int row = 0; row < rows; row++) {
+            int from = mRowStarts[row];
+            int to = mRowStarts[row + 1];
+            for (int i = from; i < to; i++) {
+                packed[i - from] = (long) column(points.mX[order[i]]) << 32 | (i - from);
+            }
+            Arrays.sort(packed, 0, to - from);
+            for (int i = from; i < to; i++) {
+                int point = order[from + (int) packed[i - from]];
+                x[i] = points.mX[point];
+                y[i] = points.mY[point];
+                if (intensity != null) {
+                    intensity[i] = points.mIntensity[point];
+                }
+            }
+        }
+        mPoints = new ProjectedPoints(x, y, intensity);
+    }
+
+    /**
+     * @return the indexed points, sorted by row then column.
+     */
+    ProjectedPoints getPoints() {
+        return mPoints;
+    }
+
+    /**
+     * Adds the intensities of the points within a rectangle, edges included, to the buckets of a
+     * flat, row-major grid.
+     *
+     * @param bounds      the rectangle to search
+     * @param xOffset     offset to add to the points' x coordinates, for wraparound points
+     * @param minX        x coordinate of the grid's left edge
+     * @param minY        y coordinate of the grid's top edge
+     * @param bucketWidth width of a bucket, in world width units
+     * @param grid        the grid
+     * @param dim         the grid's width and height
+     * @return the number of points added
+     */
+    int quantize(Bounds bounds, double xOffset, double minX, double minY, double bucketWidth,
+                 float[] grid, int dim) {
+        if (!intersectsInclusive(bounds)) {
+            return 0;
+        }
+        double[] xs = mPoints.mX;
+        double[] ys = mPoints.mY;
+        float[] intensities = mPoints.mIntensity;
+        int rows = mRowStarts.length - 1;
+        int fromColumn = column(bounds.minX);
+        int toColumn = column(bounds.maxX);
+        int lastRow = row(bounds.maxY, rows);
+        int added = 0;
+        for (int row = row(bounds.minY, rows); row <= lastRow; row++) {
+            int end = mRowStarts[row + 1];
+            for (int i = firstInColumn(mRowStarts[row], end, fromColumn); i < end; i++) {
+                double x = xs[i];
+                if (x > bounds.maxX) {
+                    // Columns only round x down, so later points may still be within the column
+                    if (column(x) > toColumn) {
+                        break;
+                    }
+                    continue;
+                }
+                double y = ys[i];
+                if (x < bounds.minX || y < bounds.minY || y > bounds.maxY) {
+                    continue;
+                }
+                int bucketX = (int) ((x + xOffset - minX) / bucketWidth);
+                int bucketY = (int) ((y - minY) / bucketWidth);
+                grid[bucketY * dim + bucketX] += intensities == null
+                        ? WeightedLatLng.DEFAULT_INTENSITY : intensities[i];
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds the intensities of the points within a padded tile to its grid, wrapping points across
+     * longitude 180 as {@link HeatmapTileProvider} does.
+     *
+     * @param tileBounds  the padded tile's bounds, which are the grid's edges
+     * @param bucketWidth width of a bucket, in world width units
+     * @param grid        the grid
+     * @param dim         the grid's width and height
+     * @return the number of points added
+     */
+    int quantizeTile(Bounds tileBounds, double bucketWidth, float[] grid, int dim) {
+        double minX = tileBounds.minX;
+        double maxX = tileBounds.maxX;
+        double minY = tileBounds.minY;
+        double maxY = tileBounds.maxY;
+        double worldWidth = HeatmapTileProvider.WORLD_WIDTH;
+        int added = quantize(tileBounds, 0, minX, minY, bucketWidth, grid, dim);
+        // A tile is never wider than the world, so only wraps one way
+        if (minX < 0) {
+            added += quantize(new Bounds(minX + worldWidth, worldWidth, minY, maxY), -worldWidth,
+                    minX, minY, bucketWidth, grid, dim);
+        } else if (maxX > worldWidth) {
+            added += quantize(new Bounds(0, maxX - worldWidth, minY, maxY), worldWidth,
+                    minX, minY, bucketWidth, grid, dim);
+        }
+        return added;
+    }
+
+    private boolean intersectsInclusive(Bounds bounds) {
+        return bounds.minX <= mBounds.maxX && mBounds.minX <= bounds.maxX
+                && bounds.minY <= mBounds.maxY && mBounds.minY <= bounds.maxY;
+    }
+
+    /**
+     * @return the index of the first point in [from, to) whose column is at least the given one.
+     */
+    private int firstInColumn(int from, int to, int column) {
+        double[] xs = mPoints.mX;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (column(xs[middle]) < column) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @return the row that a y coordinate is in, clamped to the rows.
+     */
+    private int row(double y, int rows) {
+        int row = (int) ((y - mBounds.minY) * mRowScale);
+        return Math.max(0, Math.min(row, rows - 1));
+    }
+
+    /**
+     * @return the column that an x coordinate is in, clamped to the columns.
+     */
+    private int column(double x) {
+        double column = (x - mBounds.minX) * mColumnScale;
+        return column <= 0 ? 0 : column >= COLUMNS ? COLUMNS : (int) column;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Collection;
+
+/**
+ * Points projected onto a world of width 1, with their intensities, in flat arrays: 20 bytes a
+ * point, rather than the several objects of a {@link WeightedLatLng}. Immutable.
+ */
+final class ProjectedPoints {
+    /**
+     * Projected coordinates of the points.
+     */
+    final double[] mX;
+    final double[] mY;
+
+    /**
+     * Intensities of the points, or null if they are all DEFAULT_INTENSITY.
+     */
+    final float[] mIntensity;
+
+    final int mSize;
+
+    ProjectedPoints(double[] x, double[] y, float[] intensity) {
+        mX = x;
+        mY = y;
+        mIntensity = intensity;
+        mSize = x.length;
+    }
+
+    /**
+     * Copies the projected points and intensities of WeightedLatLngs.
+     */
+    static ProjectedPoints of(Collection<? extends WeightedLatLng> points) {
+        int size = points.size();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        float[] intensity = new float[size];
+        int i = 0;
+        for (WeightedLatLng point : points) {
+            Point p = point.getPoint();
+            x[i] = p.x;
+            y[i] = p.y;
+            intensity[i] = (float) point.getIntensity();
+            i++;
+        }
+        return new ProjectedPoints(x, y, intensity);
+    }
+
+    /**
+     * Projects columns of coordinates the way {@link WeightedLatLng} does, without creating an
+     * object per point. Reads the remaining values of the buffers, without moving their positions.
+     *
+     * @param latitudes   latitudes of the points, in degrees
+     * @param longitudes  longitudes of the points, in degrees
+     * @param intensities intensities of the points, or null for DEFAULT_INTENSITY. Negative
+     *                    intensities are replaced by DEFAULT_INTENSITY.
+     */
+    static ProjectedPoints project(DoubleBuffer latitudes, DoubleBuffer longitudes,
+                                   FloatBuffer intensities) {
+        int size = latitudes.remaining();
+        if (longitudes.remaining() != size || (intensities != null && intensities.remaining() != size)) {
+            throw new IllegalArgumentException("Columns must have the same length.");
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("No input points.");
+        }
+        int latitudeStart = latitudes.position();
+        int longitudeStart = longitudes.position();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            // Normalised as by LatLng, then projected as by SphericalMercatorProjection
+            double latitude = Math.max(-90.0, Math.min(90.0, latitudes.get(latitudeStart + i)));
+            double longitude = longitudes.get(longitudeStart + i);
+            if (longitude < -180.0 || longitude >= 180.0) {
+                longitude = ((longitude - 180.0) % 360.0 + 360.0) % 360.0 - 180.0;
+            }
+            double siny = Math.sin(Math.toRadians(latitude));
+            x[i] = (longitude / 360 + .5) * HeatmapTileProvider.WORLD_WIDTH;
+            y[i] = (0.5 * Math.log((1 + siny) / (1 - siny)) / -(2 * Math.PI) + .5)
+                    * HeatmapTileProvider.WORLD_WIDTH;
+        }
+
+        float[] intensity = null;
+        if (intensities != null) {
+            int intensityStart = intensities.position();
+            intensity = new float[size];
+            for (int i = 0; i < size; i++) {
+                float value = intensities.get(intensityStart + i);
+                intensity[i] = value >= 0 ? value : (float) WeightedLatLng.DEFAULT_INTENSITY;
+            }
+        }
+        return new ProjectedPoints(x, y, intensity);
+    }
+
+    /**
+     * @return the intensity of the point at the given index.
+     */
+    double getIntensity(int i) {
+        return mIntensity == null ? WeightedLatLng.DEFAULT_INTENSITY : mIntensity[i];
+    }
+
+    /**
+     * @return the bounds that enclose the points.
+     */
+    Bounds getBounds() {
+        double minX = mX[0];
+        double maxX = mX[0];
+        double minY = mY[0];
+        double maxY = mY[0];
+        for (int i = 1; i < mSize; i++) {
+            double x = mX[i];
+            double y = mY[i];
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        return new Bounds(minX, maxX, minY, maxY);
+    }
+}
@@ -0,0 +1,713 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+import com.google.maps.android.geometry.Bounds;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+import static com.google.maps.android.heatmaps.HeatmapTileProvider.TILE_DIM;
+import static com.google.maps.android.heatmaps.HeatmapTileProvider.WORLD_WIDTH;
+
+/**
+ * Tile provider that creates heatmap tiles of the points within a time window, for animating a
+ * heatmap over time.
+ * <p/>
+ * Points are indexed once, by time bucket: each bucket has its own flat index and pre-summed
+ * intensities. A tile sums the quantised intensities of the buckets in the window, then blurs
+ * and colors them once, as blurring is linear. Moving the window, see
+ * {@link #setTimeWindow(long, long)}, only re-renders the tiles, without indexing any points
+ * again.
+ */
+public class TemporalHeatmapTileProvider implements TileProvider {
+
+    /**
+     * Default duration of a time bucket: an hour, in milliseconds.
+     */
+    public static final long DEFAULT_BUCKET_DURATION = 60 * 60 * 1000;
+
+    /**
+     * Maximum number of time buckets between the first and last points.
+     */
+    private static final int MAX_BUCKETS = 1 << 16;
+
+    private static final ProjectedPoints EMPTY_POINTS =
+            new ProjectedPoints(new double[0], new double[0], null);
+
+    /**
+     * Duration of a time bucket. Bucket i covers [i * duration, (i + 1) * duration).
+     */
+    private final long mBucketDuration;
+
+    /**
+     * Index of the bucket of the first point, which is mBuckets[0].
+     */
+    private final long mFirstBucket;
+
+    /**
+     * The points of each bucket, or null if it has none.
+     */
+    private final TimeBucket[] mBuckets;
+
+    /**
+     * Bounds of all the points
+     */
+    private final Bounds mBounds;
+
+    /**
+     * Buckets of the points of each time bucket that maximum intensities are estimated from, or
+     * null if it has none. They all share mBounds, so that those of a window can be summed.
+     */
+    private MaxIntensityEstimator[] mEstimators;
+
+    /**
+     * Sum of the estimators of the current window, updated as the window moves, or null if it
+     * must be summed again.
+     */
+    private MaxIntensityEstimator mWindowEstimator;
+
+    /**
+     * Requested time window [start, end), which is rounded out to whole buckets.
+     */
+    private long mWindowStart;
+    private long mWindowEnd;
+
+    /**
+     * Buckets of the current time window, and their maximum intensities.
+     */
+    private volatile Window mWindow;
+
+    /**
+     * Heatmap point radius.
+     */
+    private int mRadius;
+
+    /**
+     * Gradient of the color map
+     */
+    private Gradient mGradient;
+
+    /**
+     * Color map to use to color tiles
+     */
+    private int[] mColorMap;
+
+    /**
+     * Kernel to use for convolution
+     */
+    private float[] mKernel;
+
+    /**
+     * How to blur the points
+     */
+    private volatile HeatmapTileProvider.BlurMode mBlurMode;
+
+    /**
+     * Encodes the colored tiles
+     */
+    private final TileEncoder mTileEncoder;
+
+    /**
+     * Opacity of the overall heatmap overlay [0...1]
+     */
+    private double mOpacity;
+
+    /**
+     * Runs bands of the convolution in parallel, if set.
+     */
+    private volatile Executor mExecutor;
+    private volatile int mParallelism = 1;
+
+    /**
+     * Tiles already rendered with the current settings and window, or null if caching is disabled.
+     */
+    private final TileCache mTileCache;
+
+    /**
+     * Builder class for the TemporalHeatmapTileProvider.
+     */
+    public static class Builder {
+        // Required parameters - not final, as there are 2 ways to set them
+        private ProjectedPoints points;
+        private long[] timestamps;
+
+        // Optional, initialised to default values
+        private long bucketDuration = DEFAULT_BUCKET_DURATION;
+        private int radius = HeatmapTileProvider.DEFAULT_RADIUS;
+        private Gradient gradient = HeatmapTileProvider.DEFAULT_GRADIENT;
+        private double opacity = HeatmapTileProvider.DEFAULT_OPACITY;
+        private int tileCacheSize = HeatmapTileProvider.DEFAULT_TILE_CACHE_SIZE;
+        private HeatmapTileProvider.BlurMode blurMode = HeatmapTileProvider.DEFAULT_BLUR_MODE;
+        private TileEncoder tileEncoder = new BitmapTileEncoder();
+        private int pyramidMaxZoom = HeatmapTileProvider.DEFAULT_PYRAMID_MAX_ZOOM;
+
+        /**
+         * Constructor for builder.
+         * No required parameters here, but user must call either timedData() or columnarData().
+         */
+        public Builder() {
+        }
+
+        /**
+         * Setter for data in builder. Must call this or columnarData
+         *
+         * @param val Collection of TimedWeightedLatLngs to index.
+         *            Should be non-empty.
+         * @return updated builder object
+         */
+        public Builder timedData(Collection<TimedWeightedLatLng> val) {
+            if (val.isEmpty()) {
+                throw new IllegalArgumentException("No input points.");
+            }
+            points = ProjectedPoints.of(val);
+            timestamps = new long[val.size()];
+            int i = 0;
+            for (TimedWeightedLatLng point : val) {
+                timestamps[i++] = point.getTimestamp();
+            }
+            return this;
+        }
+
+        /**
+         * Setter for columnar data in builder. Must call this or timedData.
+         * See {@link HeatmapTileProvider#setColumnarData(double[], double[], float[])}.
+         *
+         * @param latitudes   Latitudes of the points. Should be non-empty.
+         * @param longitudes  Longitudes of the points, as many as latitudes.
+         * @param intensities Intensities of the points, as many as latitudes, or null.
+         * @param times       Timestamps of the points, as many as latitudes.
+         * @return updated builder object
+         */
+        public Builder columnarData(double[] latitudes, double[] longitudes, float[] intensities,
+                                    long[] times) {
+            if (times.length != latitudes.length) {
+                throw new IllegalArgumentException("Columns must have the same length.");
+            }
+            points = ProjectedPoints.project(DoubleBuffer.wrap(latitudes), DoubleBuffer.wrap(longitudes),
+                    intensities == null ? null : FloatBuffer.wrap(intensities));
+            timestamps = times.clone();
+            return this;
+        }
+
+        /**
+         * Setter for bucket duration in builder
+         *
+         * @param val Duration of the time buckets that points are indexed by, in the unit of
+         *            their timestamps. Time windows are rounded out to whole buckets.
+         *            Defaults to an hour in milliseconds.
+         * @return updated builder object
+         */
+        public Builder bucketDuration(long val) {
+            if (val <= 0) {
+                throw new IllegalArgumentException("Bucket duration must be positive");
+            }
+            bucketDuration = val;
+            return this;
+        }
+
+        /**
+         * Setter for radius in builder
+         *
+         * @param val Radius of convolution to use, in terms of pixels.
+         *            Must be within minimum and maximum values of 10 to 50 inclusive.
+         * @return updated builder object
+         */
+        public Builder radius(int val) {
+            radius = val;
+            // Check that radius is within bounds.
+            if (radius < HeatmapTileProvider.MIN_RADIUS || radius > HeatmapTileProvider.MAX_RADIUS) {
+                throw new IllegalArgumentException("Radius not within bounds.");
+            }
+            return this;
+        }
+
+        /**
+         * Setter for gradient in builder
+         *
+         * @param val Gradient to color heatmap with.
+         * @return updated builder object
+         */
+        public Builder gradient(Gradient val) {
+            gradient = val;
+            return this;
+        }
+
+        /**
+         * Setter for opacity in builder
+         *
+         * @param val Opacity of the entire heatmap in range [0, 1]
+         * @return updated builder object
+         */
+        public Builder opacity(double val) {
+            opacity = val;
+            // Check that opacity is in range
+            if (opacity < 0 || opacity > 1) {
+                throw new IllegalArgumentException("Opacity must be in range [0, 1]");
+            }
+            return this;
+        }
+
+        /**
+         * Setter for blur mode in builder
+         *
+         * @param val How to blur the points, see {@link HeatmapTileProvider.BlurMode}.
+         * @return updated builder object
+         */
+        public Builder blurMode(HeatmapTileProvider.BlurMode val) {
+            if (val == null) {
+                throw new IllegalArgumentException("Blur mode must not be null");
+            }
+            blurMode = val;
+            return this;
+        }
+
+        /**
+         * Setter for tile encoder in builder
+         *
+         * @param val Encoder of the tiles' pixels. Defaults to a {@link BitmapTileEncoder}.
+         * @return updated builder object
+         */
+        public Builder tileEncoder(TileEncoder val) {
+            if (val == null) {
+                throw new IllegalArgumentException("Tile encoder must not be null");
+            }
+            tileEncoder = val;
+            return this;
+        }
+
+        /**
+         * Setter for pyramid max zoom in builder, see
+         * {@link HeatmapTileProvider.Builder#pyramidMaxZoom(int)}. Intensities are pre-summed
+         * for each time bucket.
+         *
+         * @param val Highest zoom level at which tiles are rendered from pre-summed intensities,
+         *            in range [0, 10]. -1 disables it.
+         * @return updated builder object
+         */
+        public Builder pyramidMaxZoom(int val) {
+            pyramidMaxZoom = val;
+            // Check that zoom is in range
+            if (pyramidMaxZoom < -1 || pyramidMaxZoom > HeatmapTileProvider.MAX_PYRAMID_ZOOM) {
+                throw new IllegalArgumentException("Pyramid max zoom must be in range [-1, "
+                        + HeatmapTileProvider.MAX_PYRAMID_ZOOM + "]");
+            }
+            return this;
+        }
+
+        /**
+         * Setter for tile cache size in builder
+         *
+         * @param val Maximum size of the encoded tiles to keep in memory, in bytes.
+         *            0 disables the cache.
+         * @return updated builder object
+         */
+        public Builder tileCacheSize(int val) {
+            tileCacheSize = val;
+            // Check that size is not negative
+            if (tileCacheSize < 0) {
+                throw new IllegalArgumentException("Tile cache size must not be negative");
+            }
+            return this;
+        }
+
+        /**
+         * Call when all desired options have been set.
+         * Note: you must set data using timedData or columnarData before this!
+         *
+         * @return TemporalHeatmapTileProvider created with desired options, showing all points.
+         */
+        public TemporalHeatmapTileProvider build() {
+            // Check if timedData or columnarData has been called
+            if (points == null) {
+                throw new IllegalStateException("No input data: you must use either .timedData or " +
+                        ".columnarData before building");
+            }
+
+            return new TemporalHeatmapTileProvider(this);
+        }
+    }
+
+    private TemporalHeatmapTileProvider(Builder builder) {
+        mBucketDuration = builder.bucketDuration;
+        mRadius = builder.radius;
+        mGradient = builder.gradient;
+        mOpacity = builder.opacity;
+        mBlurMode = builder.blurMode;
+        mTileEncoder = builder.tileEncoder;
+        mTileCache = builder.tileCacheSize > 0 ? new TileCache(builder.tileCacheSize) : null;
+        mKernel = HeatmapTileProvider.toFloats(HeatmapTileProvider.generateKernel(mRadius, mRadius / 3.0));
+        mColorMap = mGradient.generateColorMap(mOpacity);
+
+        ProjectedPoints points = builder.points;
+        long[] timestamps = builder.timestamps;
+        long minTime = timestamps[0];
+        long maxTime = timestamps[0];
+        for (long time : timestamps) {
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+        mFirstBucket = floorDiv(minTime, mBucketDuration);
+        long bucketCount = floorDiv(maxTime, mBucketDuration) - mFirstBucket + 1;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Too many time buckets: " + bucketCount
+                    + ", use a longer bucket duration");
+        }
+        mBounds = points.getBounds();
+        mBuckets = bucket(points, timestamps, (int) bucketCount, builder.pyramidMaxZoom);
+        mEstimators = newEstimators(mRadius);
+
+        // Show all points
+        mWindowStart = minTime;
+        mWindowEnd = maxTime + 1;
+        updateWindow();
+    }
+
+    /**
+     * Counting sorts the points by time bucket, and indexes each bucket.
+     */
+    private TimeBucket[] bucket(ProjectedPoints points, long[] timestamps, int bucketCount,
+                                int pyramidMaxZoom) {
+        int[] ends = new int[bucketCount + 1];
+        for (long time : timestamps) {
+            ends[bucketOf(time) + 1]++;
+        }
+        for (int i = 0; i < bucketCount; i++) {
+            ends[i + 1] += ends[i];
+        }
+        int[] starts = ends.clone();
+        int[] order = new int[points.mSize];
+        for (int i = 0; i < points.mSize; i++) {
+            order[ends[bucketOf(timestamps[i])]++] = i;
+        }
+
+        TimeBucket[] buckets = new TimeBucket[bucketCount];
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            int from = starts[bucket];
+            int size = starts[bucket + 1] - from;
+            if (size == 0) {
+                continue;
+            }
+            double[] x = new double[size];
+            double[] y = new double[size];
+            float[] intensity = points.mIntensity == null ? null : new float[size];
+            for (int i = 0; i < size; i++) {
+                int point = order[from + i];
+                x[i] = points.mX[point];
+                y[i] = points.mY[point];
+                if (intensity != null) {
+                    intensity[i] = points.mIntensity[point];
+                }
+            }
+            buckets[bucket] = new TimeBucket(new ProjectedPoints(x, y, intensity), pyramidMaxZoom);
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the index in mBuckets of the bucket of a timestamp within the data.
+     */
+    private int bucketOf(long time) {
+        return (int) (floorDiv(time, mBucketDuration) - mFirstBucket);
+    }
+
+    private MaxIntensityEstimator[] newEstimators(int radius) {
+        MaxIntensityEstimator[] estimators = new MaxIntensityEstimator[mBuckets.length];
+        for (int i = 0; i < mBuckets.length; i++) {
+            if (mBuckets[i] != null) {
+                estimators[i] = HeatmapTileProvider.newEstimator(mBuckets[i].mGrid.getPoints(), mBounds,
+                        radius, null, 1);
+            }
+        }
+        return estimators;
+    }
+
+    /**
+     * Shows the points within a time window. Tiles are then rendered from the pre-summed
+     * intensities of its buckets, so this costs no more than re-rendering the tiles, and
+     * estimating maximum intensities for the window. Those are summed from the estimates of the
+     * time buckets that enter and leave the window, so moving it by a bucket is cheap.
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param start start of the window, included. Rounded down to the start of its bucket.
+     * @param end   end of the window, excluded. Rounded up to the end of its bucket.
+     */
+    public synchronized void setTimeWindow(long start, long end) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Time window must not be empty");
+        }
+        mWindowStart = start;
+        mWindowEnd = end;
+        updateWindow();
+    }
+
+    private void updateWindow() {
+        int from = clampBucket(floorDiv(mWindowStart, mBucketDuration) - mFirstBucket);
+        int to = clampBucket(floorDiv(mWindowEnd - 1, mBucketDuration) + 1 - mFirstBucket);
+        Window previous = mWindow;
+
+        MaxIntensityEstimator estimator;
+        if (to - from == 1 && mEstimators[from] != null) {
+            // A single bucket has its own estimate
+            estimator = mEstimators[from];
+            mWindowEstimator = null;
+        } else {
+            // Add the buckets that enter the window and subtract those that leave it, unless that
+            // takes as many as summing the window's buckets again. The sum is only kept for
+            // windows of several buckets.
+            if (mWindowEstimator == null
+                    || Math.abs(from - previous.mFrom) + Math.abs(to - previous.mTo) >= to - from) {
+                mWindowEstimator = HeatmapTileProvider.newEstimator(EMPTY_POINTS, mBounds, mRadius, null, 1);
+                addEstimators(from, to, 1);
+            } else {
+                addEstimators(previous.mFrom, from, -1);
+                addEstimators(from, previous.mFrom, 1);
+                addEstimators(to, previous.mTo, -1);
+                addEstimators(previous.mTo, to, 1);
+            }
+            estimator = mWindowEstimator;
+        }
+
+        mWindow = new Window(from, to, HeatmapTileProvider.getMaxIntensities(estimator));
+        invalidateTileCache();
+    }
+
+    /**
+     * Adds the estimators of the buckets [from, to) to the window's, or subtracts them.
+     * Does nothing if to <= from.
+     */
+    private void addEstimators(int from, int to, int sign) {
+        for (int i = from; i < to; i++) {
+            if (mEstimators[i] != null) {
+                mWindowEstimator.addAll(mEstimators[i], sign);
+            }
+        }
+    }
+
+    private int clampBucket(long bucket) {
+        return (int) Math.max(0, Math.min(bucket, mBuckets.length));
+    }
+
+    /**
+     * @return the start of the first time bucket with points.
+     */
+    public long getStartTime() {
+        return mFirstBucket * mBucketDuration;
+    }
+
+    /**
+     * @return the end of the last time bucket with points.
+     */
+    public long getEndTime() {
+        return (mFirstBucket + mBuckets.length) * mBucketDuration;
+    }
+
+    /**
+     * @return the duration of a time bucket.
+     */
+    public long getBucketDuration() {
+        return mBucketDuration;
+    }
+
+    /**
+     * Creates tile.
+     *
+     * @param x    X coordinate of tile.
+     * @param y    Y coordinate of tile.
+     * @param zoom Zoom level.
+     * @return image in Tile format
+     */
+    public Tile getTile(int x, int y, int zoom) {
+        if (mTileCache == null) {
+            return renderTile(x, y, zoom);
+        }
+        Tile tile = mTileCache.get(x, y, zoom);
+        if (tile == null) {
+            int generation = mTileCache.getGeneration();
+            tile = renderTile(x, y, zoom);
+            mTileCache.put(generation, x, y, zoom, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Drops cached tiles once the settings or window they were rendered with change.
+     */
+    private void invalidateTileCache() {
+        if (mTileCache != null) {
+            mTileCache.invalidate();
+        }
+    }
+
+    /**
+     * Renders a tile of the current window, the way {@link HeatmapTileProvider} renders one of all
+     * its points.
+     */
+    private Tile renderTile(int x, int y, int zoom) {
+        // Read the settings once, as they may be changed while rendering
+        Window window = mWindow;
+        int radius = mRadius;
+        float[] kernel = mKernel;
+
+        // Width of the tile and its padding, and of a bucket, in world width units
+        double tileWidth = WORLD_WIDTH / Math.pow(2, zoom);
+        double padding = tileWidth * radius / TILE_DIM;
+        int dimPadded = TILE_DIM + radius * 2;
+        double bucketWidth = (tileWidth + 2 * padding) / dimPadded;
+        Bounds tileBounds = new Bounds(x * tileWidth - padding, (x + 1) * tileWidth + padding,
+                y * tileWidth - padding, (y + 1) * tileWidth + padding);
+
+        // Tiles that don't touch the padded bounds of the points are blank
+        Bounds paddedBounds = new Bounds(mBounds.minX - padding, mBounds.maxX + padding,
+                mBounds.minY - padding, mBounds.maxY + padding);
+        if (!tileBounds.intersects(paddedBounds)) {
+            return TileProvider.NO_TILE;
+        }
+
+        // Sum the intensities of the window's buckets
+        TileBuffers buffers = TileBuffers.get();
+        float[] intensity = buffers.intensity(dimPadded * dimPadded);
+        int added = 0;
+        for (int i = window.mFrom; i < window.mTo; i++) {
+            TimeBucket bucket = mBuckets[i];
+            if (bucket == null) {
+                continue;
+            }
+            if (bucket.mPyramid != null && bucket.mPyramid.hasLevel(zoom)) {
+                added += bucket.mPyramid.quantize(zoom, x * TILE_DIM - radius, y * TILE_DIM - radius,
+                        intensity, dimPadded);
+            } else {
+                added += bucket.mGrid.quantizeTile(tileBounds, bucketWidth, intensity, dimPadded);
+            }
+        }
+        if (added == 0) {
+            return TileProvider.NO_TILE;
+        }
+
+        return HeatmapTileProvider.toTile(intensity, radius, kernel, mBlurMode, mColorMap,
+                window.mMaxIntensity[zoom], mTileEncoder, mExecutor, mParallelism, buffers);
+    }
+
+    /**
+     * Setter for gradient/color map.
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param gradient Gradient to set
+     */
+    public void setGradient(Gradient gradient) {
+        mGradient = gradient;
+        mColorMap = gradient.generateColorMap(mOpacity);
+        invalidateTileCache();
+    }
+
+    /**
+     * Setter for radius. Estimates maximum intensities again, from all points.
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param radius Radius to set
+     */
+    public synchronized void setRadius(int radius) {
+        mEstimators = newEstimators(radius);
+        mWindowEstimator = null;
+        mKernel = HeatmapTileProvider.toFloats(HeatmapTileProvider.generateKernel(radius, radius / 3.0));
+        mRadius = radius;
+        updateWindow();
+    }
+
+    /**
+     * Setter for blur mode.
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param blurMode How to blur the points, see {@link HeatmapTileProvider.BlurMode}.
+     */
+    public void setBlurMode(HeatmapTileProvider.BlurMode blurMode) {
+        if (blurMode == null) {
+            throw new IllegalArgumentException("Blur mode must not be null");
+        }
+        mBlurMode = blurMode;
+        invalidateTileCache();
+    }
+
+    /**
+     * Convolves each tile on several threads, see
+     * {@link HeatmapTileProvider#setParallelConvolution(Executor, int)}.
+     *
+     * @param executor    runs the extra convolution bands, or null.
+     * @param parallelism maximum number of threads to convolve each tile on.
+     */
+    public void setParallelConvolution(Executor executor, int parallelism) {
+        mExecutor = executor;
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Setter for opacity
+     * User should clear overlay's tile cache (using clearTileCache()) after calling this.
+     *
+     * @param opacity opacity to set
+     */
+    public void setOpacity(double opacity) {
+        mOpacity = opacity;
+        // need to recompute kernel color map
+        setGradient(mGradient);
+    }
+
+    /**
+     * @return x / y rounded towards negative infinity, for y > 0.
+     */
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        return x % y < 0 ? quotient - 1 : quotient;
+    }
+
+    /**
+     * The points of one time bucket, indexed as by HeatmapTileProvider.
+     */
+    private static class TimeBucket {
+        private final PointGrid mGrid;
+
+        /**
+         * Pre-summed intensities, or null if disabled
+         */
+        private final IntensityPyramid mPyramid;
+
+        private TimeBucket(ProjectedPoints points, int pyramidMaxZoom) {
+            mGrid = new PointGrid(points, points.getBounds());
+            mPyramid = pyramidMaxZoom >= 0
+                    ? new IntensityPyramid(mGrid.getPoints(), TILE_DIM, pyramidMaxZoom) : null;
+        }
+    }
+
+    /**
+     * Time buckets [mFrom, mTo) of a window, and their maximum intensity at each zoom level.
+     */
+    private static class Window {
+        private final int mFrom;
+        private final int mTo;
+        private final double[] mMaxIntensity;
+
+        private Window(int from, int to, double[] maxIntensity) {
+            mFrom = from;
+            mTo = to;
+            mMaxIntensity = maxIntensity;
+        }
+    }
+}
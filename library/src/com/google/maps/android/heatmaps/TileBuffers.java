@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Scratch buffers for rendering heatmap tiles, pooled per thread. The Maps SDK requests tiles
+ * on a few threads of its own, so each of them renders into the same buffers tile after tile
+ * rather than allocating several megabytes per tile.
+ * <p/>
+ * Grids are flat float arrays in row-major order, i.e. the value at (x, y) of a grid of width dim
+ * is at index y * dim + x, as for Bitmap pixels.
+ */
+class TileBuffers {
+    private static final ThreadLocal<TileBuffers> sBuffers = new ThreadLocal<TileBuffers>() {
+        @Override
+        protected TileBuffers initialValue() {
+            return new TileBuffers();
+        }
+    };
+
+    /**
+     * Points found for the tile being rendered.
+     */
+    final ArrayList<WeightedLatLng> mPoints = new ArrayList<WeightedLatLng>();
+
+    /**
+     * Encodes tiles with {@link BitmapTileEncoder}; its internal buffer is kept between tiles.
+     */
+    final ByteArrayOutputStream mStream = new ByteArrayOutputStream();
+
+    private float[] mIntensity = new float[0];
+    private float[] mIntermediate = new float[0];
+    private float[] mOutput = new float[0];
+    private boolean[] mNonEmptyRows = new boolean[0];
+    private int[] mColors = new int[0];
+    private Bitmap mBitmap;
+
+    private TileBuffers() {
+    }
+
+    /**
+     * @return the buffers of the calling thread.
+     */
+    static TileBuffers get() {
+        return sBuffers.get();
+    }
+
+    /**
+     * @return a zeroed grid of at least the given size, for the quantised points.
+     */
+    float[] intensity(int size) {
+        if (mIntensity.length < size) {
+            mIntensity = new float[size];
+        } else {
+            Arrays.fill(mIntensity, 0, size, 0);
+        }
+        return mIntensity;
+    }
+
+    /**
+     * @return a zeroed grid of at least the given size, for the first pass of the convolution.
+     */
+    float[] intermediate(int size) {
+        if (mIntermediate.length < size) {
+            mIntermediate = new float[size];
+        } else {
+            Arrays.fill(mIntermediate, 0, size, 0);
+        }
+        return mIntermediate;
+    }
+
+    /**
+     * @return a zeroed grid of at least the given size, for the convolved tile.
+     */
+    float[] output(int size) {
+        if (mOutput.length < size) {
+            mOutput = new float[size];
+        } else {
+            Arrays.fill(mOutput, 0, size, 0);
+        }
+        return mOutput;
+    }
+
+    /**
+     * @return flags of at least the given size, for which rows of a grid have any values. Not
+     * cleared, as they are always written before being read.
+     */
+    boolean[] nonEmptyRows(int size) {
+        if (mNonEmptyRows.length < size) {
+            mNonEmptyRows = new boolean[size];
+        }
+        return mNonEmptyRows;
+    }
+
+    /**
+     * @return pixels of at least the given size. Not cleared, as every pixel is written.
+     */
+    int[] colors(int size) {
+        if (mColors.length < size) {
+            mColors = new int[size];
+        }
+        return mColors;
+    }
+
+    /**
+     * @return a mutable bitmap of the given dimensions. Its previous pixels are left in place.
+     */
+    Bitmap bitmap(int width, int height) {
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        return mBitmap;
+    }
+}
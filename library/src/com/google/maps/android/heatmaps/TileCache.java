@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import android.support.v4.util.LruCache;
+
+import com.google.android.gms.maps.model.Tile;
+
+/**
+ * LRU cache of encoded heatmap tiles, keyed by tile coordinates and sized by encoded bytes.
+ * <p/>
+ * Each invalidation starts a new generation. Tiles rendered from settings of an earlier
+ * generation are dropped rather than cached, so a tile that was being rendered while the
+ * settings changed doesn't outlive the change. Invalidating only the tiles that changed still
+ * drops every tile being rendered meanwhile, which is harmless as they aren't cached yet.
+ */
+class TileCache extends LruCache<Long, Tile> {
+    /**
+     * Size charged for tiles without data, such as {@link com.google.android.gms.maps.model.TileProvider#NO_TILE},
+     * so that the cache still holds a bounded number of them.
+     */
+    private static final int EMPTY_TILE_BYTES = 64;
+
+    private static final int COORDINATE_MASK = (1 << 29) - 1;
+
+    private volatile int mGeneration;
+
+    /**
+     * @param maxBytes the maximum total size of the cached tiles' encoded data.
+     */
+    TileCache(int maxBytes) {
+        super(maxBytes);
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #put(int, int, int, int, Tile)} once
+     * a tile has been rendered.
+     */
+    int getGeneration() {
+        return mGeneration;
+    }
+
+    Tile get(int x, int y, int zoom) {
+        return get(key(x, y, zoom));
+    }
+
+    /**
+     * Caches a tile, unless the cache has been invalidated since the generation it was rendered in.
+     */
+    void put(int generation, int x, int y, int zoom, Tile tile) {
+        if (generation != mGeneration) {
+            return;
+        }
+        put(key(x, y, zoom), tile);
+        // Invalidated while putting: the tile may be stale, so drop it.
+        if (generation != mGeneration) {
+            remove(key(x, y, zoom));
+        }
+    }
+
+    /**
+     * Drops all tiles.
+     */
+    void invalidate() {
+        mGeneration++;
+        evictAll();
+    }
+
+    /**
+     * Drops the tiles that an update of the data changed.
+     */
+    void invalidate(DirtyTiles dirty) {
+        mGeneration++;
+        for (Long key : snapshot().keySet()) {
+            if (dirty.isDirty(x(key), y(key), zoom(key))) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or 0 if there were none.
+     */
+    float getHitRate() {
+        int hits = hitCount();
+        int lookups = hits + missCount();
+        return lookups == 0 ? 0 : (float) hits / lookups;
+    }
+
+    @Override
+    protected int sizeOf(Long key, Tile tile) {
+        return tile.data == null ? EMPTY_TILE_BYTES : tile.data.length;
+    }
+
+    /**
+     * Packs tile coordinates into a key. Supports zoom levels up to 29, where coordinates are below 2^29.
+     */
+    static long key(int x, int y, int zoom) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    private static int x(long key) {
+        return (int) (key >>> 29) & COORDINATE_MASK;
+    }
+
+    private static int y(long key) {
+        return (int) key & COORDINATE_MASK;
+    }
+
+    private static int zoom(long key) {
+        return (int) (key >>> 58);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+/**
+ * Coordinates of a tile, as passed to {@link HeatmapTileProvider#getTile(int, int, int)}.
+ */
+public final class TileCoordinates {
+    public final int x;
+    public final int y;
+    public final int zoom;
+
+    public TileCoordinates(int x, int y, int zoom) {
+        this.x = x;
+        this.y = y;
+        this.zoom = zoom;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof TileCoordinates)) {
+            return false;
+        }
+        TileCoordinates tile = (TileCoordinates) other;
+        return x == tile.x && y == tile.y && zoom == tile.zoom;
+    }
+
+    @Override
+    public int hashCode() {
+        return (zoom * 31 + x) * 31 + y;
+    }
+
+    @Override
+    public String toString() {
+        return "TileCoordinates{" +
+                "x=" + x +
+                ", y=" + y +
+                ", zoom=" + zoom +
+                '}';
+    }
+}
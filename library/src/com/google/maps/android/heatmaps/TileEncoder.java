@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+/**
+ * Encodes the pixels of heatmap tiles into image data for the Maps SDK.
+ * Implementations must be thread safe, as tiles are rendered on several threads at once.
+ */
+public interface TileEncoder {
+    /**
+     * @param pixels colors of the tile's pixels, row by row, as ARGB ints that are not
+     *               premultiplied; only valid for the duration of the call
+     * @param width  width of the tile, in pixels
+     * @param height height of the tile, in pixels
+     * @return the encoded image, in a format the Maps SDK can decode such as PNG
+     */
+    byte[] encode(int[] pixels, int width, int height);
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * A WeightedLatLng with the time it happened at, for a {@link TemporalHeatmapTileProvider}.
+ */
+public class TimedWeightedLatLng extends WeightedLatLng {
+
+    private final long mTimestamp;
+
+    /**
+     * Constructor
+     *
+     * @param latLng    LatLng to add to wrapper
+     * @param intensity Intensity to use, as for {@link WeightedLatLng#WeightedLatLng(LatLng, double)}
+     * @param timestamp Time of the point, in any unit as long as all points and time windows
+     *                  use the same one, e.g. milliseconds since the epoch.
+     */
+    public TimedWeightedLatLng(LatLng latLng, double intensity, long timestamp) {
+        super(latLng, intensity);
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * Constructor that uses default value for intensity
+     *
+     * @param latLng    LatLng to add to wrapper
+     * @param timestamp Time of the point
+     */
+    public TimedWeightedLatLng(LatLng latLng, long timestamp) {
+        this(latLng, DEFAULT_INTENSITY, timestamp);
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+}
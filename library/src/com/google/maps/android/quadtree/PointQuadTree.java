@@ -45,19 +45,29 @@ public class PointQuadTree<T extends PointQuadTree.Item> {
     private final int mDepth;
 
     /**
-     * Maximum number of elements to store in a quad before splitting.
+     * Default maximum number of elements to store in a quad before splitting.
      */
-    private final static int MAX_ELEMENTS = 50;
+    public final static int DEFAULT_MAX_ELEMENTS = 50;
 
     /**
-     * The elements inside this quad, if any.
+     * Default maximum depth.
      */
-    private Set<T> mItems;
+    public final static int DEFAULT_MAX_DEPTH = 40;
+
+    /**
+     * Maximum number of elements to store in a quad before splitting.
+     */
+    private final int mMaxElements;
 
     /**
      * Maximum depth.
      */
-    private final static int MAX_DEPTH = 40;
+    private final int mMaxDepth;
+
+    /**
+     * The elements inside this quad, if any.
+     */
+    private Set<T> mItems;
 
     /**
      * Child quads.
@@ -77,16 +87,35 @@ public class PointQuadTree<T extends PointQuadTree.Item> {
     }
 
     public PointQuadTree(Bounds bounds) {
-        this(bounds, 0);
+        this(bounds, DEFAULT_MAX_ELEMENTS, DEFAULT_MAX_DEPTH);
     }
 
-    private PointQuadTree(double minX, double maxX, double minY, double maxY, int depth) {
-        this(new Bounds(minX, maxX, minY, maxY), depth);
+    /**
+     * Creates a new quad tree with specified bounds and split parameters.
+     *
+     * @param bounds      the bounds of the tree.
+     * @param maxElements maximum number of elements to store in a quad before splitting it.
+     * @param maxDepth    maximum depth of the tree; quads at this depth are never split.
+     */
+    public PointQuadTree(Bounds bounds, int maxElements, int maxDepth) {
+        this(bounds, 0, maxElements, maxDepth);
+        if (maxElements < 1) {
+            throw new IllegalArgumentException("maxElements must be at least 1");
+        }
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        }
     }
 
-    private PointQuadTree(Bounds bounds, int depth) {
+    private PointQuadTree(double minX, double maxX, double minY, double maxY, int depth, int maxElements, int maxDepth) {
+        this(new Bounds(minX, maxX, minY, maxY), depth, maxElements, maxDepth);
+    }
+
+    private PointQuadTree(Bounds bounds, int depth, int maxElements, int maxDepth) {
         mBounds = bounds;
         mDepth = depth;
+        mMaxElements = maxElements;
+        mMaxDepth = maxDepth;
     }
 
     /**
@@ -120,7 +149,7 @@ public class PointQuadTree<T extends PointQuadTree.Item> {
             mItems = new HashSet<>();
         }
         mItems.add(item);
-        if (mItems.size() > MAX_ELEMENTS && mDepth < MAX_DEPTH) {
+        if (mItems.size() > mMaxElements && mDepth < mMaxDepth) {
             split();
         }
     }
@@ -130,10 +159,10 @@ public class PointQuadTree<T extends PointQuadTree.Item> {
      */
     private void split() {
         mChildren = new ArrayList<PointQuadTree<T>>(4);
-        mChildren.add(new PointQuadTree<T>(mBounds.minX, mBounds.midX, mBounds.minY, mBounds.midY, mDepth + 1));
-        mChildren.add(new PointQuadTree<T>(mBounds.midX, mBounds.maxX, mBounds.minY, mBounds.midY, mDepth + 1));
-        mChildren.add(new PointQuadTree<T>(mBounds.minX, mBounds.midX, mBounds.midY, mBounds.maxY, mDepth + 1));
-        mChildren.add(new PointQuadTree<T>(mBounds.midX, mBounds.maxX, mBounds.midY, mBounds.maxY, mDepth + 1));
+        mChildren.add(new PointQuadTree<T>(mBounds.minX, mBounds.midX, mBounds.minY, mBounds.midY, mDepth + 1, mMaxElements, mMaxDepth));
+        mChildren.add(new PointQuadTree<T>(mBounds.midX, mBounds.maxX, mBounds.minY, mBounds.midY, mDepth + 1, mMaxElements, mMaxDepth));
+        mChildren.add(new PointQuadTree<T>(mBounds.minX, mBounds.midX, mBounds.midY, mBounds.maxY, mDepth + 1, mMaxElements, mMaxDepth));
+        mChildren.add(new PointQuadTree<T>(mBounds.midX, mBounds.maxX, mBounds.midY, mBounds.maxY, mDepth + 1, mMaxElements, mMaxDepth));
 
         Set<T> items = mItems;
         mItems = null;
@@ -202,18 +231,25 @@ public class PointQuadTree<T extends PointQuadTree.Item> {
         return results;
     }
 
-    private void search(Bounds searchBounds, Collection<T> results) {
+    /**
+     * Search for all items within a given bounds, adding them to a collection. Lets callers that
+     * search often reuse the collection.
+     */
+    public void search(Bounds searchBounds, Collection<T> results) {
         if (!mBounds.intersects(searchBounds)) {
             return;
         }
 
         if (this.mChildren != null) {
-            for (PointQuadTree<T> quad : mChildren) {
-                quad.search(searchBounds, results);
+            for (int i = 0; i < mChildren.size(); i++) {
+                mChildren.get(i).search(searchBounds, results);
             }
         } else if (mItems != null) {
             if (searchBounds.contains(mBounds)) {
-                results.addAll(mItems);
+                // Not addAll(), which copies the items to an array first.
+                for (T item : mItems) {
+                    results.add(item);
+                }
             } else {
                 for (T item : mItems) {
                     if (searchBounds.contains(item.getPoint())) {
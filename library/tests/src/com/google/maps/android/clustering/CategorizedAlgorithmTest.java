@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.CategorizedAlgorithm;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Set;
+
+public class CategorizedAlgorithmTest extends TestCase {
+
+    private CategorizedAlgorithm<TestingItem> mAlgo;
+
+    public void setUp() {
+        mAlgo = new CategorizedAlgorithm<TestingItem>(new CategorizedAlgorithm.Categorizer<TestingItem>() {
+            @Override
+            public int getCategory(TestingItem item) {
+                return item.mCategory;
+            }
+        }, 3);
+        // Two items of each category close together, and one far away.
+        for (int category = 0; category < 3; category++) {
+            mAlgo.addItem(new TestingItem(10, 10 + category * 0.001, category));
+            mAlgo.addItem(new TestingItem(10.001, 10 + category * 0.001, category));
+        }
+        mAlgo.addItem(new TestingItem(-30, 50, 1));
+    }
+
+    public void testClustersPerCategory() {
+        Set<? extends Cluster<TestingItem>> clusters = mAlgo.getClusters(5);
+        assertEquals(4, clusters.size());
+        for (Cluster<TestingItem> cluster : clusters) {
+            int[] counts = mAlgo.getCategoryCounts(cluster);
+            int categories = 0;
+            for (int count : counts) {
+                categories += count > 0 ? 1 : 0;
+            }
+            assertEquals(1, categories);
+        }
+    }
+
+    public void testMixedCategories() {
+        mAlgo.setMixCategories(true);
+        Set<? extends Cluster<TestingItem>> clusters = mAlgo.getClusters(5);
+        assertEquals(2, clusters.size());
+        for (Cluster<TestingItem> cluster : clusters) {
+            if (cluster.getSize() > 1) {
+                assertTrue(Arrays.equals(new int[]{2, 2, 2}, mAlgo.getCategoryCounts(cluster)));
+            }
+        }
+    }
+
+    public void testHiddenCategory() {
+        mAlgo.setCategoryVisible(1, false);
+        assertFalse(mAlgo.isCategoryVisible(1));
+        Set<? extends Cluster<TestingItem>> clusters = mAlgo.getClusters(5);
+        assertEquals(2, clusters.size());
+        for (Cluster<TestingItem> cluster : clusters) {
+            assertEquals(0, mAlgo.getCategoryCounts(cluster)[1]);
+        }
+        // Hidden items are still in the algorithm.
+        assertEquals(7, mAlgo.getItems().size());
+
+        mAlgo.setCategoryVisible(1, true);
+        assertEquals(4, mAlgo.getClusters(5).size());
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+        private final int mCategory;
+
+        TestingItem(double lat, double lng, int category) {
+            mPosition = new LatLng(lat, lng);
+            mCategory = category;
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
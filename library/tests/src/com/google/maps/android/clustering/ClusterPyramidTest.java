@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.ClusterPyramid;
+import com.google.maps.android.clustering.algo.NonHierarchicalDistanceBasedAlgorithm;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class ClusterPyramidTest extends TestCase {
+
+    private File mFile;
+    private List<ClusterItem> mItems;
+    private NonHierarchicalDistanceBasedAlgorithm<ClusterItem> mAlgo;
+
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("pyramid", ".bin");
+        Random random = new Random(3);
+        mItems = new ArrayList<ClusterItem>();
+        for (int i = 0; i < 5000; i++) {
+            mItems.add(new TestingItem(random.nextGaussian() * 10, random.nextGaussian() * 10));
+        }
+        mAlgo = new NonHierarchicalDistanceBasedAlgorithm<ClusterItem>();
+        mAlgo.addItems(mItems);
+    }
+
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    public void testRoundTrip() throws IOException {
+        ClusterPyramid.write(mAlgo, mItems, 2, 12, mFile);
+        ClusterPyramid<ClusterItem> pyramid = ClusterPyramid.load(mFile, mItems);
+        assertEquals(2, pyramid.getMinZoom());
+        assertEquals(12, pyramid.getMaxZoom());
+        assertEquals(mAlgo.getMaxDistanceBetweenClusteredItems(), pyramid.getMaxDistanceBetweenClusteredItems());
+        assertEquals(mItems.size(), pyramid.getItems().size());
+
+        for (int zoom = 2; zoom <= 12; zoom++) {
+            assertEquals(describe(mAlgo.getClusters(zoom)), describe(pyramid.getClusters(zoom)));
+        }
+        // Out of range zooms use the nearest level.
+        assertEquals(describe(pyramid.getClusters(2)), describe(pyramid.getClusters(0)));
+        assertEquals(describe(pyramid.getClusters(12)), describe(pyramid.getClusters(18.5)));
+        // Clusters are stable between calls, so renderers can tell nothing changed.
+        assertEquals(pyramid.getClusters(7), pyramid.getClusters(7.5));
+    }
+
+    public void testLoadRequiresSameItems() throws IOException {
+        ClusterPyramid.write(mAlgo, mItems, 4, 5, mFile);
+        try {
+            ClusterPyramid.load(mFile, mItems.subList(1, mItems.size()));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testMutatorsLeaveItemsAlone() throws IOException {
+        ClusterPyramid.write(mAlgo, mItems, 4, 5, mFile);
+        ClusterPyramid<ClusterItem> pyramid = ClusterPyramid.load(mFile, mItems);
+        Set<List<Object>> clusters = describe(pyramid.getClusters(4));
+
+        pyramid.addItem(new TestingItem(0, 0));
+        pyramid.addItems(Collections.<ClusterItem>singletonList(new TestingItem(1, 1)));
+        pyramid.removeItem(mItems.get(0));
+        pyramid.setMaxDistanceBetweenClusteredItems(1);
+        assertEquals(mItems.size(), pyramid.getItems().size());
+        assertEquals(mAlgo.getMaxDistanceBetweenClusteredItems(), pyramid.getMaxDistanceBetweenClusteredItems());
+        assertEquals(clusters, describe(pyramid.getClusters(4)));
+
+        pyramid.clearItems();
+        assertTrue(pyramid.getItems().isEmpty());
+        assertTrue(pyramid.getClusters(4).isEmpty());
+        assertEquals(clusters, describe(ClusterPyramid.load(mFile, mItems).getClusters(4)));
+    }
+
+    public void testCorruptFilesAreRejected() throws IOException {
+        ClusterPyramid.write(mAlgo, mItems, 4, 6, mFile);
+        byte[] bytes = read(mFile);
+
+        // Zoom range, table offset, first level offset, first level cluster count, truncation.
+        assertCorrupt(bytes, 16, 7);
+        assertCorrupt(bytes, 20, -1);
+        assertCorrupt(bytes, bytes.length - 4, 12);
+        assertCorrupt(bytes, bytes.length - 3 * 8 - 8 + 4, bytes.length);
+        assertCorrupt(bytes, 24, Integer.MAX_VALUE);
+        assertCorrupt(bytes, 24, -2);
+
+        // Item count and first item of the first cluster, and the first item id.
+        int clusterCount = ByteBuffer.wrap(bytes).getInt(24);
+        assertCorrupt(bytes, 28 + 16, Integer.MAX_VALUE);
+        assertCorrupt(bytes, 28 + 16, -1);
+        assertCorrupt(bytes, 28 + 20, mItems.size());
+        assertCorrupt(bytes, 28 + 20, -1);
+        assertCorrupt(bytes, 28 + clusterCount * 24, mItems.size());
+        assertCorrupt(bytes, 28 + clusterCount * 24, -1);
+        writeBytes(mFile, Arrays.copyOf(bytes, bytes.length - 1));
+        try {
+            ClusterPyramid.load(mFile, mItems);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testFailedWriteDeletesFile() throws IOException {
+        try {
+            ClusterPyramid.write(mAlgo, mItems.subList(1, mItems.size()), 4, 5, mFile);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(mFile.exists());
+    }
+
+    /**
+     * Overwrites a big-endian int in a copy of bytes and checks the result can't be loaded.
+     */
+    private void assertCorrupt(byte[] bytes, int position, int value) throws IOException {
+        byte[] corrupt = bytes.clone();
+        ByteBuffer.wrap(corrupt).putInt(position, value);
+        writeBytes(mFile, corrupt);
+        try {
+            ClusterPyramid.load(mFile, mItems);
+            fail("Loaded with " + value + " at " + position);
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeBytes(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Describes clusters by position and item identities, independent of the cluster class.
+     */
+    private static Set<List<Object>> describe(Set<? extends Cluster<ClusterItem>> clusters) {
+        Set<List<Object>> result = new HashSet<List<Object>>();
+        for (Cluster<ClusterItem> cluster : clusters) {
+            List<Object> description = new ArrayList<Object>();
+            description.add(cluster.getPosition());
+            description.add(new HashSet<ClusterItem>(cluster.getItems()));
+            result.add(description);
+        }
+        return result;
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
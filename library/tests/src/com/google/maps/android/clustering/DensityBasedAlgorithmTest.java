@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.DensityBasedAlgorithm;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class DensityBasedAlgorithmTest extends TestCase {
+
+    private DensityBasedAlgorithm<ClusterItem> mAlgo;
+
+    public void setUp() {
+        mAlgo = new DensityBasedAlgorithm<ClusterItem>(3, 40);
+    }
+
+    public void testDenseItemsAreClustered() {
+        // 40dp at zoom 10 is about 0.055 degrees of longitude.
+        mAlgo.addItem(new TestingItem(0, 0));
+        mAlgo.addItem(new TestingItem(0, 0.02));
+        mAlgo.addItem(new TestingItem(0, 0.04));
+        // Chained to the first three through core items.
+        mAlgo.addItem(new TestingItem(0, 0.06));
+        mAlgo.addItem(new TestingItem(0, 0.08));
+        // Too sparse to be clustered.
+        mAlgo.addItem(new TestingItem(10, 10));
+        mAlgo.addItem(new TestingItem(10, 10.05));
+
+        Set<? extends Cluster<ClusterItem>> clusters = mAlgo.getClusters(10);
+        assertEquals(3, clusters.size());
+        int largest = 0;
+        for (Cluster<ClusterItem> cluster : clusters) {
+            largest = Math.max(largest, cluster.getSize());
+        }
+        assertEquals(5, largest);
+
+        // Zoomed out far enough, everything is one cluster.
+        assertEquals(1, mAlgo.getClusters(1).size());
+    }
+
+    public void testClustersAreDeterministic() {
+        Random random = new Random(11);
+        List<ClusterItem> items = new ArrayList<ClusterItem>();
+        for (int i = 0; i < 20000; i++) {
+            items.add(new TestingItem(random.nextGaussian() * 10, random.nextGaussian() * 10));
+        }
+        mAlgo.addItems(items);
+        DensityBasedAlgorithm<ClusterItem> other = new DensityBasedAlgorithm<ClusterItem>(3, 40);
+        other.addItems(items);
+
+        for (int zoom = 2; zoom < 14; zoom += 3) {
+            Set<? extends Cluster<ClusterItem>> clusters = mAlgo.getClusters(zoom);
+            assertEquals(clusters, mAlgo.getClusters(zoom));
+            assertEquals(clusters, other.getClusters(zoom));
+            int total = 0;
+            for (Cluster<ClusterItem> cluster : clusters) {
+                total += cluster.getSize();
+            }
+            assertEquals(items.size(), total);
+        }
+    }
+
+    public void testRemoveItem() {
+        TestingItem a = new TestingItem(0, 0);
+        mAlgo.addItem(a);
+        mAlgo.addItem(new TestingItem(0, 0.01));
+        mAlgo.addItem(new TestingItem(0, 0.02));
+        assertEquals(1, mAlgo.getClusters(10).size());
+
+        mAlgo.removeItem(a);
+        assertEquals(2, mAlgo.getItems().size());
+        assertEquals(2, mAlgo.getClusters(10).size());
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
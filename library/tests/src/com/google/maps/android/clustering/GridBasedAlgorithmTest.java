@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.ClusterAggregator;
+import com.google.maps.android.clustering.algo.GridBasedAlgorithm;
+import com.google.maps.android.clustering.algo.NonHierarchicalDistanceBasedAlgorithm;
+import com.google.maps.android.clustering.algo.PreCachingAlgorithmDecorator;
+import com.google.maps.android.clustering.algo.SearchableAlgorithm;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class GridBasedAlgorithmTest extends TestCase {
+
+    private GridBasedAlgorithm<ClusterItem> mAlgo;
+
+    public void setUp() {
+        mAlgo = new GridBasedAlgorithm<ClusterItem>();
+    }
+
+    public void testAddAndRemove() {
+        TestingItem a = new TestingItem(10, 10);
+        TestingItem b = new TestingItem(20, 20);
+        TestingItem c = new TestingItem(30, 30);
+        mAlgo.addItem(a);
+        mAlgo.addItem(b);
+        mAlgo.addItem(c);
+        mAlgo.addItem(a);
+        assertEquals(3, mAlgo.getItems().size());
+
+        mAlgo.removeItem(a);
+        assertEquals(2, mAlgo.getItems().size());
+        assertFalse(mAlgo.getItems().contains(a));
+        assertTrue(mAlgo.getItems().contains(b));
+        assertTrue(mAlgo.getItems().contains(c));
+
+        // Removing again is a no-op.
+        mAlgo.removeItem(a);
+        mAlgo.removeItem(c);
+        assertEquals(1, mAlgo.getItems().size());
+        assertEquals(1, mAlgo.getClusters(3).size());
+
+        mAlgo.clearItems();
+        assertEquals(0, mAlgo.getItems().size());
+        assertEquals(0, mAlgo.getClusters(3).size());
+    }
+
+    public void testItemsInSameCellAreClustered() {
+        mAlgo.addItem(new TestingItem(10, 10));
+        mAlgo.addItem(new TestingItem(10.001, 10.001));
+        mAlgo.addItem(new TestingItem(-40, 100));
+
+        Set<? extends Cluster<ClusterItem>> clusters = mAlgo.getClusters(5);
+        assertEquals(2, clusters.size());
+        int total = 0;
+        for (Cluster<ClusterItem> cluster : clusters) {
+            total += cluster.getSize();
+        }
+        assertEquals(3, total);
+    }
+
+    public void testParallelBucketingMatchesSerial() {
+        Random random = new Random(42);
+        List<ClusterItem> items = new ArrayList<ClusterItem>();
+        for (int i = 0; i < 50000; i++) {
+            items.add(new TestingItem(random.nextGaussian() * 10, random.nextGaussian() * 10));
+        }
+        mAlgo.addItems(items);
+
+        GridBasedAlgorithm<ClusterItem> parallel = new GridBasedAlgorithm<ClusterItem>();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            parallel.setParallelBucketing(executor, 4);
+            parallel.addItems(items);
+
+            for (int zoom = 0; zoom < 20; zoom += 3) {
+                assertEquals(mAlgo.getClusters(zoom), parallel.getClusters(zoom));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testAggregatesMatchItems() {
+        ClusterAggregator<ClusterItem, Integer> count = new ClusterAggregator<ClusterItem, Integer>() {
+            @Override
+            public Integer map(ClusterItem item) {
+                return 1;
+            }
+
+            @Override
+            public Integer reduce(Integer a, Integer b) {
+                return a + b;
+            }
+        };
+
+        Random random = new Random(7);
+        List<ClusterItem> items = new ArrayList<ClusterItem>();
+        for (int i = 0; i < 30000; i++) {
+            items.add(new TestingItem(random.nextGaussian() * 5, random.nextGaussian() * 5));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            mAlgo.setClusterAggregator(count);
+            mAlgo.setParallelBucketing(executor, 3);
+            mAlgo.addItems(items);
+            NonHierarchicalDistanceBasedAlgorithm<ClusterItem> distance =
+                    new NonHierarchicalDistanceBasedAlgorithm<ClusterItem>();
+            distance.setClusterAggregator(count);
+            distance.addItems(items);
+
+            for (int zoom = 2; zoom < 12; zoom += 3) {
+                for (Cluster<ClusterItem> cluster : mAlgo.getClusters(zoom)) {
+                    assertEquals(cluster.getSize(), (int) count.get(cluster));
+                }
+                for (Cluster<ClusterItem> cluster : distance.getClusters(zoom)) {
+                    assertEquals(cluster.getSize(), (int) count.get(cluster));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testSearchMatchesIndex() {
+        Random random = new Random(5);
+        List<ClusterItem> items = new ArrayList<ClusterItem>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(new TestingItem(random.nextGaussian() * 20, random.nextGaussian() * 20));
+        }
+        mAlgo.addItems(items);
+        NonHierarchicalDistanceBasedAlgorithm<ClusterItem> distance =
+                new NonHierarchicalDistanceBasedAlgorithm<ClusterItem>();
+        SearchableAlgorithm<ClusterItem> decorated = new PreCachingAlgorithmDecorator<ClusterItem>(distance);
+        decorated.addItems(items);
+
+        SphericalMercatorProjection projection = new SphericalMercatorProjection(1);
+        Point center = projection.toPoint(new LatLng(5, 5));
+        Bounds bounds = new Bounds(center.x - 0.02, center.x + 0.02, center.y - 0.02, center.y + 0.02);
+        Set<ClusterItem> expected = new HashSet<ClusterItem>();
+        for (ClusterItem item : items) {
+            if (bounds.contains(projection.toPoint(item.getPosition()))) {
+                expected.add(item);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new HashSet<ClusterItem>(mAlgo.search(bounds)));
+        assertEquals(expected, new HashSet<ClusterItem>(distance.search(bounds)));
+        assertEquals(expected, new HashSet<ClusterItem>(decorated.search(bounds)));
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ItemSinkTest extends TestCase {
+
+    private RecordingTarget mTarget;
+
+    public void setUp() {
+        mTarget = new RecordingTarget();
+    }
+
+    public void testBatchBoundaries() {
+        ClusterManager.ItemSink<ClusterItem> sink = new ClusterManager.ItemSink<ClusterItem>(mTarget, 3, 0);
+        List<ClusterItem> items = items(7);
+        for (ClusterItem item : items) {
+            sink.add(item);
+        }
+        assertEquals(2, mTarget.mBatches.size());
+        assertEquals(items.subList(0, 3), mTarget.mBatches.get(0));
+        assertEquals(items.subList(3, 6), mTarget.mBatches.get(1));
+        assertEquals(0, mTarget.mRequests);
+
+        // Flushing commits a partial batch, and flushing nothing commits nothing.
+        sink.flush();
+        sink.flush();
+        assertEquals(3, mTarget.mBatches.size());
+        assertEquals(items.subList(6, 7), mTarget.mBatches.get(2));
+        assertEquals(0, mTarget.mRequests);
+    }
+
+    public void testCloseFlushesRemainder() {
+        ClusterManager.ItemSink<ClusterItem> sink = new ClusterManager.ItemSink<ClusterItem>(mTarget, 4, 0);
+        List<ClusterItem> items = items(5);
+        for (ClusterItem item : items) {
+            sink.add(item);
+        }
+        sink.close();
+        assertEquals(2, mTarget.mBatches.size());
+        assertEquals(items.subList(4, 5), mTarget.mBatches.get(1));
+        assertEquals(1, mTarget.mRequests);
+    }
+
+    public void testClusterEvery() {
+        // Clustering is requested at the end of the batch that reaches the count.
+        ClusterManager.ItemSink<ClusterItem> sink = new ClusterManager.ItemSink<ClusterItem>(mTarget, 2, 5);
+        int[] expectedRequests = {0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 2};
+        List<ClusterItem> items = items(expectedRequests.length);
+        for (int i = 0; i < items.size(); i++) {
+            sink.add(items.get(i));
+            assertEquals("after item " + i, expectedRequests[i], mTarget.mRequests);
+        }
+        sink.close();
+        assertEquals(3, mTarget.mRequests);
+
+        // Every batch reaches a count smaller than the batch size.
+        mTarget = new RecordingTarget();
+        sink = new ClusterManager.ItemSink<ClusterItem>(mTarget, 4, 1);
+        for (ClusterItem item : items(8)) {
+            sink.add(item);
+        }
+        assertEquals(2, mTarget.mRequests);
+    }
+
+    public void testInvalidArguments() {
+        try {
+            new ClusterManager.ItemSink<ClusterItem>(mTarget, 0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new ClusterManager.ItemSink<ClusterItem>(mTarget, 1, -1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRequestsCoalesce() throws InterruptedException {
+        HandlerThread thread = new HandlerThread("ItemSinkTest");
+        thread.start();
+        try {
+            Handler handler = new Handler(thread.getLooper());
+            final AtomicInteger clusters = new AtomicInteger();
+            final CoalescingRequest request = new CoalescingRequest(thread.getLooper(), new Runnable() {
+                @Override
+                public void run() {
+                    clusters.incrementAndGet();
+                }
+            });
+
+            // Hold the looper while items arrive, as a busy main thread would.
+            final CountDownLatch release = new CountDownLatch(1);
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            ClusterManager.ItemSink<ClusterItem> sink = new ClusterManager.ItemSink<ClusterItem>(
+                    new RecordingTarget() {
+                        @Override
+                        public void requestCluster() {
+                            super.requestCluster();
+                            request.request();
+                        }
+                    }, 1, 1);
+            for (ClusterItem item : items(20)) {
+                sink.add(item);
+            }
+            sink.close();
+            release.countDown();
+            awaitIdle(handler);
+            assertEquals(1, clusters.get());
+
+            // Once it has run, the next request posts it again.
+            request.request();
+            awaitIdle(handler);
+            assertEquals(2, clusters.get());
+
+            // On the looper's thread, requests run right away.
+            final AtomicInteger ranInline = new AtomicInteger();
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    request.request();
+                    ranInline.set(clusters.get());
+                }
+            });
+            awaitIdle(handler);
+            assertEquals(3, ranInline.get());
+        } finally {
+            thread.quit();
+        }
+    }
+
+    private static void awaitIdle(Handler handler) throws InterruptedException {
+        final CountDownLatch idle = new CountDownLatch(1);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                idle.countDown();
+            }
+        });
+        assertTrue(idle.await(10, TimeUnit.SECONDS));
+    }
+
+    private static List<ClusterItem> items(int count) {
+        List<ClusterItem> items = new ArrayList<ClusterItem>();
+        for (int i = 0; i < count; i++) {
+            items.add(new TestingItem(i, i));
+        }
+        return items;
+    }
+
+    private static class RecordingTarget implements ClusterManager.ItemSink.Target<ClusterItem> {
+        private final List<List<ClusterItem>> mBatches = new ArrayList<List<ClusterItem>>();
+        private int mRequests;
+
+        @Override
+        public void addItems(Collection<ClusterItem> items) {
+            mBatches.add(new ArrayList<ClusterItem>(items));
+        }
+
+        @Override
+        public void requestCluster() {
+            mRequests++;
+        }
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
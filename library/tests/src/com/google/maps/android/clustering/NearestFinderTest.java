@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.GridBasedAlgorithm;
+import com.google.maps.android.clustering.algo.NonHierarchicalDistanceBasedAlgorithm;
+import com.google.maps.android.clustering.algo.SearchableAlgorithm;
+import com.google.maps.android.clustering.algo.StaticCluster;
+import com.google.maps.android.geometry.Point;
+import com.google.maps.android.projection.SphericalMercatorProjection;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the lookups behind {@link ClusterManager#findItem} and {@link ClusterManager#findCluster}.
+ */
+public class NearestFinderTest extends TestCase {
+    private static final SphericalMercatorProjection PROJECTION = new SphericalMercatorProjection(1);
+
+    /**
+     * About 0.36 degrees of longitude.
+     */
+    private static final double TOLERANCE = 0.001;
+
+    public void testFindItem() {
+        TestingItem a = new TestingItem(0, 0);
+        TestingItem b = new TestingItem(0, 0.2);
+        for (SearchableAlgorithm<ClusterItem> algorithm : algorithms(a, b)) {
+            assertSame(a, NearestFinder.findItem(algorithm, point(0, 0.05), TOLERANCE));
+            assertSame(b, NearestFinder.findItem(algorithm, point(0, 0.15), TOLERANCE));
+            assertNull(NearestFinder.findItem(algorithm, point(0, 0.6), TOLERANCE));
+            assertNull(NearestFinder.findItem(algorithm, point(1, 0), TOLERANCE));
+        }
+    }
+
+    public void testFindItemAcrossAntimeridian() {
+        TestingItem east = new TestingItem(0, 179.95);
+        TestingItem west = new TestingItem(0, -179.7);
+        for (SearchableAlgorithm<ClusterItem> algorithm : algorithms(east, west)) {
+            assertSame(east, NearestFinder.findItem(algorithm, point(0, -179.95), TOLERANCE));
+            assertSame(west, NearestFinder.findItem(algorithm, point(0, -179.8), TOLERANCE));
+        }
+
+        east = new TestingItem(0, 179.7);
+        west = new TestingItem(0, -179.95);
+        for (SearchableAlgorithm<ClusterItem> algorithm : algorithms(east, west)) {
+            assertSame(west, NearestFinder.findItem(algorithm, point(0, 179.95), TOLERANCE));
+            assertSame(east, NearestFinder.findItem(algorithm, point(0, 179.8), TOLERANCE));
+        }
+    }
+
+    public void testFindCluster() {
+        StaticCluster<ClusterItem> a = new StaticCluster<ClusterItem>(new LatLng(10, 10));
+        StaticCluster<ClusterItem> b = new StaticCluster<ClusterItem>(new LatLng(10, 10.2));
+        NearestFinder.Clusters<ClusterItem> clusters = clusters(a, b);
+
+        assertSame(a, clusters.findNearest(point(10, 10.05), TOLERANCE));
+        assertSame(b, clusters.findNearest(point(10, 10.15), TOLERANCE));
+        assertNull(clusters.findNearest(point(10, 10.6), TOLERANCE));
+        assertNull(clusters.findNearest(point(11, 10), TOLERANCE));
+
+        assertNull(new NearestFinder.Clusters<ClusterItem>(Collections.<Cluster<ClusterItem>>emptySet())
+                .findNearest(point(10, 10), TOLERANCE));
+    }
+
+    public void testFindClusterAcrossAntimeridian() {
+        NearestFinder.Clusters<ClusterItem> clusters = clusters(
+                new StaticCluster<ClusterItem>(new LatLng(0, 179.95)),
+                new StaticCluster<ClusterItem>(new LatLng(0, -179.7)));
+        assertEquals(179.95, clusters.findNearest(point(0, -179.95), TOLERANCE).getPosition().longitude, 1e-9);
+        assertEquals(-179.7, clusters.findNearest(point(0, -179.8), TOLERANCE).getPosition().longitude, 1e-9);
+
+        clusters = clusters(
+                new StaticCluster<ClusterItem>(new LatLng(0, 179.7)),
+                new StaticCluster<ClusterItem>(new LatLng(0, -179.95)));
+        assertEquals(-179.95, clusters.findNearest(point(0, 179.95), TOLERANCE).getPosition().longitude, 1e-9);
+        assertEquals(179.7, clusters.findNearest(point(0, 179.8), TOLERANCE).getPosition().longitude, 1e-9);
+    }
+
+    public void testFindClusterMatchesLinearScan() {
+        Random random = new Random(42);
+        List<StaticCluster<ClusterItem>> all = new ArrayList<StaticCluster<ClusterItem>>();
+        for (int i = 0; i < 500; i++) {
+            all.add(new StaticCluster<ClusterItem>(new LatLng(random.nextDouble() * 10 - 5,
+                    random.nextDouble() * 360 - 180)));
+        }
+        NearestFinder.Clusters<ClusterItem> clusters = new NearestFinder.Clusters<ClusterItem>(all);
+
+        double tolerance = 0.01;
+        for (int i = 0; i < 500; i++) {
+            Point point = point(random.nextDouble() * 10 - 5, random.nextDouble() * 360 - 180);
+            Cluster<ClusterItem> expected = null;
+            double nearest = tolerance * tolerance;
+            for (Cluster<ClusterItem> cluster : all) {
+                Point position = PROJECTION.toPoint(cluster.getPosition());
+                double dx = Math.abs(point.x - position.x);
+                dx = Math.min(dx, 1 - dx);
+                double distanceSquared = dx * dx + (point.y - position.y) * (point.y - position.y);
+                if (distanceSquared <= nearest) {
+                    expected = cluster;
+                    nearest = distanceSquared;
+                }
+            }
+            assertSame(expected, clusters.findNearest(point, tolerance));
+        }
+    }
+
+    private static List<SearchableAlgorithm<ClusterItem>> algorithms(ClusterItem... items) {
+        List<SearchableAlgorithm<ClusterItem>> algorithms = new ArrayList<SearchableAlgorithm<ClusterItem>>();
+        algorithms.add(new GridBasedAlgorithm<ClusterItem>());
+        algorithms.add(new NonHierarchicalDistanceBasedAlgorithm<ClusterItem>());
+        for (SearchableAlgorithm<ClusterItem> algorithm : algorithms) {
+            for (ClusterItem item : items) {
+                algorithm.addItem(item);
+            }
+        }
+        return algorithms;
+    }
+
+    private static NearestFinder.Clusters<ClusterItem> clusters(Cluster<ClusterItem> a, Cluster<ClusterItem> b) {
+        List<Cluster<ClusterItem>> list = new ArrayList<Cluster<ClusterItem>>();
+        list.add(a);
+        list.add(b);
+        return new NearestFinder.Clusters<ClusterItem>(list);
+    }
+
+    private static Point point(double lat, double lng) {
+        return PROJECTION.toPoint(new LatLng(lat, lng));
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package com.google.maps.android.clustering;
 
 import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.algo.ClusterAggregator;
+import com.google.maps.android.clustering.algo.ItemWeigher;
 import com.google.maps.android.clustering.algo.StaticCluster;
 
 import junit.framework.TestCase;
@@ -45,4 +47,87 @@ public class StaticClusterTest extends TestCase {
         assertFalse(mCluster.equals(cluster_2_3));
         assertFalse(cluster_2_3.hashCode() == mCluster.hashCode());
     }
+
+    public void testAggregate() {
+        StaticCluster<ClusterItem> cluster = new StaticCluster<ClusterItem>(new LatLng(0, 0), MAX_LATITUDE);
+        assertNull(cluster.getAggregate());
+
+        ClusterItem a = new TestingItem(10, 0);
+        ClusterItem b = new TestingItem(30, 0);
+        ClusterItem c = new TestingItem(20, 0);
+        cluster.add(a);
+        cluster.add(b);
+        cluster.add(c);
+        assertEquals(30.0, cluster.getAggregate());
+        assertEquals(Double.valueOf(30.0), MAX_LATITUDE.get(cluster));
+
+        // Removing an item recomputes the aggregate from the remaining items.
+        cluster.remove(b);
+        assertEquals(20.0, MAX_LATITUDE.get(cluster));
+
+        // Clusters without an aggregator are folded on demand.
+        assertNull(mCluster.getAggregate());
+        mCluster.add(a);
+        assertEquals(Double.valueOf(10.0), MAX_LATITUDE.get(mCluster));
+    }
+
+    public void testWeightedCentroid() {
+        ItemWeigher<ClusterItem> byLatitude = new ItemWeigher<ClusterItem>() {
+            @Override
+            public double getWeight(ClusterItem item) {
+                return item.getPosition().latitude;
+            }
+        };
+        StaticCluster<ClusterItem> cluster = new StaticCluster<ClusterItem>(new LatLng(0, 179), null, byLatitude);
+        // No weight yet, so the cluster stays at its center.
+        assertEquals(new LatLng(0, 179), cluster.getPosition());
+
+        ClusterItem a = new TestingItem(10, 178);
+        ClusterItem b = new TestingItem(30, -178);
+        cluster.add(a);
+        cluster.add(b);
+        // Weighted 1:3, across the antimeridian.
+        assertEquals(25, cluster.getPosition().latitude, 1e-9);
+        assertEquals(-179, cluster.getPosition().longitude, 1e-9);
+
+        cluster.remove(b);
+        assertEquals(10, cluster.getPosition().latitude, 1e-9);
+        assertEquals(178, cluster.getPosition().longitude, 1e-9);
+    }
+
+    private static final ClusterAggregator<ClusterItem, Double> MAX_LATITUDE =
+            new ClusterAggregator<ClusterItem, Double>() {
+                @Override
+                public Double map(ClusterItem item) {
+                    return item.getPosition().latitude;
+                }
+
+                @Override
+                public Double reduce(Double a, Double b) {
+                    return Math.max(a, b);
+                }
+            };
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
 }
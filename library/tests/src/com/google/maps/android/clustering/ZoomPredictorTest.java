@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.clustering;
+
+import junit.framework.TestCase;
+
+public class ZoomPredictorTest extends TestCase {
+
+    public void testPredictsAheadOfSteadyGesture() {
+        ZoomPredictor predictor = new ZoomPredictor();
+        // One zoom level per second, sampled every 16ms.
+        for (int i = 0; i <= 30; i++) {
+            predictor.addSample(10 + i * 0.016f, i * 16);
+        }
+        assertEquals(1f, predictor.getVelocity(), 0.01f);
+        assertTrue(predictor.predict() > 10.48f + 0.2f);
+    }
+
+    public void testPauseStartsNewGesture() {
+        ZoomPredictor predictor = new ZoomPredictor();
+        predictor.addSample(10, 0);
+        predictor.addSample(11, 100);
+        assertTrue(predictor.getVelocity() > 0);
+
+        predictor.addSample(11, 1000);
+        assertEquals(0f, predictor.getVelocity());
+        assertEquals(11f, predictor.predict());
+
+        predictor.reset();
+        assertTrue(Float.isNaN(predictor.predict()));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.algo;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class PreCachingAlgorithmDecoratorTest extends TestCase {
+
+    public void testIntegerZoomByDefault() {
+        PreCachingAlgorithmDecorator<ClusterItem> algo =
+                new PreCachingAlgorithmDecorator<ClusterItem>(new GridBasedAlgorithm<ClusterItem>());
+        assertEquals(12.0, algo.getQuantisedZoom(12.0), 0);
+        assertEquals(12.0, algo.getQuantisedZoom(12.9), 0);
+        assertEquals(13.0, algo.getQuantisedZoom(13.0), 0);
+    }
+
+    public void testFractionalZoomStep() {
+        PreCachingAlgorithmDecorator<ClusterItem> algo =
+                new PreCachingAlgorithmDecorator<ClusterItem>(new GridBasedAlgorithm<ClusterItem>(), 0.25);
+        assertEquals(12.0, algo.getQuantisedZoom(12.2), 0);
+        assertEquals(12.25, algo.getQuantisedZoom(12.25), 0);
+        assertEquals(12.75, algo.getQuantisedZoom(12.9), 0);
+
+        // Steps that are not exact in binary still land on their multiples.
+        algo = new PreCachingAlgorithmDecorator<ClusterItem>(new GridBasedAlgorithm<ClusterItem>(), 0.1);
+        assertEquals(0.3, algo.getQuantisedZoom(0.3), 1e-9);
+    }
+
+    public void testClustersAtQuantisedZoom() {
+        final List<Double> zooms = new ArrayList<Double>();
+        GridBasedAlgorithm<ClusterItem> recorder = new GridBasedAlgorithm<ClusterItem>() {
+            @Override
+            public Set<? extends Cluster<ClusterItem>> getClusters(double zoom) {
+                zooms.add(zoom);
+                return super.getClusters(zoom);
+            }
+        };
+        PreCachingAlgorithmDecorator<ClusterItem> algo =
+                new PreCachingAlgorithmDecorator<ClusterItem>(recorder, 0.5);
+        algo.setPrecaching(false);
+        algo.getClusters(7.7);
+        algo.getClusters(7.6);
+
+        // The second call is served from the cache.
+        assertEquals(7.5, zooms.get(0), 0);
+        assertEquals(1, zooms.size());
+    }
+
+    public void testCacheBoundedByBytes() {
+        GridBasedAlgorithm<ClusterItem> grid = new GridBasedAlgorithm<ClusterItem>();
+        Random random = new Random(3);
+        List<ClusterItem> items = new ArrayList<ClusterItem>();
+        for (int i = 0; i < 2000; i++) {
+            items.add(new TestingItem(random.nextDouble() * 80 - 40, random.nextDouble() * 300 - 150));
+        }
+        // Room for the few clusters at zoom 1, but not for 2000 singletons as well.
+        PreCachingAlgorithmDecorator<ClusterItem> algo =
+                new PreCachingAlgorithmDecorator<ClusterItem>(grid, 1, 100 * 1024);
+        algo.setPrecaching(false);
+        algo.addItems(items);
+
+        algo.getClusters(1);
+        algo.getClusters(1);
+        assertEquals(1, algo.getCacheHitCount());
+        assertEquals(1, algo.getCacheMissCount());
+        long lowZoomSize = algo.getCacheSize();
+        assertTrue(lowZoomSize > 0);
+
+        // Too large to cache, so it is recomputed each time.
+        algo.getClusters(20);
+        algo.getClusters(20);
+        assertEquals(3, algo.getCacheMissCount());
+        assertEquals(lowZoomSize, algo.getCacheSize());
+
+        // Zoom 1 and zoom 2 each fit, but not together.
+        algo = new PreCachingAlgorithmDecorator<ClusterItem>(grid, 1, 32 * 1024);
+        algo.setPrecaching(false);
+        algo.getClusters(1);
+        algo.getClusters(2);
+        assertTrue(algo.getCacheSize() > lowZoomSize);
+        assertTrue(algo.getCacheSize() <= 32 * 1024);
+        assertEquals(1, algo.getCacheEvictionCount());
+
+        algo.addItem(new TestingItem(0, 0));
+        assertEquals(0, algo.getCacheSize());
+    }
+
+    public void testInvalidStep() {
+        try {
+            new PreCachingAlgorithmDecorator<ClusterItem>(new GridBasedAlgorithm<ClusterItem>(), 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
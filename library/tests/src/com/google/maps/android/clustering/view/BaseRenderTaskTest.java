@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.view;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.clustering.algo.StaticCluster;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BaseRenderTaskTest extends TestCase {
+
+    public void testSortsNearestFirst() {
+        Cluster<ClusterItem> far = cluster(40, 40);
+        Cluster<ClusterItem> near = cluster(1, 1);
+        Cluster<ClusterItem> middle = cluster(-10, 5);
+        Cluster<ClusterItem> target = cluster(0, 0);
+        List<Cluster<ClusterItem>> clusters = new ArrayList<>(Arrays.asList(far, near, middle, target));
+
+        BaseRenderTask.sortByDistance(clusters, new LatLng(0, 0));
+        assertEquals(Arrays.asList(target, near, middle, far), clusters);
+    }
+
+    public void testMeasuresAcrossAntimeridian() {
+        // 2 degrees away across the antimeridian, 20 degrees away on the same side.
+        Cluster<ClusterItem> across = cluster(0, -179);
+        Cluster<ClusterItem> sameSide = cluster(0, 159);
+        Cluster<ClusterItem> opposite = cluster(0, 0);
+        List<Cluster<ClusterItem>> clusters = new ArrayList<>(Arrays.asList(opposite, sameSide, across));
+
+        BaseRenderTask.sortByDistance(clusters, new LatLng(0, 179));
+        assertEquals(Arrays.asList(across, sameSide, opposite), clusters);
+
+        // And the other way round.
+        clusters = new ArrayList<>(Arrays.asList(opposite, cluster(0, -159), across));
+        BaseRenderTask.sortByDistance(clusters, new LatLng(0, 179));
+        assertSame(across, clusters.get(0));
+        assertSame(opposite, clusters.get(2));
+    }
+
+    public void testNorthAndSouthDontWrap() {
+        // The far north would be nearer if the world wrapped vertically too.
+        Cluster<ClusterItem> north = cluster(80, 0);
+        Cluster<ClusterItem> south = cluster(-20, 0);
+        List<Cluster<ClusterItem>> clusters = new ArrayList<>(Arrays.asList(north, south));
+
+        BaseRenderTask.sortByDistance(clusters, new LatLng(-80, 0));
+        assertEquals(Arrays.asList(south, north), clusters);
+    }
+
+    private static Cluster<ClusterItem> cluster(double lat, double lng) {
+        return new StaticCluster<ClusterItem>(new LatLng(lat, lng));
+    }
+}
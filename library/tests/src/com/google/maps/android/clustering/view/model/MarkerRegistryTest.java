@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.maps.android.clustering.view.model;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.maps.android.clustering.Cluster;
+import com.google.maps.android.clustering.ClusterItem;
+import com.google.maps.android.clustering.algo.StaticCluster;
+
+import junit.framework.TestCase;
+
+/**
+ * Markers can only be created by a map, so these tests register them by the ids the registry
+ * keys them by.
+ */
+public class MarkerRegistryTest extends TestCase {
+
+    private MarkerRegistry<ClusterItem> mRegistry;
+
+    public void setUp() {
+        mRegistry = new MarkerRegistry<ClusterItem>();
+    }
+
+    public void testItemsAndClusters() {
+        ClusterItem a = new TestingItem(1, 1);
+        ClusterItem b = new TestingItem(2, 2);
+        Cluster<ClusterItem> cluster = new StaticCluster<ClusterItem>(new LatLng(3, 3));
+        mRegistry.putItem(a, null, "m1");
+        mRegistry.putItem(b, null, "m2");
+        mRegistry.putCluster(cluster, null, "m3");
+        assertEquals(3, mRegistry.size());
+
+        assertSame(a, mRegistry.getItem("m1"));
+        assertSame(b, mRegistry.getItem("m2"));
+        assertNull(mRegistry.getCluster("m1"));
+        assertSame(cluster, mRegistry.getCluster("m3"));
+        assertNull(mRegistry.getItem("m3"));
+        assertNull(mRegistry.getItem("m4"));
+        assertNull(mRegistry.getItem((Marker) null));
+    }
+
+    public void testHandlesAreReused() {
+        for (int i = 0; i < 3; i++) {
+            mRegistry.putItem(new TestingItem(i, i), null, "m" + i);
+        }
+        mRegistry.remove("m1");
+        ClusterItem item = new TestingItem(5, 5);
+        mRegistry.putItem(item, null, "m5");
+        assertEquals(3, mRegistry.size());
+        assertEquals(3, mRegistry.getHandleLimit());
+        assertSame(item, mRegistry.getItem("m5"));
+
+        // Handles grow past the initial capacity, and start over when cleared.
+        for (int i = 10; i < 500; i++) {
+            mRegistry.putItem(new TestingItem(i, i), null, "m" + i);
+        }
+        assertEquals(493, mRegistry.size());
+        assertSame(item, mRegistry.getItem("m5"));
+        mRegistry.clear();
+        assertEquals(0, mRegistry.size());
+        assertEquals(0, mRegistry.getHandleLimit());
+        assertNull(mRegistry.getItem("m5"));
+    }
+
+    public void testRemovedMarkersAreForgotten() {
+        ClusterItem a = new TestingItem(1, 1);
+        ClusterItem b = new TestingItem(2, 2);
+        mRegistry.putItem(a, null, "m1");
+        mRegistry.remove("m1");
+        // b takes over a's handle, but not its marker.
+        mRegistry.putItem(b, null, "m2");
+        assertEquals(1, mRegistry.getHandleLimit());
+        assertNull(mRegistry.getItem("m1"));
+        assertSame(b, mRegistry.getItem("m2"));
+
+        // Removing a stale marker again leaves the marker that reused its handle alone.
+        mRegistry.remove("m1");
+        assertEquals(1, mRegistry.size());
+        assertSame(b, mRegistry.getItem("m2"));
+    }
+
+    public void testMarkerRepresentsOneThing() {
+        ClusterItem item = new TestingItem(1, 1);
+        Cluster<ClusterItem> cluster = new StaticCluster<ClusterItem>(new LatLng(3, 3));
+        mRegistry.putItem(item, null, "m1");
+        mRegistry.putCluster(cluster, null, "m1");
+        assertEquals(1, mRegistry.size());
+        assertNull(mRegistry.getItem("m1"));
+        assertSame(cluster, mRegistry.getCluster("m1"));
+    }
+
+    private static class TestingItem implements ClusterItem {
+        private final LatLng mPosition;
+
+        TestingItem(double lat, double lng) {
+            mPosition = new LatLng(lat, lng);
+        }
+
+        @Override
+        public LatLng getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public String getTitle() {
+            return null;
+        }
+
+        @Override
+        public String getSnippet() {
+            return null;
+        }
+    }
+}
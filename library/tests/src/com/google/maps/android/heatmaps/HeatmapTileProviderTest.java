@@ -0,0 +1,323 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import android.os.Debug;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+import com.google.maps.android.geometry.Point;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+public class HeatmapTileProviderTest extends TestCase {
+
+    private HeatmapTileProvider mProvider;
+
+    /**
+     * Tiles rendered before the last update.
+     */
+    private final Map<TileCoordinates, Tile> mRenderedTiles = new HashMap<TileCoordinates, Tile>();
+
+    public void setUp() {
+        List<LatLng> points = new ArrayList<LatLng>();
+        for (int i = 0; i < 100; i++) {
+            points.add(new LatLng(i / 10.0, i / 10.0));
+        }
+        mProvider = new HeatmapTileProvider.Builder().data(points).build();
+    }
+
+    public void testTileCache() {
+        Tile tile = mProvider.getTile(0, 0, 0);
+        assertSame(tile, mProvider.getTile(0, 0, 0));
+        assertEquals(1, mProvider.getTileCacheHitCount());
+        assertEquals(1, mProvider.getTileCacheMissCount());
+        assertEquals(0.5f, mProvider.getTileCacheHitRate());
+
+        // Each setting that changes the tiles drops them.
+        mProvider.setOpacity(0.5);
+        assertNotSame(tile, tile = mProvider.getTile(0, 0, 0));
+        mProvider.setRadius(30);
+        assertNotSame(tile, tile = mProvider.getTile(0, 0, 0));
+        mProvider.setGradient(HeatmapTileProvider.DEFAULT_GRADIENT);
+        assertNotSame(tile, tile = mProvider.getTile(0, 0, 0));
+        mProvider.setBlurMode(HeatmapTileProvider.BlurMode.TRIPLE_BOX);
+        assertNotSame(tile, tile = mProvider.getTile(0, 0, 0));
+        List<LatLng> points = new ArrayList<LatLng>();
+        points.add(new LatLng(0, 0));
+        mProvider.setData(points);
+        assertNotSame(tile, mProvider.getTile(0, 0, 0));
+        assertEquals(6, mProvider.getTileCacheMissCount());
+    }
+
+    public void testSteadyStateTilesAllocateOnlyTheirData() {
+        List<LatLng> points = new ArrayList<LatLng>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(new LatLng(i / 100.0, i / 50.0));
+        }
+        HeatmapTileProvider provider = new HeatmapTileProvider.Builder().data(points).tileCacheSize(0).build();
+        // Warm up the buffers.
+        for (int i = 0; i < 5; i++) {
+            provider.getTile(i % 2, 0, 1);
+        }
+
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < 5; i++) {
+                Debug.resetThreadAllocSize();
+                Tile tile = provider.getTile(i % 2, 0, 1);
+                int allocated = Debug.getThreadAllocSize();
+                // The previous pipeline allocated several MB per tile.
+                assertTrue("allocated " + allocated, allocated - tile.data.length < 16 * 1024);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    public void testPyramidTilesMatchPointTiles() {
+        Random random = new Random(2);
+        List<LatLng> points = new ArrayList<LatLng>();
+        for (int i = 0; i < 20000; i++) {
+            points.add(new LatLng(random.nextGaussian() * 2 + 40, random.nextGaussian() * 2 - 74));
+        }
+        HeatmapTileProvider pyramid = new HeatmapTileProvider.Builder().data(points)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0).build();
+        HeatmapTileProvider plain = new HeatmapTileProvider.Builder().data(points)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0)
+                .pyramidMaxZoom(-1).build();
+
+        // Unit weights sum exactly either way, so the tiles are identical.
+        for (int zoom = 0; zoom <= 6; zoom++) {
+            int tiles = 1 << zoom;
+            int x = (int) ((-74 + 180) / 360.0 * tiles);
+            int y = (int) ((1 - Math.log(Math.tan(Math.toRadians(40)) + 1 / Math.cos(Math.toRadians(40)))
+                    / Math.PI) / 2 * tiles);
+            for (int dx = -1; dx <= 1; dx++) {
+                Tile expected = plain.getTile(x + dx, y, zoom);
+                Tile actual = pyramid.getTile(x + dx, y, zoom);
+                if (expected == TileProvider.NO_TILE) {
+                    assertSame(TileProvider.NO_TILE, actual);
+                } else {
+                    assertTrue(Arrays.equals(expected.data, actual.data));
+                }
+            }
+        }
+    }
+
+    public void testColumnarTilesMatchWeightedTiles() {
+        Random random = new Random(6);
+        int size = 20000;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        float[] intensities = new float[size];
+        List<WeightedLatLng> points = new ArrayList<WeightedLatLng>();
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = random.nextGaussian() + 40;
+            // Some either side of the antimeridian
+            longitudes[i] = i % 20 == 0 ? 179.99 + random.nextGaussian() * 0.1 : random.nextGaussian() - 74;
+            intensities[i] = random.nextInt(3);
+            points.add(new WeightedLatLng(new LatLng(latitudes[i], longitudes[i]), intensities[i]));
+        }
+
+        for (int pyramidMaxZoom : new int[]{-1, HeatmapTileProvider.DEFAULT_PYRAMID_MAX_ZOOM}) {
+            HeatmapTileProvider weighted = new HeatmapTileProvider.Builder().weightedData(points)
+                    .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0)
+                    .pyramidMaxZoom(pyramidMaxZoom).build();
+            HeatmapTileProvider columnar = new HeatmapTileProvider.Builder()
+                    .columnarData(latitudes, longitudes, intensities)
+                    .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0)
+                    .pyramidMaxZoom(pyramidMaxZoom).build();
+
+            // Integer weights sum exactly in any order, so the tiles are identical.
+            for (int zoom = 0; zoom <= 12; zoom += 3) {
+                for (LatLng position : new LatLng[]{new LatLng(40, -74), new LatLng(40, 179.99)}) {
+                    TileCoordinates center = tileOf(position, zoom);
+                    int tiles = 1 << zoom;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int x = (center.x + dx + tiles) % tiles;
+                        Tile expected = weighted.getTile(x, center.y, zoom);
+                        Tile actual = columnar.getTile(x, center.y, zoom);
+                        if (expected == TileProvider.NO_TILE) {
+                            assertSame(TileProvider.NO_TILE, actual);
+                        } else {
+                            assertTrue(Arrays.equals(expected.data, actual.data));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void testColumnarDataCantBeUpdated() {
+        mProvider.setColumnarData(new double[]{1, 2}, new double[]{3, 4}, null);
+        try {
+            mProvider.addPoints(new ArrayList<WeightedLatLng>());
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    public void testIncrementalUpdatesMatchRebuild() {
+        Random random = new Random(4);
+        List<WeightedLatLng> initial = new ArrayList<WeightedLatLng>();
+        for (int i = 0; i < 20000; i++) {
+            initial.add(new WeightedLatLng(new LatLng(random.nextGaussian() + 40, random.nextGaussian() - 74)));
+        }
+        HeatmapTileProvider provider = new HeatmapTileProvider.Builder().weightedData(initial)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0).build();
+
+        // Within the bounds, then beyond them
+        List<WeightedLatLng> added = new ArrayList<WeightedLatLng>();
+        for (int i = 0; i < 3000; i++) {
+            added.add(new WeightedLatLng(new LatLng(random.nextGaussian() * 0.5 + 40, random.nextGaussian() * 0.5 - 74)));
+        }
+        List<WeightedLatLng> outside = new ArrayList<WeightedLatLng>();
+        outside.add(new WeightedLatLng(new LatLng(51.5, -0.1)));
+        List<WeightedLatLng> removed = new ArrayList<WeightedLatLng>(initial.subList(0, 5000));
+        removed.add(added.get(0));
+
+        List<TileCoordinates> tiles = new ArrayList<TileCoordinates>();
+        for (int zoom = 2; zoom <= 8; zoom += 2) {
+            TileCoordinates center = tileOf(new LatLng(40, -74), zoom);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    tiles.add(new TileCoordinates(center.x + dx, center.y + dy, zoom));
+                }
+            }
+        }
+
+        List<WeightedLatLng> expected = new ArrayList<WeightedLatLng>(initial);
+        expected.addAll(added);
+        assertUpdateReportsChangedTiles(provider, tiles, provider.addPoints(added));
+        assertSameTiles(provider, expected, tiles);
+
+        expected.removeAll(removed);
+        assertUpdateReportsChangedTiles(provider, tiles, provider.removePoints(removed));
+        assertSameTiles(provider, expected, tiles);
+
+        expected.addAll(outside);
+        assertUpdateReportsChangedTiles(provider, tiles, provider.addPoints(outside));
+        assertSameTiles(provider, expected, tiles);
+
+        // Removing points again changes nothing
+        assertTrue(provider.removePoints(removed).isEmpty());
+    }
+
+    /**
+     * Asserts that the tiles rendered before an update differ from those after it only if the
+     * update reported them dirty.
+     */
+    private void assertUpdateReportsChangedTiles(HeatmapTileProvider provider, List<TileCoordinates> tiles,
+                                                 DirtyTiles dirty) {
+        for (TileCoordinates coordinates : tiles) {
+            Tile before = mRenderedTiles.get(coordinates);
+            Tile after = provider.getTile(coordinates.x, coordinates.y, coordinates.zoom);
+            if (before != null && !dirty.isDirty(coordinates.x, coordinates.y, coordinates.zoom)) {
+                assertTrue(coordinates.toString(), Arrays.equals(before.data, after.data));
+            }
+            mRenderedTiles.put(coordinates, after);
+        }
+    }
+
+    private static void assertSameTiles(HeatmapTileProvider provider, List<WeightedLatLng> data,
+                                        List<TileCoordinates> tiles) {
+        HeatmapTileProvider rebuilt = new HeatmapTileProvider.Builder().weightedData(data)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0).build();
+        for (TileCoordinates coordinates : tiles) {
+            Tile expected = rebuilt.getTile(coordinates.x, coordinates.y, coordinates.zoom);
+            Tile actual = provider.getTile(coordinates.x, coordinates.y, coordinates.zoom);
+            if (expected == TileProvider.NO_TILE) {
+                assertSame(coordinates.toString(), TileProvider.NO_TILE, actual);
+            } else {
+                assertTrue(coordinates.toString(), Arrays.equals(expected.data, actual.data));
+            }
+        }
+    }
+
+    public void testUpdatesDropOnlyDirtyTiles() {
+        LatLng position = new LatLng(5.05, 5.05);
+        TileCoordinates near = tileOf(position, 11);
+        TileCoordinates far = tileOf(new LatLng(0.5, 9.5), 11);
+        Tile farTile = mProvider.getTile(far.x, far.y, far.zoom);
+        Tile nearTile = mProvider.getTile(near.x, near.y, near.zoom);
+        List<WeightedLatLng> points = new ArrayList<WeightedLatLng>();
+        points.add(new WeightedLatLng(position));
+
+        DirtyTiles dirty = mProvider.addPoints(points);
+        // Away from other points, so the maximum intensity at high zoom levels is unchanged
+        assertFalse(dirty.isZoomDirty(11));
+        assertTrue(dirty.getTiles().contains(near));
+        assertFalse(dirty.isDirty(far.x, far.y, far.zoom));
+        assertSame(farTile, mProvider.getTile(far.x, far.y, far.zoom));
+        assertNotSame(nearTile, mProvider.getTile(near.x, near.y, near.zoom));
+    }
+
+    public void testDirtyTilesFallBackToWholeZoomLevels() {
+        DirtyTiles dirty = new DirtyTiles(22);
+        Random random = new Random(3);
+        List<Point> points = new ArrayList<Point>();
+        for (int i = 0; i < 1000; i++) {
+            Point point = new Point(random.nextDouble(), random.nextDouble());
+            points.add(point);
+            dirty.addPoint(point, 10, 512);
+        }
+
+        int[] counts = new int[22];
+        for (TileCoordinates coordinates : dirty.getTiles()) {
+            counts[coordinates.zoom]++;
+        }
+        for (int zoom = 0; zoom < 22; zoom++) {
+            assertTrue(counts[zoom] <= DirtyTiles.MAX_TILES_PER_ZOOM);
+            assertTrue(counts[zoom] == 0 || !dirty.isZoomDirty(zoom));
+        }
+        // Each point touches a tile of its own at high zoom levels
+        assertTrue(dirty.isZoomDirty(21));
+        for (Point point : points) {
+            for (int zoom = 0; zoom < 22; zoom++) {
+                int tiles = 1 << zoom;
+                assertTrue(dirty.isDirty((int) (point.x * tiles), (int) (point.y * tiles), zoom));
+            }
+        }
+    }
+
+    private static TileCoordinates tileOf(LatLng position, int zoom) {
+        int tiles = 1 << zoom;
+        double latitude = Math.toRadians(position.latitude);
+        return new TileCoordinates((int) ((position.longitude + 180) / 360 * tiles),
+                (int) ((1 - Math.log(Math.tan(latitude) + 1 / Math.cos(latitude)) / Math.PI) / 2 * tiles),
+                zoom);
+    }
+
+    public void testTileCacheDisabled() {
+        List<LatLng> points = new ArrayList<LatLng>();
+        points.add(new LatLng(0, 0));
+        HeatmapTileProvider provider = new HeatmapTileProvider.Builder().data(points).tileCacheSize(0).build();
+        assertNotSame(provider.getTile(0, 0, 0), provider.getTile(0, 0, 0));
+        assertEquals(0, provider.getTileCacheHitCount());
+    }
+}
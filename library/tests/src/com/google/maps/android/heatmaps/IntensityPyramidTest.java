@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.geometry.Point;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class IntensityPyramidTest extends TestCase {
+
+    private static final int TILE_DIM = 512;
+
+    public void testMatchesPoints() {
+        Random random = new Random(11);
+        List<WeightedLatLng> points = new ArrayList<WeightedLatLng>();
+        for (int i = 0; i < 20000; i++) {
+            points.add(new WeightedLatLng(new LatLng(random.nextGaussian() + 40,
+                    random.nextGaussian() - 74), random.nextInt(5)));
+        }
+        // Either side of the antimeridian
+        for (int i = 0; i < 2000; i++) {
+            points.add(new WeightedLatLng(new LatLng(random.nextGaussian() * 10,
+                    random.nextBoolean() ? 179.9 : -179.9), 1));
+        }
+
+        IntensityPyramid pyramid = new IntensityPyramid(ProjectedPoints.of(points), TILE_DIM, 8);
+        assertTrue(pyramid.hasLevel(0));
+        assertFalse(pyramid.hasLevel(9));
+
+        int radius = 20;
+        int dim = TILE_DIM + 2 * radius;
+        for (int zoom = 0; zoom <= 8; zoom++) {
+            if (!pyramid.hasLevel(zoom)) {
+                continue;
+            }
+            int tiles = 1 << zoom;
+            for (int x : new int[]{0, tiles / 2 - 1, tiles - 1}) {
+                for (int y : new int[]{0, tiles / 2 - 1, tiles / 2}) {
+                    float[] grid = new float[dim * dim];
+                    int minX = x * TILE_DIM - radius;
+                    int minY = y * TILE_DIM - radius;
+                    int cells = pyramid.quantize(zoom, minX, minY, grid, dim);
+                    float[] expected = quantize(points, zoom, minX, minY, dim);
+                    for (int i = 0; i < grid.length; i++) {
+                        assertEquals(expected[i], grid[i], 1e-3);
+                        if (grid[i] != 0) {
+                            cells--;
+                        }
+                    }
+                    assertTrue(cells >= 0);
+                }
+            }
+        }
+    }
+
+    public void testPolarPointsAreSkipped() {
+        Random random = new Random(13);
+        List<WeightedLatLng> points = new ArrayList<WeightedLatLng>();
+        for (int i = 0; i < 2000; i++) {
+            points.add(new WeightedLatLng(new LatLng(random.nextGaussian() * 30,
+                    random.nextGaussian() * 60), 1));
+        }
+        // Beyond the edges of the Mercator world, where they are never drawn.
+        List<WeightedLatLng> polar = new ArrayList<WeightedLatLng>();
+        for (double lat : new double[]{89, 90, -89, -90}) {
+            for (int i = 0; i < 100; i++) {
+                polar.add(new WeightedLatLng(new LatLng(lat, random.nextDouble() * 360 - 180), 1));
+            }
+        }
+        List<WeightedLatLng> all = new ArrayList<WeightedLatLng>(points);
+        all.addAll(polar);
+
+        IntensityPyramid pyramid = new IntensityPyramid(ProjectedPoints.of(all), TILE_DIM, 4);
+        for (WeightedLatLng point : polar) {
+            pyramid.add(point);
+        }
+        pyramid.remove(polar.get(0));
+        pyramid.remove(points.get(0));
+        points.remove(0);
+
+        int radius = 20;
+        int dim = TILE_DIM + 2 * radius;
+        for (int zoom = 0; zoom <= 4; zoom++) {
+            if (!pyramid.hasLevel(zoom)) {
+                continue;
+            }
+            int tiles = 1 << zoom;
+            for (int y : new int[]{0, tiles - 1}) {
+                float[] grid = new float[dim * dim];
+                int minX = -radius;
+                int minY = y * TILE_DIM - radius;
+                pyramid.quantize(zoom, minX, minY, grid, dim);
+                float[] expected = quantize(points, zoom, minX, minY, dim);
+                for (int i = 0; i < grid.length; i++) {
+                    assertEquals(expected[i], grid[i], 1e-3);
+                }
+            }
+        }
+
+        HeatmapTileProvider provider = new HeatmapTileProvider.Builder().weightedData(all).build();
+        assertNotNull(provider.getTile(0, 0, 0));
+        assertNotNull(provider.getTile(0, 0, 1));
+        assertNotNull(provider.getTile(1, 1, 1));
+    }
+
+    /**
+     * Quantises points one by one into the same window of a zoom level.
+     */
+    private static float[] quantize(List<WeightedLatLng> points, int zoom, int minX, int minY,
+                                    int dim) {
+        int size = TILE_DIM << zoom;
+        float[] grid = new float[dim * dim];
+        for (WeightedLatLng point : points) {
+            Point p = point.getPoint();
+            int x = (int) (p.x * size) - minX;
+            int y = (int) (p.y * size) - minY;
+            add(grid, dim, x, y, point.getIntensity());
+            if (minX < 0) {
+                add(grid, dim, x - size, y, point.getIntensity());
+            } else if (minX + dim > size) {
+                add(grid, dim, x + size, y, point.getIntensity());
+            }
+        }
+        return grid;
+    }
+
+    private static void add(float[] grid, int dim, int x, int y, double intensity) {
+        if (x >= 0 && x < dim && y >= 0 && y < dim) {
+            grid[y * dim + x] += intensity;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongDoubleHashMapTest extends TestCase {
+
+    public void testMatchesHashMap() {
+        Random random = new Random(17);
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+        Map<Long, Double> expected = new HashMap<Long, Double>();
+        for (int i = 0; i < 100000; i++) {
+            // Few keys and small deltas, so that values often return to 0
+            long key = random.nextInt(500);
+            double delta = random.nextInt(5) - 2;
+            Double previous = expected.get(key);
+            double value = (previous == null ? 0 : previous) + delta;
+            if (value == 0) {
+                expected.remove(key);
+            } else {
+                expected.put(key, value);
+            }
+            assertEquals(value, map.add(key, delta));
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 500; key++) {
+            Double value = expected.get(key);
+            assertEquals(value == null ? 0 : value, map.add(key, 0));
+        }
+        assertEquals(expected.size(), map.size());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.maps.android.geometry.Bounds;
+import com.google.maps.android.geometry.Point;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class MaxIntensityEstimatorTest extends TestCase {
+
+    private static final int RADIUS = 20;
+
+    private static final int[] SCREEN_DIMS = {2560, 5120, 10240, 20480};
+
+    public void testMatchesBuckets() {
+        Random random = new Random(8);
+        List<WeightedLatLng> points = new ArrayList<WeightedLatLng>();
+        for (int i = 0; i < 200000; i++) {
+            points.add(new WeightedLatLng(new LatLng(random.nextGaussian() * 3, random.nextGaussian() * 3),
+                    random.nextInt(4)));
+        }
+        Bounds bounds = HeatmapTileProvider.getBounds(points);
+
+        ProjectedPoints projected = ProjectedPoints.of(points);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            MaxIntensityEstimator serial =
+                    new MaxIntensityEstimator(projected, bounds, RADIUS, SCREEN_DIMS, null, 1);
+            MaxIntensityEstimator parallel =
+                    new MaxIntensityEstimator(projected, bounds, RADIUS, SCREEN_DIMS, executor, 4);
+            for (int i = 0; i < SCREEN_DIMS.length; i++) {
+                double expected = getMaxValue(points, bounds, SCREEN_DIMS[i]);
+                // Integer weights sum exactly in any order.
+                assertEquals(expected, serial.getMaxValue(i));
+                assertEquals(expected, parallel.getMaxValue(i));
+            }
+
+            // Removing points lowers the maximum, adding them raises it back.
+            List<WeightedLatLng> removed = points.subList(0, 100000);
+            for (WeightedLatLng point : removed) {
+                serial.remove(point);
+            }
+            List<WeightedLatLng> remaining = points.subList(100000, points.size());
+            for (int i = 0; i < SCREEN_DIMS.length; i++) {
+                assertEquals(getMaxValue(remaining, bounds, SCREEN_DIMS[i]), serial.getMaxValue(i));
+            }
+            for (WeightedLatLng point : removed) {
+                serial.add(point);
+            }
+            for (int i = 0; i < SCREEN_DIMS.length; i++) {
+                assertEquals(parallel.getMaxValue(i), serial.getMaxValue(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Buckets points with boxed keys and values.
+     */
+    private static double getMaxValue(List<WeightedLatLng> points, Bounds bounds, int screenDim) {
+        double boundsDim = Math.max(bounds.maxX - bounds.minX, bounds.maxY - bounds.minY);
+        int nBuckets = (int) (screenDim / (2 * RADIUS) + 0.5);
+        double scale = nBuckets / boundsDim;
+        Map<String, Double> buckets = new HashMap<String, Double>();
+        double max = 0;
+        for (WeightedLatLng point : points) {
+            Point p = point.getPoint();
+            String key = (int) ((p.x - bounds.minX) * scale) + "," + (int) ((p.y - bounds.minY) * scale);
+            Double value = buckets.get(key);
+            value = (value == null ? 0 : value) + point.getIntensity();
+            buckets.put(key, value);
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+}
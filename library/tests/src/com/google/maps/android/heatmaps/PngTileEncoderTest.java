@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Tile;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class PngTileEncoderTest extends TestCase {
+
+    public void testRoundTrip() throws DataFormatException {
+        Random random = new Random(3);
+        int width = 37;
+        int height = 23;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+
+        int storedSize = 0;
+        for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED,
+                Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+            PngTileEncoder encoder = new PngTileEncoder(level);
+            byte[] png = encoder.encode(pixels, width, height);
+            assertTrue(Arrays.equals(pixels, decode(png, width, height)));
+            // Encoders reuse their buffers, so a second tile must not see the first.
+            assertTrue(Arrays.equals(png, encoder.encode(pixels, width, height)));
+            if (level == Deflater.NO_COMPRESSION) {
+                storedSize = png.length;
+            }
+        }
+        // Stored rows take exactly their raw size plus a few bytes of framing.
+        assertTrue(storedSize > (1 + 4 * width) * height);
+        assertTrue(storedSize < (1 + 4 * width) * height + 100);
+    }
+
+    public void testEncodersShareStatePerLevel() throws DataFormatException {
+        Random random = new Random(5);
+        int[] small = new int[16 * 16];
+        int[] large = new int[64 * 48];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = random.nextInt();
+        }
+        for (int i = 0; i < small.length; i++) {
+            small[i] = random.nextInt();
+        }
+        byte[] expected = new PngTileEncoder(Deflater.BEST_SPEED).encode(small, 16, 16);
+
+        // Encoders of the same level, and of others, interleaved on one thread.
+        PngTileEncoder fast = new PngTileEncoder(Deflater.BEST_SPEED);
+        PngTileEncoder best = new PngTileEncoder(Deflater.BEST_COMPRESSION);
+        byte[] large1 = new PngTileEncoder(Deflater.BEST_SPEED).encode(large, 64, 48);
+        byte[] large9 = best.encode(large, 64, 48);
+        assertTrue(Arrays.equals(expected, fast.encode(small, 16, 16)));
+        assertTrue(Arrays.equals(large, decode(large1, 64, 48)));
+        assertTrue(Arrays.equals(large, decode(large9, 64, 48)));
+        assertTrue(Arrays.equals(small, decode(best.encode(small, 16, 16), 16, 16)));
+    }
+
+    public void testProviderTiles() throws DataFormatException {
+        List<LatLng> points = new ArrayList<LatLng>();
+        for (int i = 0; i < 100; i++) {
+            points.add(new LatLng(i / 10.0, i / 10.0));
+        }
+        HeatmapTileProvider provider = new HeatmapTileProvider.Builder().data(points)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0).build();
+        Tile tile = provider.getTile(0, 0, 0);
+        int[] pixels = decode(tile.data, tile.width, tile.height);
+
+        // Same pixels whatever the level.
+        provider.setTileEncoder(new PngTileEncoder(Deflater.NO_COMPRESSION));
+        Tile stored = provider.getTile(0, 0, 0);
+        assertTrue(stored.data.length > tile.data.length);
+        assertTrue(Arrays.equals(pixels, decode(stored.data, stored.width, stored.height)));
+    }
+
+    public void testInvalidLevel() {
+        try {
+            new PngTileEncoder(10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Decodes the unfiltered RGBA PNGs written by PngTileEncoder, checking the chunks' CRCs.
+     */
+    private static int[] decode(byte[] png, int width, int height) throws DataFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(png);
+        for (int i = 0; i < 8; i++) {
+            assertEquals("signature", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'}[i],
+                    buffer.get());
+        }
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        String type;
+        do {
+            int length = buffer.getInt();
+            int start = buffer.position();
+            type = new String(png, start, 4);
+            CRC32 crc = new CRC32();
+            crc.update(png, start, length + 4);
+            buffer.position(start + 4 + length);
+            assertEquals(type, (int) crc.getValue(), buffer.getInt());
+            if (type.equals("IHDR")) {
+                ByteBuffer header = ByteBuffer.wrap(png, start + 4, length);
+                assertEquals(width, header.getInt());
+                assertEquals(height, header.getInt());
+                assertEquals(8, header.get());
+                assertEquals(6, header.get());
+            } else if (type.equals("IDAT")) {
+                idat.write(png, start + 4, length);
+            }
+        } while (!type.equals("IEND"));
+        assertFalse(buffer.hasRemaining());
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(idat.toByteArray());
+        byte[] raw = new byte[(1 + 4 * width) * height];
+        assertEquals(raw.length, inflater.inflate(raw));
+        assertTrue(inflater.finished());
+
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * (1 + 4 * width);
+            assertEquals(0, raw[row]);
+            for (int x = 0; x < width; x++) {
+                int i = row + 1 + 4 * x;
+                pixels[y * width + x] = (raw[i + 3] & 0xff) << 24 | (raw[i] & 0xff) << 16
+                        | (raw[i + 1] & 0xff) << 8 | (raw[i + 2] & 0xff);
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.maps.android.geometry.Bounds;
+
+import junit.framework.TestCase;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+public class PointGridTest extends TestCase {
+
+    public void testQuantizeMatchesScan() {
+        Random random = new Random(13);
+        int size = 50000;
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = random.nextGaussian() * 5 + 40;
+            // Some points share coordinates, so that rows have equal columns
+            longitudes[i] = i % 10 == 0 ? -74 : random.nextGaussian() * 5 - 74;
+        }
+        ProjectedPoints points = ProjectedPoints.project(DoubleBuffer.wrap(latitudes),
+                DoubleBuffer.wrap(longitudes), null);
+        Bounds bounds = points.getBounds();
+        PointGrid grid = new PointGrid(points, bounds);
+
+        int dim = 64;
+        for (int i = 0; i < 200; i++) {
+            double width = Math.pow(2, -4 - random.nextInt(10));
+            double minX = bounds.minX + random.nextDouble() * (bounds.maxX - bounds.minX) - width / 2;
+            double minY = bounds.minY + random.nextDouble() * (bounds.maxY - bounds.minY) - width / 2;
+            Bounds window = new Bounds(minX, minX + width, minY, minY + width);
+            double bucketWidth = width / (dim - 1);
+
+            float[] expected = new float[dim * dim];
+            int expectedCount = 0;
+            for (int j = 0; j < size; j++) {
+                if (window.contains(points.mX[j], points.mY[j])) {
+                    expected[(int) ((points.mY[j] - minY) / bucketWidth) * dim
+                            + (int) ((points.mX[j] - minX) / bucketWidth)]++;
+                    expectedCount++;
+                }
+            }
+            float[] actual = new float[dim * dim];
+            assertEquals(expectedCount, grid.quantize(window, 0, minX, minY, bucketWidth, actual, dim));
+            for (int j = 0; j < actual.length; j++) {
+                assertEquals(expected[j], actual[j]);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.maps.android.heatmaps;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+public class TemporalHeatmapTileProviderTest extends TestCase {
+
+    private static final long HOUR = TemporalHeatmapTileProvider.DEFAULT_BUCKET_DURATION;
+
+    private static final long START = 1000 * HOUR;
+
+    private final List<TimedWeightedLatLng> mPoints = new ArrayList<TimedWeightedLatLng>();
+
+    private TemporalHeatmapTileProvider mProvider;
+
+    public void setUp() {
+        Random random = new Random(3);
+        for (int hour = 0; hour < 24; hour++) {
+            // Corners in every hour, so that any window has the bounds of all points
+            mPoints.add(new TimedWeightedLatLng(new LatLng(30, -90), START + hour * HOUR));
+            mPoints.add(new TimedWeightedLatLng(new LatLng(50, -60), START + hour * HOUR));
+            // A hotspot that moves over the day
+            for (int i = 0; i < 1000; i++) {
+                mPoints.add(new TimedWeightedLatLng(new LatLng(random.nextGaussian() + 40,
+                        random.nextGaussian() + hour * 0.2 - 76), random.nextInt(3),
+                        START + hour * HOUR + random.nextInt((int) HOUR)));
+            }
+        }
+        mProvider = new TemporalHeatmapTileProvider.Builder().timedData(mPoints)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0).build();
+    }
+
+    public void testTimeRange() {
+        assertEquals(START, mProvider.getStartTime());
+        assertEquals(START + 24 * HOUR, mProvider.getEndTime());
+    }
+
+    public void testWindowsMatchHeatmapsOfTheirPoints() {
+        int radius = HeatmapTileProvider.DEFAULT_RADIUS;
+        assertSameTiles(mProvider.getStartTime(), mProvider.getEndTime(), radius);
+
+        // Windows are rounded out to whole hours
+        mProvider.setTimeWindow(START + 3 * HOUR + 10, START + 6 * HOUR - 10);
+        assertSameTiles(START + 3 * HOUR, START + 6 * HOUR, radius);
+
+        // Sliding the window updates its maximum intensities from the hours entering and leaving
+        for (int hour = 4; hour <= 8; hour++) {
+            mProvider.setTimeWindow(START + hour * HOUR, START + (hour + 3) * HOUR);
+        }
+        assertSameTiles(START + 8 * HOUR, START + 11 * HOUR, radius);
+        mProvider.setTimeWindow(START + 7 * HOUR, START + 9 * HOUR);
+        assertSameTiles(START + 7 * HOUR, START + 9 * HOUR, radius);
+
+        mProvider.setTimeWindow(START + 20 * HOUR, START + 21 * HOUR);
+        assertSameTiles(START + 20 * HOUR, START + 21 * HOUR, radius);
+
+        mProvider.setRadius(40);
+        assertSameTiles(START + 20 * HOUR, START + 21 * HOUR, 40);
+    }
+
+    public void testWindowWithoutPointsIsBlank() {
+        mProvider.setTimeWindow(START + 30 * HOUR, START + 40 * HOUR);
+        assertSame(TileProvider.NO_TILE, mProvider.getTile(0, 0, 0));
+    }
+
+    /**
+     * Asserts that the provider's tiles are those of a heatmap of the points in [start, end).
+     */
+    private void assertSameTiles(long start, long end, int radius) {
+        List<WeightedLatLng> points = new ArrayList<WeightedLatLng>();
+        for (TimedWeightedLatLng point : mPoints) {
+            if (point.getTimestamp() >= start && point.getTimestamp() < end) {
+                points.add(point);
+            }
+        }
+        HeatmapTileProvider expected = new HeatmapTileProvider.Builder().weightedData(points)
+                .tileEncoder(new PngTileEncoder(Deflater.BEST_SPEED)).tileCacheSize(0)
+                .radius(radius).build();
+
+        // Integer weights sum exactly in any order, so the tiles are identical.
+        for (int zoom = 0; zoom <= 12; zoom += 3) {
+            int tiles = 1 << zoom;
+            int x = (int) ((-74 + 180) / 360.0 * tiles);
+            int y = (int) ((1 - Math.log(Math.tan(Math.toRadians(40)) + 1 / Math.cos(Math.toRadians(40)))
+                    / Math.PI) / 2 * tiles);
+            for (int dx = -1; dx <= 1; dx++) {
+                Tile expectedTile = expected.getTile(x + dx, y, zoom);
+                Tile actualTile = mProvider.getTile(x + dx, y, zoom);
+                if (expectedTile == TileProvider.NO_TILE) {
+                    assertSame(TileProvider.NO_TILE, actualTile);
+                } else {
+                    assertTrue(Arrays.equals(expectedTile.data, actualTile.data));
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,9 @@ import junit.framework.TestCase;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -54,7 +57,7 @@ public class UtilTest extends TestCase {
         grid[4][0] = 1;
         grid[0][4] = 1;
         double[] testKernel = {0.5, 1, 0.5};
-        double[][] convolved = HeatmapTileProvider.convolve(grid, testKernel);
+        double[][] convolved = convolve(grid, testKernel);
         double[][] expected = {{0.25, 0, 0.25}, {0, 0, 0}, {0.25, 0, 0.25}};
         assertTrue(Arrays.deepEquals(convolved, expected));
     }
@@ -73,7 +76,7 @@ public class UtilTest extends TestCase {
         grid[2][4] = 1;
         grid[4][2] = 1;
         double[] testKernel = {0.5, 1, 0.5};
-        double[][] convolved = HeatmapTileProvider.convolve(grid, testKernel);
+        double[][] convolved = convolve(grid, testKernel);
         double[][] expected = {{0.5, 0.5, 0.5}, {0.5, 0, 0.5}, {0.5, 0.5, 0.5}};
         assertTrue(Arrays.deepEquals(convolved, expected));
     }
@@ -93,11 +96,117 @@ public class UtilTest extends TestCase {
         grid[2][3] = 1;
         grid[3][2] = 1;
         double[] testKernel = {0.5, 1, 0.5};
-        double[][] convolved = HeatmapTileProvider.convolve(grid, testKernel);
+        double[][] convolved = convolve(grid, testKernel);
         double[][] expected = {{1.5, 2.5, 1.5}, {2.5, 4.0, 2.5}, {1.5, 2.5, 1.5}};
         assertTrue(Arrays.deepEquals(convolved, expected));
     }
 
+    public void testFlatConvolveMatchesReference() {
+        int radius = 10;
+        int dimOld = 60;
+        double[] kernel = HeatmapTileProvider.generateKernel(radius, radius / 3.0);
+        double[][] grid = new double[dimOld][dimOld];
+        float[] flatGrid = new float[dimOld * dimOld];
+        for (int i = 0; i < 200; i++) {
+            int x = (i * 7) % dimOld;
+            int y = (i * 13) % dimOld;
+            grid[x][y] += 1;
+            flatGrid[y * dimOld + x] += 1;
+        }
+        double[][] expected = convolve(grid, kernel);
+
+        int dim = dimOld - 2 * radius;
+        float[] output = new float[dim * dim];
+        HeatmapTileProvider.convolve(flatGrid, dimOld, HeatmapTileProvider.toFloats(kernel),
+                new float[dimOld * dimOld], new boolean[dimOld], output);
+        for (int x = 0; x < dim; x++) {
+            for (int y = 0; y < dim; y++) {
+                assertEquals(expected[x][y], output[y * dim + x], 1e-4);
+            }
+        }
+    }
+
+    public void testParallelConvolveIsIdentical() {
+        int radius = 20;
+        int dimOld = 512 + 2 * radius;
+        float[] kernel = HeatmapTileProvider.toFloats(HeatmapTileProvider.generateKernel(radius, radius / 3.0));
+        float[] grid = new float[dimOld * dimOld];
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            grid[random.nextInt(grid.length)] += random.nextFloat() * 10;
+        }
+
+        int dim = dimOld - 2 * radius;
+        float[] serial = new float[dim * dim];
+        HeatmapTileProvider.convolve(grid, dimOld, kernel, new float[grid.length], new boolean[dimOld], serial);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int parallelism = 2; parallelism <= 8; parallelism *= 2) {
+                float[] parallel = new float[dim * dim];
+                HeatmapTileProvider.convolve(grid, dimOld, kernel, new float[grid.length],
+                        new boolean[dimOld], parallel, executor, parallelism);
+                assertTrue(Arrays.equals(serial, parallel));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testBoxRadiiMatchGaussianVariance() {
+        for (int radius = 10; radius <= 50; radius++) {
+            double kernelVariance = HeatmapTileProvider.variance(
+                    HeatmapTileProvider.toFloats(HeatmapTileProvider.generateKernel(radius, radius / 3.0)));
+            int[] radii = HeatmapTileProvider.boxRadii(kernelVariance);
+            double variance = 0;
+            for (int boxRadius : radii) {
+                // Variance of a discrete box of width w is (w * w - 1) / 12
+                int width = 2 * boxRadius + 1;
+                variance += (width * width - 1) / 12.0;
+                assertTrue(boxRadius == radii[0] || boxRadius == radii[0] + 1);
+            }
+            // Widening one box from w to w + 2 adds (4w + 4) / 12, so the mix is within half that
+            int width = 2 * radii[0] + 1;
+            assertEquals(kernelVariance, variance, (4 * width + 4) / 24.0);
+        }
+    }
+
+    public void testBoxBlurApproximatesGaussian() {
+        Random random = new Random(2);
+        for (int radius = 10; radius <= 50; radius++) {
+            int dimOld = 256 + 2 * radius;
+            int dim = dimOld - 2 * radius;
+            float[] kernel = HeatmapTileProvider.toFloats(HeatmapTileProvider.generateKernel(radius, radius / 3.0));
+            float[] grid = new float[dimOld * dimOld];
+            for (int i = 0; i < 300; i++) {
+                grid[random.nextInt(grid.length)] += 1 + random.nextInt(5);
+            }
+
+            float[] exact = new float[dim * dim];
+            HeatmapTileProvider.convolve(grid, dimOld, kernel, new float[grid.length], new boolean[dimOld], exact);
+            float[] approximate = new float[dim * dim];
+            HeatmapTileProvider.boxBlur(grid.clone(), dimOld, kernel, new float[grid.length], approximate,
+                    null, 1);
+
+            float max = 0;
+            double exactTotal = 0;
+            double approximateTotal = 0;
+            for (int i = 0; i < exact.length; i++) {
+                max = Math.max(max, exact[i]);
+                exactTotal += exact[i];
+                approximateTotal += approximate[i];
+            }
+            float maxError = 0;
+            for (int i = 0; i < exact.length; i++) {
+                maxError = Math.max(maxError, Math.abs(exact[i] - approximate[i]));
+            }
+            // With box widths matched to the kernel's variance, a triple box differs from the
+            // Gaussian by at most ~6% of the peak. The total intensity is the same.
+            assertTrue(maxError <= 0.07f * max);
+            assertEquals(1, approximateTotal / exactTotal, 0.01);
+        }
+    }
+
     public void testGetBounds() {
 
         /*
@@ -139,4 +248,86 @@ public class UtilTest extends TestCase {
         expected = new Bounds(x3, x2, y2, y3);
         assertTrue(bounds.contains(expected) && expected.contains(bounds));
     }
+
+    /**
+     * Applies a 2D Gaussian convolution to the input grid, returning a 2D grid cropped of padding.
+     * The original convolution, kept as a reference for the flat one that tiles are rendered
+     * with.
+     *
+     * @param grid   Raw input grid to convolve: dimension (dim + 2 * radius) x (dim + 2 * radius)
+     *               ie dim * dim with padding of size radius
+     * @param kernel Pre-computed Gaussian kernel of size radius * 2 + 1
+     * @return the smoothened grid
+     */
+    private static double[][] convolve(double[][] grid, double[] kernel) {
+        // Calculate radius size
+        int radius = (int) Math.floor((double) kernel.length / 2.0);
+        // Padded dimension
+        int dimOld = grid.length;
+        // Calculate final (non padded) dimension
+        int dim = dimOld - 2 * radius;
+
+        // Upper and lower limits of non padded (inclusive)
+        int lowerLimit = radius;
+        int upperLimit = radius + dim - 1;
+
+        // Convolve horizontally
+        double[][] intermediate = new double[dimOld][dimOld];
+
+        // Need to convolve every point (including those outside of non-padded area)
+        // but only need to add to points within non-padded area
+        int x, y, x2, xUpperLimit, initial;
+        double val;
+        for (x = 0; x < dimOld; x++) {
+            for (y = 0; y < dimOld; y++) {
+                // for each point (x, y)
+                val = grid[x][y];
+                // only bother if something there
+                if (val != 0) {
+                    // need to "apply" convolution from that point to every point in
+                    // (max(lowerLimit, x - radius), y) to (min(upperLimit, x + radius), y)
+                    xUpperLimit = ((upperLimit < x + radius) ? upperLimit : x + radius) + 1;
+                    // Replace Math.max
+                    initial = (lowerLimit > x - radius) ? lowerLimit : x - radius;
+                    for (x2 = initial; x2 < xUpperLimit; x2++) {
+                        // multiplier for x2 = x - radius is kernel[0]
+                        // x2 = x + radius is kernel[radius * 2]
+                        // so multiplier for x2 in general is kernel[x2 - (x - radius)]
+                        intermediate[x2][y] += val * kernel[x2 - (x - radius)];
+                    }
+                }
+            }
+        }
+
+        // Convolve vertically
+        double[][] outputGrid = new double[dim][dim];
+
+        // Similarly, need to convolve every point, but only add to points within non-padded area
+        // However, we are adding to a smaller grid here (previously, was to a grid of same size)
+        int y2, yUpperLimit;
+
+        // Don't care about convolving parts in horizontal padding - wont impact inner
+        for (x = lowerLimit; x < upperLimit + 1; x++) {
+            for (y = 0; y < dimOld; y++) {
+                // for each point (x, y)
+                val = intermediate[x][y];
+                // only bother if something there
+                if (val != 0) {
+                    // need to "apply" convolution from that point to every point in
+                    // (x, max(lowerLimit, y - radius) to (x, min(upperLimit, y + radius))
+                    // Don't care about
+                    yUpperLimit = ((upperLimit < y + radius) ? upperLimit : y + radius) + 1;
+                    // replace math.max
+                    initial = (lowerLimit > y - radius) ? lowerLimit : y - radius;
+                    for (y2 = initial; y2 < yUpperLimit; y2++) {
+                        // Similar logic to above
+                        // subtract, as adding to a smaller grid
+                        outputGrid[x - radius][y2 - radius] += val * kernel[y2 - (y - radius)];
+                    }
+                }
+            }
+        }
+
+        return outputGrid;
+    }
 }
@@ -188,6 +188,26 @@ public class PointQuadTreeTest extends TestCase {
         mTree.clear();
     }
 
+    public void testCustomSplitParameters() {
+        for (int maxElements : new int[]{1, 4, 500}) {
+            for (int maxDepth : new int[]{0, 3, 40}) {
+                mTree = new PointQuadTree<Item>(new Bounds(0, 1, 0, 1), maxElements, maxDepth);
+                for (int i = 0; i < 1000; i++) {
+                    mTree.add(new Item(i / 1000.0, i / 1000.0));
+                }
+                assertEquals(1000, searchAll().size());
+                assertEquals(500, mTree.search(new Bounds(0, 0.4995, 0, 0.4995)).size());
+            }
+        }
+
+        try {
+            new PointQuadTree<Item>(new Bounds(0, 1, 0, 1), 0, 40);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     private Collection<Item> searchAll() {
         return mTree.search(new Bounds(0, 1, 0, 1));
     }